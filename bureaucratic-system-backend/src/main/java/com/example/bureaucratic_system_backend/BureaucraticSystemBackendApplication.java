@@ -1,6 +1,5 @@
 package com.example.bureaucratic_system_backend;
 
-import com.example.bureaucratic_system_backend.config.FirebaseConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
@@ -8,8 +7,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 public class BureaucraticSystemBackendApplication {
 
 	public static void main(String[] args) throws Exception {
-		FirebaseConfig firebaseConfig = new FirebaseConfig();
-		firebaseConfig.initializeFirebase();
+		// Firebase is initialized by FirebaseConfig unless the "embedded" profile is active
 		SpringApplication.run(BureaucraticSystemBackendApplication.class, args);
 		//System.out.println("miau");
 	}
@@ -0,0 +1,142 @@
+package com.example.bureaucratic_system_backend.cache;
+
+import com.example.bureaucratic_system_backend.model.Book;
+import com.example.bureaucratic_system_backend.repository.BookRepository;
+import com.example.bureaucratic_system_backend.repository.DocumentChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Available copies of every (title, author), each in a lock-free deque. Allocating a copy is
+ * a poll plus a compare-and-set on the copy's state, so concurrent counters asking for the same
+ * title get different copies instead of racing on the first one a query returns.
+ *
+ * The book listener fills the pool and follows changes made elsewhere. A copy claimed here
+ * ignores "available" events until the listener has seen it unavailable, so a late event from
+ * before the claim can't put it back in the pool. Entries left behind in a deque by a state
+ * change are skipped when polled.
+ */
+@Component
+public class AvailableCopyPool implements DocumentChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailableCopyPool.class);
+
+    private enum State { POOLED, CLAIMED, OUT }
+
+    private final Map<String, Copy> copies = new ConcurrentHashMap<>();
+    private final Map<TitleKey, ConcurrentLinkedDeque<Copy>> available = new ConcurrentHashMap<>();
+    private volatile boolean synced;
+
+    public AvailableCopyPool(BookRepository bookRepository) {
+        bookRepository.addChangeListener(this);
+    }
+
+    // Until the listener has replayed the books the pool is incomplete and callers should query
+    public boolean isSynced() {
+        return synced;
+    }
+
+    public Book allocate(String title, String author) {
+        TitleKey key = new TitleKey(title, author);
+        ConcurrentLinkedDeque<Copy> deque = available.get(key);
+        if (deque == null) {
+            return null;
+        }
+        Copy copy;
+        while ((copy = deque.pollFirst()) != null) {
+            if (copy.key.equals(key) && copy.state.compareAndSet(State.POOLED, State.CLAIMED)) {
+                return new Book(copy.id, title, author, true);
+            }
+        }
+        return null;
+    }
+
+    // Puts a copy back, either an allocation that wasn't used or a returned book
+    public void release(String bookId) {
+        Copy copy = copies.get(bookId);
+        if (copy != null && copy.state.getAndSet(State.POOLED) != State.POOLED) {
+            deque(copy.key).addLast(copy);
+        }
+    }
+
+    // Gives up a claim whose loan did not commit; the listener decides when the copy is back
+    public void unclaim(String bookId) {
+        Copy copy = copies.get(bookId);
+        if (copy != null) {
+            copy.state.compareAndSet(State.CLAIMED, State.OUT);
+        }
+    }
+
+    // Takes a copy out of the pool when it is marked unavailable without being allocated here
+    public void claim(String bookId) {
+        Copy copy = copies.get(bookId);
+        if (copy != null) {
+            copy.state.compareAndSet(State.POOLED, State.CLAIMED);
+        }
+    }
+
+    @Override
+    public void onChange(ChangeType type, String bookId, Map<String, Object> data) {
+        if (type == ChangeType.REMOVED) {
+            Copy removed = copies.remove(bookId);
+            if (removed != null) {
+                removed.state.set(State.OUT);
+            }
+            return;
+        }
+
+        TitleKey key = new TitleKey((String) data.get("name"), (String) data.get("author"));
+        boolean isAvailable = Boolean.TRUE.equals(data.get("available"));
+        Copy copy = copies.compute(bookId, (id, existing) -> {
+            if (existing == null || !existing.key.equals(key)) {
+                if (existing != null) {
+                    existing.state.set(State.OUT);
+                }
+                return new Copy(id, key);
+            }
+            return existing;
+        });
+
+        if (!isAvailable) {
+            copy.state.set(State.OUT);
+        } else if (copy.state.compareAndSet(State.OUT, State.POOLED)) {
+            deque(key).addLast(copy);
+        }
+    }
+
+    @Override
+    public void onSynced() {
+        synced = true;
+        logger.info("Copy pool synced: {} copies of {} titles.", copies.size(), available.size());
+    }
+
+    @Override
+    public void onDisconnected() {
+        synced = false;
+        logger.warn("Book listener disconnected. Copy pool disabled.");
+    }
+
+    private ConcurrentLinkedDeque<Copy> deque(TitleKey key) {
+        return available.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>());
+    }
+
+    private static final class Copy {
+        private final String id;
+        private final TitleKey key;
+        private final AtomicReference<State> state = new AtomicReference<>(State.OUT);
+
+        private Copy(String id, TitleKey key) {
+            this.id = id;
+            this.key = key;
+        }
+    }
+
+    private record TitleKey(String title, String author) {
+    }
+}
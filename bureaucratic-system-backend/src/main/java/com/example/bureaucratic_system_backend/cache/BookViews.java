@@ -0,0 +1,49 @@
+package com.example.bureaucratic_system_backend.cache;
+
+import com.example.bureaucratic_system_backend.model.Book;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tells every in-memory view of the books collection about a write as soon as it is made,
+ * rather than when the change listener gets to it.
+ */
+@Component
+public class BookViews {
+
+    private final LookupCache lookupCache;
+    private final AvailableCopyPool copyPool;
+    private final CatalogAggregate catalog;
+
+    public BookViews(LookupCache lookupCache, AvailableCopyPool copyPool, CatalogAggregate catalog) {
+        this.lookupCache = lookupCache;
+        this.copyPool = copyPool;
+        this.catalog = catalog;
+    }
+
+    public void bookSaved(Book book) {
+        lookupCache.invalidateBook(book.getName(), book.getAuthor());
+        if (book.getId() != null) {
+            catalog.bookChanged(book.getId(), book.getName(), book.getAuthor(), book.isAvailable());
+        }
+    }
+
+    public void bookDeleted(String bookId) {
+        lookupCache.invalidateBook(bookId);
+        copyPool.claim(bookId);
+        catalog.bookRemoved(bookId);
+    }
+
+    public void fieldUpdated(String bookId, String fieldName, Object value) {
+        lookupCache.invalidateBook(bookId);
+        if (!"available".equals(fieldName)) {
+            return;
+        }
+        boolean available = Boolean.TRUE.equals(value);
+        if (available) {
+            copyPool.release(bookId);
+        } else {
+            copyPool.claim(bookId);
+        }
+        catalog.availabilityChanged(bookId, available);
+    }
+}
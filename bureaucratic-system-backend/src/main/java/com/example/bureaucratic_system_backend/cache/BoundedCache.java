@@ -0,0 +1,153 @@
+package com.example.bureaucratic_system_backend.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Read-through LRU cache holding at most maxSize entries. A null loaded value is cached too,
+ * so "not found" answers are served from memory as well.
+ *
+ * Every put or invalidation bumps a version; a loader result is only stored when no change
+ * happened while it was in flight, so a slow read can't overwrite what a listener just wrote.
+ */
+public class BoundedCache<K, V> {
+
+    private static final Object NULL_VALUE = new Object();
+
+    private final String name;
+    private final int maxSize;
+    private final Map<K, Object> entries;
+    private long version;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public BoundedCache(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Object> eldest) {
+                if (size() > BoundedCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        long seen;
+        synchronized (this) {
+            Object cached = entries.get(key);
+            if (cached != null) {
+                hits.increment();
+                return unwrap(cached);
+            }
+            seen = version;
+        }
+        misses.increment();
+        V value = loader.apply(key);
+        putIfUnchanged(key, value, seen);
+        return value;
+    }
+
+    public CompletableFuture<V> getAsync(K key, Function<K, CompletableFuture<V>> loader) {
+        long seen;
+        synchronized (this) {
+            Object cached = entries.get(key);
+            if (cached != null) {
+                hits.increment();
+                return CompletableFuture.completedFuture(unwrap(cached));
+            }
+            seen = version;
+        }
+        misses.increment();
+        return loader.apply(key).thenApply(value -> {
+            putIfUnchanged(key, value, seen);
+            return value;
+        });
+    }
+
+    // Cached value without loading; null both when absent and when null is cached
+    public V getIfPresent(K key) {
+        Object cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        (cached != null ? hits : misses).increment();
+        return unwrap(cached);
+    }
+
+    public synchronized void put(K key, V value) {
+        version++;
+        entries.put(key, value == null ? NULL_VALUE : value);
+    }
+
+    public synchronized void invalidate(K key) {
+        version++;
+        if (entries.remove(key) != null) {
+            invalidations.increment();
+        }
+    }
+
+    // Drops every entry matching the predicate; a scan, so meant for rare changes only
+    public synchronized void invalidateIf(BiPredicate<K, V> predicate) {
+        version++;
+        entries.entrySet().removeIf(entry -> {
+            boolean matches = predicate.test(entry.getKey(), unwrap(entry.getValue()));
+            if (matches) {
+                invalidations.increment();
+            }
+            return matches;
+        });
+    }
+
+    public synchronized void invalidateAll() {
+        version++;
+        invalidations.add(entries.size());
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.hits", this, BoundedCache::hits).tag("cache", name).register(registry);
+        FunctionCounter.builder("cache.misses", this, BoundedCache::misses).tag("cache", name).register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum).tag("cache", name).register(registry);
+        FunctionCounter.builder("cache.invalidations", invalidations, LongAdder::sum).tag("cache", name).register(registry);
+        Gauge.builder("cache.size", this, BoundedCache::size).tag("cache", name).register(registry);
+    }
+
+    private synchronized void putIfUnchanged(K key, V value, long seen) {
+        if (version == seen) {
+            entries.put(key, value == null ? NULL_VALUE : value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V unwrap(Object cached) {
+        return cached == NULL_VALUE ? null : (V) cached;
+    }
+}
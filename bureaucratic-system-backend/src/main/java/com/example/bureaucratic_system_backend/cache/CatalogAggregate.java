@@ -0,0 +1,106 @@
+package com.example.bureaucratic_system_backend.cache;
+
+import com.example.bureaucratic_system_backend.repository.BookRepository;
+import com.example.bureaucratic_system_backend.repository.DocumentChangeListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Number of available copies per (name, author), as served by GET /api/firebase/books.
+ * The book listener and the write paths in FirebaseService report the state of single books;
+ * a count only moves when a book's state actually changes, so a write reported by both sides
+ * is counted once. The response list is built after a change and reused until the next one.
+ */
+@Component
+public class CatalogAggregate implements DocumentChangeListener {
+
+    private final Map<String, Entry> books = new HashMap<>();
+    private final Map<Entry, Long> availableCounts = new HashMap<>();
+    private volatile List<Map<String, Object>> snapshot;
+    private volatile boolean synced;
+
+    public CatalogAggregate(BookRepository bookRepository) {
+        bookRepository.addChangeListener(this);
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> current = snapshot;
+        return current != null ? current : rebuildSnapshot();
+    }
+
+    public synchronized void bookChanged(String bookId, String name, String author, boolean available) {
+        Entry previous = books.get(bookId);
+        Entry current = new Entry(name, author, available);
+        if (current.equals(previous)) {
+            return;
+        }
+        books.put(bookId, current);
+        adjust(previous, -1);
+        adjust(current, 1);
+    }
+
+    // Availability flip on a book whose name and author are already known
+    public synchronized void availabilityChanged(String bookId, boolean available) {
+        Entry previous = books.get(bookId);
+        if (previous != null) {
+            bookChanged(bookId, previous.name, previous.author, available);
+        }
+    }
+
+    public synchronized void bookRemoved(String bookId) {
+        adjust(books.remove(bookId), -1);
+    }
+
+    @Override
+    public void onChange(ChangeType type, String bookId, Map<String, Object> data) {
+        if (type == ChangeType.REMOVED) {
+            bookRemoved(bookId);
+        } else {
+            bookChanged(bookId, (String) data.get("name"), (String) data.get("author"),
+                    Boolean.TRUE.equals(data.get("available")));
+        }
+    }
+
+    @Override
+    public void onSynced() {
+        synced = true;
+    }
+
+    @Override
+    public void onDisconnected() {
+        synced = false;
+    }
+
+    private void adjust(Entry entry, long delta) {
+        if (entry == null || !entry.available) {
+            return;
+        }
+        Entry group = new Entry(entry.name, entry.author, true);
+        availableCounts.merge(group, delta, (count, d) -> count + d == 0 ? null : count + d);
+        snapshot = null;
+    }
+
+    private synchronized List<Map<String, Object>> rebuildSnapshot() {
+        if (snapshot == null) {
+            List<Map<String, Object>> groups = new ArrayList<>(availableCounts.size());
+            availableCounts.forEach((group, totalPieces) -> groups.add(Map.of(
+                    "name", group.name,
+                    "author", group.author,
+                    "totalPieces", totalPieces
+            )));
+            snapshot = List.copyOf(groups);
+        }
+        return snapshot;
+    }
+
+    private record Entry(String name, String author, boolean available) {
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.bureaucratic_system_backend.cache;
+
+import com.example.bureaucratic_system_backend.model.Book;
+import com.example.bureaucratic_system_backend.repository.BookRepository;
+import com.example.bureaucratic_system_backend.repository.CounterRepository;
+import com.example.bureaucratic_system_backend.repository.DocumentChangeListener.ChangeType;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory answers for the hot lookups: first available copy by title and author and counter
+ * state (memberships have their own complete MembershipIndex). Snapshot listeners keep the
+ * caches honest: counter documents are written straight into the cache, while any change to a
+ * book drops the cached answer for its title and author. Writes made through FirebaseService invalidate
+ * synchronously as well, so a caller reads its own write without waiting for the listener.
+ */
+@Component
+public class LookupCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(LookupCache.class);
+
+    private final BookRepository bookRepository;
+    private final CounterRepository counterRepository;
+
+    private final BoundedCache<BookKey, Book> availableBooks;
+    private final BoundedCache<Integer, Map<String, Object>> counters;
+
+    // Title and author each book was last seen with, to invalidate the right entry by ID
+    private final Map<String, BookKey> bookKeysById = new ConcurrentHashMap<>();
+
+    public LookupCache(BookRepository bookRepository, CounterRepository counterRepository,
+                       MeterRegistry meterRegistry,
+                       @Value("${lookup-cache.books.max-size:1000}") int booksMaxSize,
+                       @Value("${lookup-cache.counters.max-size:64}") int countersMaxSize) {
+        this.bookRepository = bookRepository;
+        this.counterRepository = counterRepository;
+        this.availableBooks = new BoundedCache<>("books", booksMaxSize);
+        this.counters = new BoundedCache<>("counters", countersMaxSize);
+
+        availableBooks.bindTo(meterRegistry);
+        counters.bindTo(meterRegistry);
+
+        bookRepository.addChangeListener(this::onBookChange);
+        counterRepository.addChangeListener(this::onCounterChange);
+        logger.info("Lookup cache listening to books and counters.");
+    }
+
+    // ----------------------- Books -----------------------
+
+    public Book findFirstAvailableBook(String title, String author) {
+        return copyOf(availableBooks.get(new BookKey(title, author),
+                key -> remember(bookRepository.findFirstAvailable(title, author))));
+    }
+
+    public CompletableFuture<Book> findFirstAvailableBookAsync(String title, String author) {
+        return availableBooks.getAsync(new BookKey(title, author),
+                        key -> bookRepository.findFirstAvailableAsync(title, author).thenApply(this::remember))
+                .thenApply(LookupCache::copyOf);
+    }
+
+    public void invalidateBook(String bookId) {
+        BookKey key = bookKeysById.get(bookId);
+        if (key != null) {
+            availableBooks.invalidate(key);
+        } else {
+            availableBooks.invalidateIf((k, book) -> book != null && bookId.equals(book.getId()));
+        }
+    }
+
+    public void invalidateBook(String title, String author) {
+        availableBooks.invalidate(new BookKey(title, author));
+    }
+
+    private void onBookChange(ChangeType type, String bookId, Map<String, Object> data) {
+        BookKey previous = type == ChangeType.REMOVED ? bookKeysById.remove(bookId) : bookKeysById.get(bookId);
+        if (previous != null) {
+            availableBooks.invalidate(previous);
+        }
+        BookKey current = new BookKey((String) data.get("name"), (String) data.get("author"));
+        if (type != ChangeType.REMOVED) {
+            bookKeysById.put(bookId, current);
+        }
+        if (!current.equals(previous)) {
+            availableBooks.invalidate(current);
+        }
+    }
+
+    private Book remember(Book book) {
+        if (book != null && book.getId() != null) {
+            bookKeysById.put(book.getId(), new BookKey(book.getName(), book.getAuthor()));
+        }
+        return book;
+    }
+
+    // Callers flip availability on the book they get, so never hand out the cached instance
+    private static Book copyOf(Book book) {
+        return book == null ? null : new Book(book.getId(), book.getName(), book.getAuthor(), book.isAvailable());
+    }
+
+    // ----------------------- Counters -----------------------
+
+    public Map<String, Object> findCounterData(int counterId) {
+        // Counters are stored under their counterId, so this is a keyed get
+        return counters.get(counterId, id -> counterRepository.findDataById(String.valueOf(id)));
+    }
+
+    public void invalidateCounter(int counterId) {
+        counters.invalidate(counterId);
+    }
+
+    public void invalidateCounters() {
+        counters.invalidateAll();
+    }
+
+    private void onCounterChange(ChangeType type, String documentId, Map<String, Object> data) {
+        if (!(data.get("counterId") instanceof Number counterId)) {
+            return;
+        }
+        if (type == ChangeType.REMOVED) {
+            counters.invalidate(counterId.intValue());
+        } else {
+            counters.put(counterId.intValue(), Collections.unmodifiableMap(new HashMap<>(data)));
+        }
+    }
+
+    private record BookKey(String title, String author) {
+    }
+}
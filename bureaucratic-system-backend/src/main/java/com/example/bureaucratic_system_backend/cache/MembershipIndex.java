@@ -0,0 +1,112 @@
+package com.example.bureaucratic_system_backend.cache;
+
+import com.example.bureaucratic_system_backend.repository.DocumentChangeListener;
+import com.example.bureaucratic_system_backend.repository.MembershipRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Complete citizenId <-> membershipId index over the memberships collection, kept up to date
+ * by a change listener and by the writes FirebaseService makes. Once the listener has replayed
+ * the collection, lookups are map reads. Until then, or after the listener drops, they fall
+ * back to querying the repository.
+ */
+@Component
+public class MembershipIndex implements DocumentChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MembershipIndex.class);
+
+    private final MembershipRepository membershipRepository;
+
+    private final Map<String, String> membershipByCitizen = new ConcurrentHashMap<>();
+    private final Map<String, String> citizenByMembership = new ConcurrentHashMap<>();
+    private volatile boolean synced;
+
+    public MembershipIndex(MembershipRepository membershipRepository) {
+        this.membershipRepository = membershipRepository;
+        membershipRepository.addChangeListener(this);
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    public String membershipIdOf(String citizenId) {
+        if (citizenId == null) {
+            return null;
+        }
+        if (synced) {
+            return membershipByCitizen.get(citizenId);
+        }
+        return record(membershipRepository.findIdByCitizenId(citizenId), citizenId);
+    }
+
+    public CompletableFuture<String> membershipIdOfAsync(String citizenId) {
+        if (citizenId == null || synced) {
+            return CompletableFuture.completedFuture(citizenId == null ? null : membershipByCitizen.get(citizenId));
+        }
+        return membershipRepository.findIdByCitizenIdAsync(citizenId)
+                .thenApply(membershipId -> record(membershipId, citizenId));
+    }
+
+    public String citizenIdOf(String membershipId) {
+        return membershipId == null ? null : citizenByMembership.get(membershipId);
+    }
+
+    // Answered from memory only, so it is safe to call while holding a lock. Before the index
+    // is synced there is nothing better than what the caller already looked up.
+    public boolean isCurrent(String citizenId, String membershipId) {
+        return !synced || membershipId.equals(membershipByCitizen.get(citizenId));
+    }
+
+    public synchronized void put(String membershipId, String citizenId) {
+        if (membershipId == null || citizenId == null) {
+            return;
+        }
+        remove(membershipId);
+        String replaced = membershipByCitizen.put(citizenId, membershipId);
+        if (replaced != null && !replaced.equals(membershipId)) {
+            citizenByMembership.remove(replaced);
+        }
+        citizenByMembership.put(membershipId, citizenId);
+    }
+
+    public synchronized void remove(String membershipId) {
+        String citizenId = citizenByMembership.remove(membershipId);
+        if (citizenId != null) {
+            membershipByCitizen.remove(citizenId, membershipId);
+        }
+    }
+
+    @Override
+    public void onChange(ChangeType type, String membershipId, Map<String, Object> data) {
+        Object citizenId = data.get("citizenId");
+        if (type == ChangeType.REMOVED || citizenId == null) {
+            remove(membershipId);
+        } else {
+            put(membershipId, citizenId.toString());
+        }
+    }
+
+    @Override
+    public void onSynced() {
+        synced = true;
+        logger.info("Membership index synced with {} memberships.", citizenByMembership.size());
+    }
+
+    @Override
+    public void onDisconnected() {
+        synced = false;
+        logger.warn("Membership listener disconnected. Falling back to queries.");
+    }
+
+    private String record(String membershipId, String citizenId) {
+        put(membershipId, citizenId);
+        return membershipId;
+    }
+}
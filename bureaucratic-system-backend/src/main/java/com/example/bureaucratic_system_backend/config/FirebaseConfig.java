@@ -1,17 +1,21 @@
 package com.example.bureaucratic_system_backend.config;
 
 import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.firestore.Firestore;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
+import com.google.firebase.cloud.FirestoreClient;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
-import javax.annotation.PostConstruct;
 import java.io.InputStream;
 
+// Not loaded under the "embedded" profile, which needs neither credentials nor network
 @Configuration
+@Profile("!embedded")
 public class FirebaseConfig {
 
-    @PostConstruct
     public void initializeFirebase() throws Exception {
         // Use classloader to load the file from the resources folder
         InputStream serviceAccount = getClass().getClassLoader().getResourceAsStream("key.json");
@@ -29,4 +33,10 @@ public class FirebaseConfig {
             System.out.println("Firebase has been initialized successfully!");
         }
     }
+
+    @Bean
+    public Firestore firestore() throws Exception {
+        initializeFirebase();
+        return FirestoreClient.getFirestore();
+    }
 }
@@ -0,0 +1,24 @@
+package com.example.bureaucratic_system_backend.config;
+
+import com.example.bureaucratic_system_backend.service.loan.LoanScheduler;
+import com.example.bureaucratic_system_backend.service.loan.LoanSchedulerType;
+import com.example.bureaucratic_system_backend.service.loan.ShardedLoanScheduler;
+import com.example.bureaucratic_system_backend.service.loan.SharedQueueScheduler;
+import com.example.bureaucratic_system_backend.service.loan.WorkStealingLoanScheduler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class LoanSchedulerConfig {
+
+    @Bean
+    public LoanScheduler loanScheduler(@Value("${loans.scheduler:SHARED}") LoanSchedulerType type,
+                                       @Value("${loans.scheduler.shards:64}") int shards) {
+        return switch (type) {
+            case SHARED -> new SharedQueueScheduler();
+            case SHARDED -> new ShardedLoanScheduler(shards);
+            case WORK_STEALING -> new WorkStealingLoanScheduler();
+        };
+    }
+}
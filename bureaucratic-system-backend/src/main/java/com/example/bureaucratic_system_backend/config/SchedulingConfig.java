@@ -0,0 +1,10 @@
+package com.example.bureaucratic_system_backend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Runs the @Scheduled jobs, such as the nightly fee accrual sweep
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -3,6 +3,8 @@ package com.example.bureaucratic_system_backend.controller;
 import com.example.bureaucratic_system_backend.model .*;
 import com.example.bureaucratic_system_backend.service.AdminService;
 import com.example.bureaucratic_system_backend.service.BookLoaningService;
+import com.example.bureaucratic_system_backend.service.ConcurrentUpdateException;
+import com.example.bureaucratic_system_backend.service.FeeAccrualService;
 import com.example.bureaucratic_system_backend.service.FeeService;
 import com.example.bureaucratic_system_backend.service.FirebaseService;
 import com.google.gson.JsonArray;
@@ -16,8 +18,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation .*;
 
-import java.io.FileWriter;
-import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -38,6 +39,12 @@ import java.util.Map;
         @Autowired
         private FeeService feeService;
 
+        @Autowired
+        private FeeAccrualService feeAccrualService;
+
+        @Autowired
+        private FirebaseService firebaseService;
+
         // Utility method to extract role from Firebase token
         private String extractRoleFromToken(String token) throws Exception {
             FirebaseToken decodedToken = FirebaseAuth.getInstance().verifyIdToken(token.replace("Bearer ", ""));
@@ -60,20 +67,33 @@ import java.util.Map;
                     return ResponseEntity.badRequest().body("Invalid configuration data.");
                 }
 
-                // Write to file
-                String filePath = "config/config.txt"; // Adjust path as necessary
-                try (FileWriter writer = new FileWriter(Paths.get(filePath).toFile())) {
-                    writer.write(configText);
-                }
-
-                logger.info("Configuration saved to {}", filePath);
-                return ResponseEntity.ok("Configuration received and saved successfully.");
+                // Saved to the file the counters are read from, and applied without a restart
+                int counters = bookLoaningService.applyCounterConfig(configText);
+                return ResponseEntity.ok("Configuration received and saved successfully. Running " + counters + " counters.");
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
             } catch (Exception e) {
                 logger.error("Error configuring offices: {}", e.getMessage());
                 return ResponseEntity.status(500).body("An error occurred while processing the configuration.");
             }
         }
 
+        @PostMapping("/config/reload")
+        public ResponseEntity<String> reloadConfiguration(@RequestHeader("Authorization") String token) {
+            try {
+                if (!"admin".equals(token)) {
+                    return ResponseEntity.status(403).body("Access denied: Admins only.");
+                }
+                int counters = bookLoaningService.reloadCounterConfig();
+                return ResponseEntity.ok("Configuration reloaded. Running " + counters + " counters.");
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            } catch (Exception e) {
+                logger.error("Error reloading configuration: {}", e.getMessage());
+                return ResponseEntity.status(500).body("An error occurred while reloading the configuration.");
+            }
+        }
+
         private List<Office> parseConfiguration(JsonObject configJson) {
             List<Office> parsedOffices = new ArrayList<>();
             JsonArray officeArray = configJson.getAsJsonArray("offices");
@@ -145,7 +165,7 @@ import java.util.Map;
         @GetMapping("/counters")
         public ResponseEntity<List<Counter>> getCounters() {
             try {
-                List<Counter> counters = FirebaseService.getAllCounters();
+                List<Counter> counters = firebaseService.getAllCounters();
                 return ResponseEntity.ok(counters);
             } catch (Exception e) {
                 logger.error("Error fetching counters: {}", e.getMessage());
@@ -182,6 +202,8 @@ import java.util.Map;
 
                 adminService.updateBookField(bookId, fieldName, value);
                 return ResponseEntity.ok("Book updated successfully.");
+            } catch (ConcurrentUpdateException e) {
+                return ResponseEntity.status(409).body(e.getMessage());
             } catch (Exception e) {
                 return ResponseEntity.status(401).body("Unauthorized");
             }
@@ -230,6 +252,8 @@ import java.util.Map;
 
                 adminService.updateCitizenField(citizenId, fieldName, value);
                 return ResponseEntity.ok("Citizen updated successfully.");
+            } catch (ConcurrentUpdateException e) {
+                return ResponseEntity.status(409).body(e.getMessage());
             } catch (Exception e) {
                 return ResponseEntity.status(401).body("Unauthorized");
             }
@@ -251,6 +275,24 @@ import java.util.Map;
 
         // ----------------------- Fee Management -----------------------
 
+        // Runs the overdue-fee accrual sweep now instead of waiting for the schedule
+        @PostMapping("/fees/accrue")
+        public ResponseEntity<?> accrueFees(@RequestHeader("Authorization") String token) {
+            try {
+                if (!"admin".equals(token)) {
+                    return ResponseEntity.status(403).body("Access denied: Admins only.");
+                }
+                FeeAccrualService.AccrualSummary summary = feeAccrualService.sweep(LocalDate.now());
+                if (summary == null) {
+                    return ResponseEntity.status(409).body("A fee accrual sweep is already running.");
+                }
+                return ResponseEntity.ok(summary);
+            } catch (Exception e) {
+                logger.error("Error running fee accrual: {}", e.getMessage());
+                return ResponseEntity.status(500).body("An error occurred while accruing fees.");
+            }
+        }
+
         @PostMapping("/add-fee")
         public ResponseEntity<String> addFee(@RequestHeader("Authorization") String token, @RequestBody Fees fee) {
             try {
@@ -280,6 +322,8 @@ import java.util.Map;
 
                 adminService.updateFeeField(feeId, fieldName, value);
                 return ResponseEntity.ok("Fee updated successfully.");
+            } catch (ConcurrentUpdateException e) {
+                return ResponseEntity.status(409).body(e.getMessage());
             } catch (Exception e) {
                 logger.error("Error updating fee: {}", e.getMessage());
                 return ResponseEntity.status(500).body("Internal server error.");
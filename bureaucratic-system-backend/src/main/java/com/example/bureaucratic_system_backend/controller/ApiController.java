@@ -3,17 +3,24 @@ package com.example.bureaucratic_system_backend.controller;
 import com.example.bureaucratic_system_backend.model.Citizen;
 import com.example.bureaucratic_system_backend.model.Fees;
 import com.example.bureaucratic_system_backend.model.LoanRequest;
+import com.example.bureaucratic_system_backend.model.LoanTicket;
 import com.example.bureaucratic_system_backend.service.BookLoaningService;
 import com.example.bureaucratic_system_backend.service.CitizenService;
 import com.example.bureaucratic_system_backend.service.EnrollmentDepartmentService;
 import com.example.bureaucratic_system_backend.service.FeeService;
+import com.example.bureaucratic_system_backend.service.LoanTicketService;
+import com.example.bureaucratic_system_backend.service.loan.LoanQueueFullException;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/citizens")
@@ -29,6 +36,8 @@ public class ApiController {
     private FeeService feeService;
     @Autowired
     private EnrollmentDepartmentService enrollmentDepartmentService;
+    @Autowired
+    private LoanTicketService loanTicketService;
 
     private String extractRoleFromToken(String token) throws Exception {
         FirebaseToken decodedToken = FirebaseAuth.getInstance().verifyIdToken(token.replace("Bearer ", ""));
@@ -61,7 +70,7 @@ public class ApiController {
     }
 
     @PostMapping("/loan-request")
-    public ResponseEntity<String> processLoanRequest(@RequestHeader("Authorization") String token, @RequestBody LoanRequest loanRequest) {
+    public ResponseEntity<?> processLoanRequest(@RequestHeader("Authorization") String token, @RequestBody LoanRequest loanRequest) {
         try {
             if (!"citizen".equals(token)) {
                 return ResponseEntity.status(403).body("Access denied: citizen only.");
@@ -69,12 +78,52 @@ public class ApiController {
 
             Citizen citizen = new Citizen();
             citizen.setId(loanRequest.getCitizenId());
-            bookLoaningService.addCitizenToQueue(citizen, loanRequest.getBookTitle(), loanRequest.getBookAuthor());
-            return ResponseEntity.ok("Loan request processed successfully.");
+            LoanTicket ticket = bookLoaningService.addCitizenToQueue(citizen, loanRequest.getBookTitle(), loanRequest.getBookAuthor());
+            return ResponseEntity.accepted().body(ticket); // The outcome follows on the ticket
+        } catch (LoanQueueFullException e) {
+            throw e; // 429 with Retry-After from GlobalExceptionHandler
         } catch (Exception e) {
             return ResponseEntity.status(401).body("Unauthorized");
         }
     }
+
+    // One call for a kiosk's requests; tickets come back in request order
+    @PostMapping("/loan-requests")
+    public ResponseEntity<?> processLoanRequests(@RequestHeader("Authorization") String token, @RequestBody List<LoanRequest> loanRequests) {
+        if (!"citizen".equals(token)) {
+            return ResponseEntity.status(403).body("Access denied: citizen only.");
+        }
+        // A full queue (429) and an oversized batch (400) are answered by GlobalExceptionHandler
+        List<LoanTicket> tickets = bookLoaningService.addBatchToQueue(loanRequests);
+        return ResponseEntity.accepted().body(tickets);
+    }
+
+    @GetMapping("/loan-request/{ticketId}")
+    public ResponseEntity<?> getLoanTicket(@RequestHeader("Authorization") String token, @PathVariable String ticketId) {
+        if (!"citizen".equals(token)) {
+            return ResponseEntity.status(403).body("Access denied: citizen only.");
+        }
+        LoanTicket ticket = loanTicketService.find(ticketId);
+        if (ticket == null) {
+            return ResponseEntity.status(404).body("Loan ticket not found: " + ticketId);
+        }
+        return ResponseEntity.ok(ticket);
+    }
+
+    // EventSource can't set headers, so the role may also come as ?token=
+    @GetMapping(value = "/loan-request/{ticketId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamLoanTicket(@RequestHeader(value = "Authorization", required = false) String header,
+                                              @RequestParam(value = "token", required = false) String token,
+                                              @PathVariable String ticketId) {
+        if (!"citizen".equals(header) && !"citizen".equals(token)) {
+            return ResponseEntity.status(403).body("Access denied: citizen only.");
+        }
+        SseEmitter emitter = loanTicketService.subscribe(ticketId);
+        if (emitter == null) {
+            return ResponseEntity.status(404).body("Loan ticket not found: " + ticketId);
+        }
+        return ResponseEntity.ok(emitter);
+    }
     @GetMapping("/fees/{borrowId}")
     public ResponseEntity<?> getFeeByBorrowId(@RequestHeader("Authorization") String token, @PathVariable String borrowId) {
         try {
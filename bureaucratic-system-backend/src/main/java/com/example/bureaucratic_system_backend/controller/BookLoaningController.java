@@ -1,6 +1,7 @@
 package com.example.bureaucratic_system_backend.controller;
 
 import com.example.bureaucratic_system_backend.model.Citizen;
+import com.example.bureaucratic_system_backend.model.LoanTicket;
 import com.example.bureaucratic_system_backend.service.BookLoaningService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
@@ -14,8 +15,8 @@ public class BookLoaningController {
 
     @PostMapping("/add-to-queue")
     public String addCitizenToQueue(@RequestBody Citizen citizen, @RequestParam String bookTitle, @RequestParam String bookAuthor) {
-        bookLoaningService.addCitizenToQueue(citizen, bookTitle, bookAuthor);
-        return "Citizen added to the queue for book loaning.";
+        LoanTicket ticket = bookLoaningService.addCitizenToQueue(citizen, bookTitle, bookAuthor);
+        return "Citizen added to the queue for book loaning. Ticket: " + ticket.getTicketId();
     }
 
     @PostMapping("/pause-counter/{counterId}")
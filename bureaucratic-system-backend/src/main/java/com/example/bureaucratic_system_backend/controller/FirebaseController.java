@@ -29,7 +29,7 @@ public class FirebaseController {
 
     @GetMapping("/memberships/{citizenId}")
     public String getMembershipIdById(@PathVariable String citizenId) {
-        return FirebaseService.getMembershipIdById(citizenId);
+        return firebaseService.getMembershipIdById(citizenId);
     }
     // Enhanced /books endpoint
 
@@ -1,7 +1,10 @@
 package com.example.bureaucratic_system_backend.controller;
 
+import com.example.bureaucratic_system_backend.service.ConcurrentUpdateException;
+import com.example.bureaucratic_system_backend.service.loan.LoanQueueFullException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -19,6 +22,22 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
     }
 
+    // Handle a full loan queue: tell the client when to come back
+    @ExceptionHandler(LoanQueueFullException.class)
+    public ResponseEntity<String> handleLoanQueueFullException(LoanQueueFullException e) {
+        logger.warn("Handled LoanQueueFullException: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
+    // Handle an update that kept conflicting with concurrent writes: safe to retry
+    @ExceptionHandler(ConcurrentUpdateException.class)
+    public ResponseEntity<String> handleConcurrentUpdateException(ConcurrentUpdateException e) {
+        logger.warn("Handled ConcurrentUpdateException: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+
     // Handle RuntimeException (e.g., unexpected errors)
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleRuntimeException(RuntimeException e) {
@@ -0,0 +1,74 @@
+package com.example.bureaucratic_system_backend.lock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate heaviest keys of an unbounded stream in fixed memory (Space-Saving): at most
+ * capacity keys are counted, and a new key takes over the smallest count when the table is
+ * full. Any key seen more than total/capacity times is guaranteed to be in the table, and a
+ * count overestimates by at most the count it took over.
+ */
+class HotKeySketch {
+
+    record Entry(String category, String key, long count) {
+    }
+
+    private static final class Slot {
+        final String category;
+        final String key;
+        long count;
+
+        Slot(String category, String key, long count) {
+            this.category = category;
+            this.key = key;
+            this.count = count;
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, Slot> slots = new HashMap<>();
+
+    HotKeySketch(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    synchronized void add(String category, String key) {
+        String id = category + ':' + key;
+        Slot slot = slots.get(id);
+        if (slot != null) {
+            slot.count++;
+            return;
+        }
+        long inherited = 0;
+        if (slots.size() >= capacity) {
+            // Linear scan: the table is small and only contended acquisitions get here
+            Map.Entry<String, Slot> smallest = null;
+            for (Map.Entry<String, Slot> candidate : slots.entrySet()) {
+                if (smallest == null || candidate.getValue().count < smallest.getValue().count) {
+                    smallest = candidate;
+                }
+            }
+            inherited = smallest.getValue().count;
+            slots.remove(smallest.getKey());
+        }
+        slots.put(id, new Slot(category, key, inherited + 1));
+    }
+
+    // The n highest counts, highest first
+    synchronized List<Entry> top(int n) {
+        List<Entry> entries = new ArrayList<>(slots.size());
+        for (Slot slot : slots.values()) {
+            entries.add(new Entry(slot.category, slot.key, slot.count));
+        }
+        entries.sort((a, b) -> Long.compare(b.count(), a.count()));
+        return entries.subList(0, Math.min(n, entries.size()));
+    }
+
+    // Halves every count so old contention fades out; keys that reach 0 are dropped
+    synchronized void decay() {
+        slots.values().removeIf(slot -> (slot.count >>= 1) == 0);
+    }
+}
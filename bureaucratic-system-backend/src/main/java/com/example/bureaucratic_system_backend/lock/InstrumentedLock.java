@@ -0,0 +1,117 @@
+package com.example.bureaucratic_system_backend.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * View of a registry stripe reporting to LockMetrics how long each acquisition waited and how
+ * long the lock was then held. An acquisition counts as contended when an immediate tryLock
+ * fails, so uncontended locking costs one extra nanoTime call.
+ *
+ * One is allocated per stripe, up front, and shared by every thread. The hold bookkeeping is
+ * only touched by the thread holding the stripe, so the stripe itself guards it. The (category,
+ * key) an acquisition is reported under is the one the thread last passed to lockFor, which
+ * callers lock right away. Time spent waiting on a Condition counts as held.
+ */
+final class InstrumentedLock implements Lock {
+
+    // Per thread and reused, so lockFor allocates nothing
+    private static final ThreadLocal<Request> requests = ThreadLocal.withInitial(Request::new);
+
+    private final Lock delegate;
+    private final LockMetrics metrics;
+
+    // Guarded by delegate
+    private int holds;
+    private long acquiredAt;
+    private String heldCategory;
+
+    InstrumentedLock(Lock delegate, LockMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    // Records which document the calling thread is about to lock
+    static void requested(String category, String key) {
+        Request request = requests.get();
+        request.category = category;
+        request.key = key;
+    }
+
+    @Override
+    public void lock() {
+        if (delegate.tryLock()) {
+            acquired(0, false);
+            return;
+        }
+        long start = System.nanoTime();
+        delegate.lock();
+        acquired(System.nanoTime() - start, true);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (delegate.tryLock()) {
+            acquired(0, false);
+            return;
+        }
+        long start = System.nanoTime();
+        delegate.lockInterruptibly();
+        acquired(System.nanoTime() - start, true);
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (delegate.tryLock()) {
+            acquired(0, false);
+            return true;
+        }
+        Request request = requests.get();
+        metrics.contended(request.category, request.key);
+        return false;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if (delegate.tryLock()) {
+            acquired(0, false);
+            return true;
+        }
+        long start = System.nanoTime();
+        if (delegate.tryLock(time, unit)) {
+            acquired(System.nanoTime() - start, true);
+            return true;
+        }
+        Request request = requests.get();
+        metrics.contended(request.category, request.key);
+        return false;
+    }
+
+    @Override
+    public void unlock() {
+        if (holds > 0 && --holds == 0) {
+            metrics.released(heldCategory, System.nanoTime() - acquiredAt);
+        }
+        delegate.unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+        return delegate.newCondition();
+    }
+
+    private void acquired(long waitNanos, boolean contended) {
+        Request request = requests.get();
+        if (holds++ == 0) {
+            acquiredAt = System.nanoTime();
+            heldCategory = request.category;
+        }
+        metrics.acquired(request.category, request.key, waitNanos, contended);
+    }
+
+    private static final class Request {
+        private String category;
+        private String key;
+    }
+}
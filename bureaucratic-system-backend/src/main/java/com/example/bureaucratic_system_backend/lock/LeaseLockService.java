@@ -0,0 +1,122 @@
+package com.example.bureaucratic_system_backend.lock;
+
+import com.example.bureaucratic_system_backend.repository.Lease;
+import com.example.bureaucratic_system_backend.repository.LeaseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+/**
+ * Critical sections that hold across backend instances. A section runs under the registry lock
+ * of its (category, key), which orders the callers of this instance, and, with
+ * locks.lease.enabled, also under a lease from the LeaseRepository, which orders instances.
+ * The lease is acquired before the registry lock is taken, so waiting out another holder's
+ * lease never blocks the other keys that share the lock's stripe.
+ *
+ * A lease expires after locks.lease.ttl-ms even if its holder stalls, so the section gets the
+ * lease and should pass it as the fence of its final write: the store refuses that write once
+ * the lease has expired or gone to someone else. With leases disabled the section gets null,
+ * and writes go unfenced as before.
+ */
+@Component
+public class LeaseLockService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeaseLockService.class);
+
+    private static final long MAX_BACKOFF_MILLIS = 200;
+
+    private final LeaseRepository leases;
+    private final StripedLockRegistry lockRegistry;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final long waitMillis;
+    private final String owner;
+
+    public LeaseLockService(LeaseRepository leases, StripedLockRegistry lockRegistry,
+                            @Value("${locks.lease.enabled:false}") boolean enabled,
+                            @Value("${locks.lease.ttl-ms:15000}") long ttlMillis,
+                            @Value("${locks.lease.wait-ms:10000}") long waitMillis) {
+        this.leases = leases;
+        this.lockRegistry = lockRegistry;
+        this.enabled = enabled;
+        this.ttlMillis = Math.max(1000, ttlMillis);
+        this.waitMillis = Math.max(0, waitMillis);
+        String host = System.getenv().getOrDefault("HOSTNAME", "backend");
+        this.owner = host + "-" + UUID.randomUUID();
+        if (enabled) {
+            logger.info("Distributed leases enabled as owner {} (lease time {} ms).", owner, this.ttlMillis);
+        }
+    }
+
+    public <T> T withLease(String category, String key, Function<Lease, T> section) {
+        return withLease(category, key, key, section);
+    }
+
+    // metricsKey stands in for key in the lock metrics (see StripedLockRegistry)
+    public <T> T withLease(String category, String key, String metricsKey, Function<Lease, T> section) {
+        if (!enabled) {
+            return locked(category, key, metricsKey, section, null);
+        }
+        Lease lease = acquire(leaseName(category, key));
+        try {
+            return locked(category, key, metricsKey, section, lease);
+        } finally {
+            release(lease);
+        }
+    }
+
+    private <T> T locked(String category, String key, String metricsKey, Function<Lease, T> section, Lease lease) {
+        Lock lock = lockRegistry.lockFor(category, key, metricsKey);
+
+        lock.lock();
+        try {
+            return section.apply(lease);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Lease acquire(String name) {
+        long start = System.currentTimeMillis();
+        long backoff = 5;
+        while (true) {
+            Lease lease = leases.tryAcquire(name, owner, ttlMillis);
+            if (lease != null) {
+                return lease;
+            }
+            long waited = System.currentTimeMillis() - start;
+            if (waited >= waitMillis) {
+                throw new LeaseUnavailableException(name, waited);
+            }
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LeaseUnavailableException(name, System.currentTimeMillis() - start);
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    // A lease that can't be released runs out on its own, so this never fails the section
+    private void release(Lease lease) {
+        try {
+            if (!leases.release(lease)) {
+                logger.warn("Lease {} (token {}) expired before it was released.", lease.name(), lease.token());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Error releasing lease {}: {}", lease.name(), e.getMessage());
+        }
+    }
+
+    // Lease names are document IDs, which can't contain '/'
+    public static String leaseName(String category, String key) {
+        return (category + ":" + key).replace('/', '_');
+    }
+}
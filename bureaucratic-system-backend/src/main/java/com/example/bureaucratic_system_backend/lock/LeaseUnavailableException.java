@@ -0,0 +1,9 @@
+package com.example.bureaucratic_system_backend.lock;
+
+// Another instance kept the lease for longer than the caller was willing to wait
+public class LeaseUnavailableException extends RuntimeException {
+
+    public LeaseUnavailableException(String name, long waitedMillis) {
+        super("Lease " + name + " still held elsewhere after " + waitedMillis + " ms.");
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.bureaucratic_system_backend.lock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention of the registry locks, by category (the collection a lock protects):
+ * locks.wait and locks.hold are timers with percentile histograms, locks.contended counts
+ * acquisitions that had to wait. The documents contended most often are tracked in a small
+ * sketch and published as the locks.contended.keys gauge, one row per hot key, refreshed every
+ * locks.metrics.hot-keys-refresh-ms. Counts halve at every refresh, so the gauge shows recent
+ * contention rather than the all-time total. Acquisitions reported without a key are counted
+ * but never published as hot keys.
+ */
+@Component
+public class LockMetrics {
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final int hotKeyCount;
+    private final HotKeySketch hotKeys;
+    private final MultiGauge hotKeyGauge;
+    private final ScheduledExecutorService refresher;
+
+    private final Map<String, Timer> waitTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> holdTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> contendedCounters = new ConcurrentHashMap<>();
+
+    public LockMetrics(MeterRegistry registry,
+                       @Value("${locks.metrics.enabled:true}") boolean enabled,
+                       @Value("${locks.metrics.hot-keys:10}") int hotKeyCount,
+                       @Value("${locks.metrics.hot-keys-refresh-ms:10000}") long refreshMillis) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.hotKeyCount = Math.max(1, hotKeyCount);
+        // Tracking a few times more keys than published keeps the published ones accurate
+        this.hotKeys = new HotKeySketch(this.hotKeyCount * 4);
+        if (!enabled) {
+            this.hotKeyGauge = null;
+            this.refresher = null;
+            return;
+        }
+        this.hotKeyGauge = MultiGauge.builder("locks.contended.keys")
+                .description("Recent contended acquisitions of the most contended documents")
+                .register(registry);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "lock-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, refreshMillis);
+        refresher.scheduleWithFixedDelay(this::publishHotKeys, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    void acquired(String category, String key, long waitNanos, boolean contended) {
+        waitTimers.computeIfAbsent(category, c -> timer("locks.wait", c, "Time spent waiting for a lock"))
+                .record(waitNanos, TimeUnit.NANOSECONDS);
+        if (contended) {
+            contended(category, key);
+        }
+    }
+
+    void released(String category, long holdNanos) {
+        holdTimers.computeIfAbsent(category, c -> timer("locks.hold", c, "Time a lock was held"))
+                .record(holdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void contended(String category, String key) {
+        contendedCounters.computeIfAbsent(category, c -> Counter.builder("locks.contended")
+                        .tag("category", c)
+                        .description("Lock acquisitions that found the lock taken")
+                        .register(registry))
+                .increment();
+        if (key != null) {
+            hotKeys.add(category, key);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdown();
+        }
+    }
+
+    private void publishHotKeys() {
+        List<MultiGauge.Row<?>> rows = new ArrayList<>();
+        for (HotKeySketch.Entry entry : hotKeys.top(hotKeyCount)) {
+            rows.add(MultiGauge.Row.of(Tags.of("category", entry.category(), "key", entry.key()), entry.count()));
+        }
+        // Overwrite drops the rows of keys that are no longer hot
+        hotKeyGauge.register(rows, true);
+        hotKeys.decay();
+    }
+
+    private Timer timer(String name, String category, String description) {
+        return Timer.builder(name)
+                .tag("category", category)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
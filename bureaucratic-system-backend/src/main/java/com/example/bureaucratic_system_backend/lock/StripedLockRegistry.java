@@ -0,0 +1,67 @@
+package com.example.bureaucratic_system_backend.lock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks shared by every service, picked by hashing the document a write touches.
+ * The same (collection, id) always maps to the same lock, so writes to one document are
+ * serialized wherever they come from. Unrelated documents occasionally share a lock, which only
+ * costs a little contention. Memory doesn't grow with the number of keys, and finding a bare lock
+ * allocates nothing.
+ *
+ * Locks are reentrant, but two different documents may share one, so code must not hold one
+ * document's lock while taking another's.
+ *
+ * With lock metrics enabled, lockFor hands out the stripe's wrapper, allocated with the stripe,
+ * which times the wait and hold of each acquisition (see LockMetrics); disabled, it returns the
+ * stripe itself. Contended documents are reported to the hot-key gauge by id, unless the caller
+ * passes a metrics key: keys that carry personal data (citizen IDs) pass a redacted one, or null
+ * to stay out of the gauge.
+ */
+@Component
+public class StripedLockRegistry {
+
+    private final Lock[] stripes;
+    private final Lock[] instrumented;
+    private final int mask;
+
+    public StripedLockRegistry(@Value("${locks.stripes:256}") int stripeCount, LockMetrics metrics) {
+        int size = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1; // Power of two
+        this.stripes = new Lock[size];
+        this.instrumented = metrics.isEnabled() ? new Lock[size] : null;
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+            if (instrumented != null) {
+                instrumented[i] = new InstrumentedLock(stripes[i], metrics);
+            }
+        }
+    }
+
+    public Lock lockFor(String collection, String id) {
+        return lockFor(collection, id, id);
+    }
+
+    public Lock lockFor(String collection, String id, String metricsKey) {
+        int stripe = stripeOf(collection, id);
+        if (instrumented == null) {
+            return stripes[stripe];
+        }
+        InstrumentedLock.requested(collection, metricsKey);
+        return instrumented[stripe];
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    int stripeOf(String collection, String id) {
+        int hash = collection.hashCode() * 31 + Objects.hashCode(id);
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -4,6 +4,8 @@ public class LoanRequest {
     private String bookTitle;
     private String bookAuthor;
     private String citizenId;
+    private String ticketId; // Assigned when queued, never taken from the client
+    private long queuedAt; // Epoch millis when admitted to the queue
 
     // Constructor
     public LoanRequest(String bookTitle, String bookAuthor, String citizenId) {
@@ -40,4 +42,20 @@ public class LoanRequest {
     public void setCitizenId(String citizenId) {
         this.citizenId = citizenId;
     }
+
+    public String getTicketId() {
+        return ticketId;
+    }
+
+    public void setTicketId(String ticketId) {
+        this.ticketId = ticketId;
+    }
+
+    public long getQueuedAt() {
+        return queuedAt;
+    }
+
+    public void setQueuedAt(long queuedAt) {
+        this.queuedAt = queuedAt;
+    }
 }
@@ -0,0 +1,16 @@
+package com.example.bureaucratic_system_backend.model;
+
+public enum LoanStatus {
+    QUEUED,
+    PROCESSING,
+    LOANED,
+    NO_MEMBERSHIP,
+    ALREADY_BORROWED,
+    UNAVAILABLE,
+    SHED, // Dropped from a full or slow queue before a counter took it
+    FAILED;
+
+    public boolean isFinal() {
+        return this != QUEUED && this != PROCESSING;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.bureaucratic_system_backend.model;
+
+public class LoanTicket {
+    private String ticketId;
+    private String citizenId;
+    private String bookTitle;
+    private String bookAuthor;
+    private LoanStatus status;
+    private Integer position; // Requests ahead in arrival order, plus one; only while queued
+    private Integer counterId;
+    private String borrowId;
+    private String bookId;
+    private String submittedAt;
+    private String updatedAt;
+
+    // Constructor
+    public LoanTicket(String ticketId, String citizenId, String bookTitle, String bookAuthor,
+                      LoanStatus status, String submittedAt) {
+        this.ticketId = ticketId;
+        this.citizenId = citizenId;
+        this.bookTitle = bookTitle;
+        this.bookAuthor = bookAuthor;
+        this.status = status;
+        this.submittedAt = submittedAt;
+        this.updatedAt = submittedAt;
+    }
+
+    public LoanTicket(LoanTicket other) {
+        this.ticketId = other.ticketId;
+        this.citizenId = other.citizenId;
+        this.bookTitle = other.bookTitle;
+        this.bookAuthor = other.bookAuthor;
+        this.status = other.status;
+        this.position = other.position;
+        this.counterId = other.counterId;
+        this.borrowId = other.borrowId;
+        this.bookId = other.bookId;
+        this.submittedAt = other.submittedAt;
+        this.updatedAt = other.updatedAt;
+    }
+
+    public LoanTicket() {
+
+    }
+
+    // Getters and setters
+    public String getTicketId() {
+        return ticketId;
+    }
+
+    public void setTicketId(String ticketId) {
+        this.ticketId = ticketId;
+    }
+
+    public String getCitizenId() {
+        return citizenId;
+    }
+
+    public void setCitizenId(String citizenId) {
+        this.citizenId = citizenId;
+    }
+
+    public String getBookTitle() {
+        return bookTitle;
+    }
+
+    public void setBookTitle(String bookTitle) {
+        this.bookTitle = bookTitle;
+    }
+
+    public String getBookAuthor() {
+        return bookAuthor;
+    }
+
+    public void setBookAuthor(String bookAuthor) {
+        this.bookAuthor = bookAuthor;
+    }
+
+    public LoanStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(LoanStatus status) {
+        this.status = status;
+    }
+
+    public Integer getPosition() {
+        return position;
+    }
+
+    public void setPosition(Integer position) {
+        this.position = position;
+    }
+
+    public Integer getCounterId() {
+        return counterId;
+    }
+
+    public void setCounterId(Integer counterId) {
+        this.counterId = counterId;
+    }
+
+    public String getBorrowId() {
+        return borrowId;
+    }
+
+    public void setBorrowId(String borrowId) {
+        this.borrowId = borrowId;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(String bookId) {
+        this.bookId = bookId;
+    }
+
+    public String getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(String submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public String getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(String updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
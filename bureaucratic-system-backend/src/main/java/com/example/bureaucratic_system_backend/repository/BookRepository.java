@@ -0,0 +1,24 @@
+package com.example.bureaucratic_system_backend.repository;
+
+import com.example.bureaucratic_system_backend.model.Book;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface BookRepository extends DocumentRepository<Book> {
+
+    String COLLECTION = "books";
+
+    // First copy of the title that is currently available, or null
+    Book findFirstAvailable(String title, String author);
+
+    // ID of any copy of the title, available or not, or null
+    String findIdByTitleAndAuthor(String title, String author);
+
+    default CompletableFuture<Book> findFirstAvailableAsync(String title, String author) {
+        return DocumentRepository.completeWith(() -> findFirstAvailable(title, author));
+    }
+
+    default CompletableFuture<String> findIdByTitleAndAuthorAsync(String title, String author) {
+        return DocumentRepository.completeWith(() -> findIdByTitleAndAuthor(title, author));
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.bureaucratic_system_backend.repository;
+
+import com.example.bureaucratic_system_backend.model.Borrows;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface BorrowRepository extends DocumentRepository<Borrows> {
+
+    String COLLECTION = "borrows";
+
+    List<Borrows> findByMembershipId(String membershipId);
+
+    // Borrow of the book by the membership that has no return date yet, or null
+    Borrows findActive(String membershipId, String bookId);
+
+    // Up to limit unreturned borrows in ID order, starting after afterId (null for the first page)
+    List<Borrows> findActivePage(String afterId, int limit);
+
+    /**
+     * Loan commit: in one atomic step, checks that the borrowed book exists and is available,
+     * marks it unavailable and inserts the borrow. Returns false, writing nothing, when the
+     * book is missing or already out. With a fence, the step also checks that the lease is
+     * still held and throws LeaseLostException, writing nothing, if not.
+     */
+    boolean insertIfBookAvailable(Borrows borrow, Lease fence);
+
+    default CompletableFuture<Borrows> findActiveAsync(String membershipId, String bookId) {
+        return DocumentRepository.completeWith(() -> findActive(membershipId, bookId));
+    }
+}
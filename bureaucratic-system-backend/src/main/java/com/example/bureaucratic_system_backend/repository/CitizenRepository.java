@@ -0,0 +1,8 @@
+package com.example.bureaucratic_system_backend.repository;
+
+import com.example.bureaucratic_system_backend.model.Citizen;
+
+public interface CitizenRepository extends DocumentRepository<Citizen> {
+
+    String COLLECTION = "citizen";
+}
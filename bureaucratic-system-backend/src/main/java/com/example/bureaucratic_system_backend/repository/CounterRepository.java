@@ -0,0 +1,12 @@
+package com.example.bureaucratic_system_backend.repository;
+
+import com.example.bureaucratic_system_backend.model.Counter;
+
+public interface CounterRepository extends DocumentRepository<Counter> {
+
+    String COLLECTION = "counters";
+
+    void updatePaused(int counterId, boolean isPaused);
+
+    void deleteAll();
+}
@@ -0,0 +1,23 @@
+package com.example.bureaucratic_system_backend.repository;
+
+import java.util.Map;
+
+/**
+ * Callback for changes in a collection. Both storage engines replay the current
+ * documents as ADDED when a listener is registered, like a Firestore snapshot listener.
+ */
+@FunctionalInterface
+public interface DocumentChangeListener {
+
+    enum ChangeType { ADDED, MODIFIED, REMOVED }
+
+    void onChange(ChangeType type, String documentId, Map<String, Object> data);
+
+    // Called once the replay of the current documents is complete
+    default void onSynced() {
+    }
+
+    // Called when the engine stops delivering changes; no further calls follow
+    default void onDisconnected() {
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.bureaucratic_system_backend.repository;
+
+// A document addressed by collection and key, as used for multi-collection reads
+public record DocumentKey(String collection, String id) {
+
+    public static DocumentKey of(String collection, String id) {
+        return new DocumentKey(collection, id);
+    }
+}
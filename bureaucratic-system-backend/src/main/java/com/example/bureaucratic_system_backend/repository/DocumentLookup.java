@@ -0,0 +1,14 @@
+package com.example.bureaucratic_system_backend.repository;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Keyed reads of several documents at once, which may live in different collections.
+ * Firestore answers them with one getAll RPC instead of one round trip per document.
+ */
+public interface DocumentLookup {
+
+    // Fields of every document that exists; missing documents are absent from the result
+    Map<DocumentKey, Map<String, Object>> getAll(Collection<DocumentKey> keys);
+}
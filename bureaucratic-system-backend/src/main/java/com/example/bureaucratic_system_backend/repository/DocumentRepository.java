@@ -0,0 +1,77 @@
+package com.example.bureaucratic_system_backend.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Operations shared by every collection, whatever storage engine backs it. The *Async variants
+ * default to running the blocking call inline, which suits engines without network I/O;
+ * remote engines override them to complete from their own I/O callbacks.
+ */
+public interface DocumentRepository<T> {
+
+    String collectionName();
+
+    T findById(String id);
+
+    Map<String, Object> findDataById(String id);
+
+    boolean existsById(String id);
+
+    List<T> findAll();
+
+    List<String> findAllIds();
+
+    // Found documents by ID, read in one round trip where the engine allows; missing ones are absent
+    Map<String, T> findAllByIds(Collection<String> ids);
+
+    void save(T entity);
+
+    void updateField(String id, String fieldName, Object value);
+
+    // ----------------------- Optimistic concurrency -----------------------
+
+    // The document with its current version, or null if it doesn't exist
+    VersionedDocument findVersionedById(String id);
+
+    /**
+     * Writes the field only if the document is still at the version it was read at. Returns
+     * false, without writing, if it was written or deleted since.
+     */
+    boolean updateFieldIfVersion(String id, String fieldName, Object value, Object version);
+
+    void deleteById(String id);
+
+    void addChangeListener(DocumentChangeListener listener);
+
+    // ----------------------- Async -----------------------
+
+    default CompletableFuture<T> findByIdAsync(String id) {
+        return completeWith(() -> findById(id));
+    }
+
+    default CompletableFuture<Void> saveAsync(T entity) {
+        return completeWith(() -> {
+            save(entity);
+            return null;
+        });
+    }
+
+    default CompletableFuture<Void> updateFieldAsync(String id, String fieldName, Object value) {
+        return completeWith(() -> {
+            updateField(id, fieldName, value);
+            return null;
+        });
+    }
+
+    static <V> CompletableFuture<V> completeWith(Supplier<V> call) {
+        try {
+            return CompletableFuture.completedFuture(call.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
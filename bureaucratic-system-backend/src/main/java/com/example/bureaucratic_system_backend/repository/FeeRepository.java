@@ -0,0 +1,50 @@
+package com.example.bureaucratic_system_backend.repository;
+
+import com.example.bureaucratic_system_backend.model.Fees;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface FeeRepository extends DocumentRepository<Fees> {
+
+    String COLLECTION = "fees";
+
+    // Firestore's limit on the writes of one transaction
+    int MAX_TRANSACTION_WRITES = 500;
+
+    Fees findByBorrowId(String borrowId);
+
+    List<Fees> findByMembershipId(String membershipId);
+
+    /**
+     * Inserts the fee unless one with its ID exists; false if it does. With a fence, also checks
+     * in the same step that the lease is still held and throws LeaseLostException if not.
+     */
+    boolean insertIfAbsent(Fees fee, Lease fence);
+
+    /**
+     * Sets the amount of an unpaid fee in one step with the check; false, without writing, if the
+     * fee is paid or missing. A fence is checked the same way as for insertIfAbsent.
+     */
+    boolean updateAmountIfUnpaid(String feeId, String amount, Lease fence);
+
+    /**
+     * Overdue accrual for books still out, several fees per atomic step: up to
+     * MAX_TRANSACTION_WRITES per transaction on Firestore. Each fee is written only if, in the
+     * same step, its borrow (the fee's borrowId) has no return date, nobody holds the lease
+     * named with it, and the fee is missing (created) or unpaid at another amount (updated).
+     * The others are skipped without failing the step.
+     */
+    AccrualCounts accrueWhileBorrowed(List<Accrual> accruals);
+
+    // The fee a borrow should have now, and the lease a return settling that fee would hold
+    record Accrual(Fees fee, String leaseName) {
+    }
+
+    record AccrualCounts(int created, int updated) {
+    }
+
+    default CompletableFuture<Fees> findByBorrowIdAsync(String borrowId) {
+        return DocumentRepository.completeWith(() -> findByBorrowId(borrowId));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.bureaucratic_system_backend.repository;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A time-bounded claim on a named lock, stored as one document of the leases collection while
+ * it is held; releasing it deletes the document. A write that checks the lease (a fenced write)
+ * is refused once the document shows another holder or is gone, even if the earlier holder
+ * still believes it holds the lease.
+ *
+ * The token grows with every grant of the name. It comes from the grant time in microseconds,
+ * never repeating within an instance, rather than from the stored token, which a released lease
+ * no longer has; so it keeps growing across releases as long as clocks agree to within the time
+ * between a release and the next grant.
+ */
+public record Lease(String name, String owner, long token, long expiresAt) {
+
+    private static final AtomicLong lastToken = new AtomicLong();
+
+    /**
+     * The lease that follows the stored one, or null while the stored one is unexpired.
+     * Leases are not reentrant: a holder asking again waits for its own lease like anyone else.
+     */
+    public static Lease grant(String name, String owner, Map<String, Object> stored, long now, long ttlMillis) {
+        if (isTaken(stored, now)) {
+            return null;
+        }
+        long previousToken = stored == null ? 0 : longField(stored, "token");
+        return new Lease(name, owner, Math.max(previousToken + 1, nextToken()), now + ttlMillis);
+    }
+
+    // Whether the stored document still shows this lease, unexpired
+    public boolean isHeldIn(Map<String, Object> stored, long now) {
+        return stored != null
+                && owner.equals(stored.get("owner"))
+                && longField(stored, "token") == token
+                && longField(stored, "expiresAt") > now;
+    }
+
+    // Whether the stored document shows a lease that hasn't expired, whoever holds it
+    public static boolean isTaken(Map<String, Object> stored, long now) {
+        return stored != null && longField(stored, "expiresAt") > now;
+    }
+
+    public Map<String, Object> toDocument() {
+        Map<String, Object> document = new HashMap<>();
+        document.put("owner", owner);
+        document.put("token", token);
+        document.put("expiresAt", expiresAt);
+        return document;
+    }
+
+    private static long nextToken() {
+        Instant now = Instant.now();
+        long micros = now.getEpochSecond() * 1_000_000 + now.getNano() / 1_000;
+        return lastToken.accumulateAndGet(micros, (last, time) -> Math.max(last + 1, time));
+    }
+
+    private static long longField(Map<String, Object> stored, String field) {
+        return stored.get(field) instanceof Number number ? number.longValue() : 0;
+    }
+}
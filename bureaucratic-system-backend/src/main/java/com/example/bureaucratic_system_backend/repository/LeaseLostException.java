@@ -0,0 +1,9 @@
+package com.example.bureaucratic_system_backend.repository;
+
+// A fenced write found that its lease had expired or passed to another holder; nothing was written
+public class LeaseLostException extends RepositoryException {
+
+    public LeaseLostException(Lease lease) {
+        super("Lease " + lease.name() + " (token " + lease.token() + ") is no longer held by " + lease.owner() + ".");
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.bureaucratic_system_backend.repository;
+
+/**
+ * Leases on named locks, shared by every backend instance that uses the same store. A held name
+ * is one document holding the owner, the fencing token and the expiry time, changed atomically
+ * and deleted on release; the document of a holder that never released is taken over by the
+ * next grant. Expiry is judged by the caller's clock, so clocks must agree to well within the
+ * lease time.
+ */
+public interface LeaseRepository {
+
+    String COLLECTION = "leases";
+
+    // The new lease, or null while someone holds an unexpired one
+    Lease tryAcquire(String name, String owner, long ttlMillis);
+
+    // Ends the lease and deletes its document if it is still held; false if it had expired or passed on already
+    boolean release(Lease lease);
+}
@@ -0,0 +1,16 @@
+package com.example.bureaucratic_system_backend.repository;
+
+import com.example.bureaucratic_system_backend.model.Membership;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface MembershipRepository extends DocumentRepository<Membership> {
+
+    String COLLECTION = "memberships";
+
+    String findIdByCitizenId(String citizenId);
+
+    default CompletableFuture<String> findIdByCitizenIdAsync(String citizenId) {
+        return DocumentRepository.completeWith(() -> findIdByCitizenId(citizenId));
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.bureaucratic_system_backend.repository;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters that hand out ranges of IDs. Each sequence is one document holding the next
+ * free value, advanced atomically.
+ */
+public interface SequenceRepository {
+
+    String COLLECTION = "sequences";
+
+    /**
+     * Reserves blockSize consecutive values and returns the first. initialValue is only asked
+     * for when the sequence does not exist yet.
+     */
+    long reserve(String sequenceName, int blockSize, LongSupplier initialValue);
+}
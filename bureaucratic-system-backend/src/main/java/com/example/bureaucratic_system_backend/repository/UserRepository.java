@@ -0,0 +1,10 @@
+package com.example.bureaucratic_system_backend.repository;
+
+import java.util.Map;
+
+public interface UserRepository {
+
+    String COLLECTION = "users";
+
+    Map<String, Object> findByEmail(String email);
+}
@@ -0,0 +1,8 @@
+package com.example.bureaucratic_system_backend.repository;
+
+import java.util.Map;
+
+// A document's fields with the version they were read at. The version is opaque: only the
+// engine that produced it compares it, on a conditional write
+public record VersionedDocument(Map<String, Object> data, Object version) {
+}
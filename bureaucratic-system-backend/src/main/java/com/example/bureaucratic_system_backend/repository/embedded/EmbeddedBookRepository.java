@@ -0,0 +1,33 @@
+package com.example.bureaucratic_system_backend.repository.embedded;
+
+import com.example.bureaucratic_system_backend.model.Book;
+import com.example.bureaucratic_system_backend.repository.BookRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+
+@Repository
+@Profile("embedded")
+public class EmbeddedBookRepository extends EmbeddedDocumentRepository<Book> implements BookRepository {
+
+    public EmbeddedBookRepository(EmbeddedStore store) {
+        super(store, COLLECTION, Book.class, "name", "author", "available");
+    }
+
+    @Override
+    protected String idOf(Book book) {
+        return book.getId();
+    }
+
+    @Override
+    public Book findFirstAvailable(String title, String author) {
+        String id = collection.findFirstId(Map.of("name", title, "author", author, "available", true));
+        return id == null ? null : load(id);
+    }
+
+    @Override
+    public String findIdByTitleAndAuthor(String title, String author) {
+        return collection.findFirstId(Map.of("name", title, "author", author));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.bureaucratic_system_backend.repository.embedded;
+
+import com.example.bureaucratic_system_backend.model.Borrows;
+import com.example.bureaucratic_system_backend.repository.BookRepository;
+import com.example.bureaucratic_system_backend.repository.BorrowRepository;
+import com.example.bureaucratic_system_backend.repository.Lease;
+import com.example.bureaucratic_system_backend.repository.LeaseLostException;
+import com.example.bureaucratic_system_backend.repository.LeaseRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@Profile("embedded")
+public class EmbeddedBorrowRepository extends EmbeddedDocumentRepository<Borrows> implements BorrowRepository {
+
+    private final EmbeddedCollection books;
+    private final EmbeddedCollection leases;
+
+    public EmbeddedBorrowRepository(EmbeddedStore store) {
+        super(store, COLLECTION, Borrows.class, "membershipId", "bookId", "returnDate");
+        this.books = store.collection(BookRepository.COLLECTION);
+        this.leases = store.collection(LeaseRepository.COLLECTION);
+    }
+
+    @Override
+    protected String idOf(Borrows borrow) {
+        return borrow.getId();
+    }
+
+    @Override
+    public List<Borrows> findByMembershipId(String membershipId) {
+        return loadAll(collection.findIds(Map.of("membershipId", membershipId)));
+    }
+
+    @Override
+    public boolean insertIfBookAvailable(Borrows borrow, Lease fence) {
+        boolean[] inserted = new boolean[1];
+        boolean[] fenced = new boolean[1];
+        // The borrow is written while the book collection is locked, so the check, the flip and
+        // the insert are one step for every other writer of the book
+        books.compute(borrow.getBookId(), book -> {
+            // Leases are written under their own collection's lock; within one process a
+            // lease can only be lost by expiring, which this read sees
+            if (fence != null && !EmbeddedLeaseRepository.isHeld(leases, fence)) {
+                fenced[0] = true;
+                return null;
+            }
+            if (book == null || !Boolean.TRUE.equals(book.get("available"))) {
+                return null;
+            }
+            collection.put(idOf(borrow), toData(borrow));
+            book.put("available", false);
+            inserted[0] = true;
+            return book;
+        });
+        if (fenced[0]) {
+            throw new LeaseLostException(fence);
+        }
+        return inserted[0];
+    }
+
+    @Override
+    public List<Borrows> findActivePage(String afterId, int limit) {
+        // Map.of rejects the null return date
+        Map<String, Object> criteria = new HashMap<>();
+        criteria.put("returnDate", null);
+        return loadAll(collection.findIdsAfter(criteria, afterId, limit));
+    }
+
+    @Override
+    public Borrows findActive(String membershipId, String bookId) {
+        // Map.of rejects the null return date
+        Map<String, Object> criteria = new HashMap<>();
+        criteria.put("membershipId", membershipId);
+        criteria.put("bookId", bookId);
+        criteria.put("returnDate", null);
+        String id = collection.findFirstId(criteria);
+        return id == null ? null : load(id);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.bureaucratic_system_backend.repository.embedded;
+
+import com.example.bureaucratic_system_backend.model.Citizen;
+import com.example.bureaucratic_system_backend.repository.CitizenRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@Profile("embedded")
+public class EmbeddedCitizenRepository extends EmbeddedDocumentRepository<Citizen> implements CitizenRepository {
+
+    public EmbeddedCitizenRepository(EmbeddedStore store) {
+        super(store, COLLECTION, Citizen.class);
+    }
+
+    @Override
+    protected String idOf(Citizen citizen) {
+        return citizen.getId();
+    }
+}
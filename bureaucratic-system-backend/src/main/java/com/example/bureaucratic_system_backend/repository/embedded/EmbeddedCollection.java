@@ -0,0 +1,318 @@
+package com.example.bureaucratic_system_backend.repository.embedded;
+
+import com.example.bureaucratic_system_backend.repository.DocumentChangeListener;
+import com.example.bureaucratic_system_backend.repository.DocumentChangeListener.ChangeType;
+import com.example.bureaucratic_system_backend.repository.RepositoryException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * One collection of the embedded store. Documents are field maps keyed by ID, and every
+ * declared field has a hash index (value -> document IDs) kept in step with each write.
+ * Writes are serialized per collection; reads never lock and re-check candidates against
+ * the current document, so a reader racing a writer can see stale but never wrong results.
+ * Each document also carries the collection version of its last write as its revision, which
+ * conditional writes compare against.
+ */
+public class EmbeddedCollection {
+
+    // ConcurrentHashMap rejects null keys, but "field == null" is a valid query
+    private static final Object NULL_KEY = new Object();
+
+    private final String name;
+    private final Map<String, Map<String, Object>> documents = new ConcurrentHashMap<>();
+    private final Map<String, Map<Object, Set<String>>> indexes = new ConcurrentHashMap<>();
+    private final Map<String, Long> revisions = new ConcurrentHashMap<>();
+    private final List<DocumentChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object writeLock = new Object();
+    private volatile long version;
+
+    public EmbeddedCollection(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    public void ensureIndex(String field) {
+        synchronized (writeLock) {
+            if (indexes.containsKey(field)) {
+                return;
+            }
+            Map<Object, Set<String>> index = new ConcurrentHashMap<>();
+            documents.forEach((id, data) -> {
+                if (data.containsKey(field)) {
+                    index.computeIfAbsent(indexKey(data.get(field)), k -> ConcurrentHashMap.newKeySet()).add(id);
+                }
+            });
+            indexes.put(field, index);
+        }
+    }
+
+    // ----------------------- Reads -----------------------
+
+    public Map<String, Object> get(String id) {
+        Map<String, Object> data = documents.get(id);
+        return data == null ? null : new HashMap<>(data);
+    }
+
+    // Revision of the document's last write, or null if it doesn't exist
+    public Long revision(String id) {
+        return revisions.get(id);
+    }
+
+    public boolean contains(String id) {
+        return documents.containsKey(id);
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    public List<String> ids() {
+        List<String> ids = new ArrayList<>(documents.keySet());
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * IDs of the documents whose fields equal every value in the criteria, in ID order like
+     * Firestore. Starts from the smallest matching index bucket; unindexed fields are filtered.
+     */
+    public List<String> findIds(Map<String, Object> criteria) {
+        List<String> matches = new ArrayList<>();
+        for (String id : candidates(criteria)) {
+            Map<String, Object> data = documents.get(id);
+            if (data != null && matches(data, criteria)) {
+                matches.add(id);
+            }
+        }
+        Collections.sort(matches);
+        return matches;
+    }
+
+    /**
+     * One page of findIds: the first limit matching IDs after afterId (null for the first page).
+     * Keeps only the page while scanning, so paging through a large result stays small.
+     */
+    public List<String> findIdsAfter(Map<String, Object> criteria, String afterId, int limit) {
+        // Largest kept ID on top, to be dropped when a smaller one turns up
+        PriorityQueue<String> page = new PriorityQueue<>(Comparator.reverseOrder());
+        for (String id : candidates(criteria)) {
+            if ((afterId != null && id.compareTo(afterId) <= 0)
+                    || (page.size() >= limit && id.compareTo(page.peek()) >= 0)) {
+                continue;
+            }
+            Map<String, Object> data = documents.get(id);
+            if (data != null && matches(data, criteria)) {
+                page.add(id);
+                if (page.size() > limit) {
+                    page.poll();
+                }
+            }
+        }
+        List<String> ids = new ArrayList<>(page);
+        Collections.sort(ids);
+        return ids;
+    }
+
+    // Smallest matching index bucket, or every document if no criterion is indexed
+    private Collection<String> candidates(Map<String, Object> criteria) {
+        Collection<String> candidates = null;
+        for (Map.Entry<String, Object> criterion : criteria.entrySet()) {
+            Map<Object, Set<String>> index = indexes.get(criterion.getKey());
+            if (index != null) {
+                Set<String> bucket = index.getOrDefault(indexKey(criterion.getValue()), Collections.emptySet());
+                if (candidates == null || bucket.size() < candidates.size()) {
+                    candidates = bucket;
+                }
+            }
+        }
+        return candidates == null ? documents.keySet() : candidates;
+    }
+
+    public String findFirstId(Map<String, Object> criteria) {
+        List<String> ids = findIds(criteria);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    // ----------------------- Writes -----------------------
+
+    public void put(String id, Map<String, Object> data) {
+        synchronized (writeLock) {
+            Map<String, Object> stored = Collections.unmodifiableMap(new HashMap<>(data));
+            Map<String, Object> previous = documents.put(id, stored);
+            reindex(id, previous, stored);
+            revisions.put(id, ++version);
+            fire(previous == null ? ChangeType.ADDED : ChangeType.MODIFIED, id, stored);
+        }
+    }
+
+    public void update(String id, Map<String, Object> fields) {
+        synchronized (writeLock) {
+            Map<String, Object> previous = documents.get(id);
+            if (previous == null) {
+                throw new RepositoryException("No document to update in " + name + ": " + id);
+            }
+            Map<String, Object> merged = new HashMap<>(previous);
+            merged.putAll(fields);
+            Map<String, Object> stored = Collections.unmodifiableMap(merged);
+            documents.put(id, stored);
+            reindex(id, previous, stored);
+            revisions.put(id, ++version);
+            fire(ChangeType.MODIFIED, id, stored);
+        }
+    }
+
+    /**
+     * Merges the fields into the document only if its revision is still the expected one.
+     * Returns false, without writing, if it was written or removed since.
+     */
+    public boolean updateIfRevision(String id, Map<String, Object> fields, Long expectedRevision) {
+        synchronized (writeLock) {
+            if (!documents.containsKey(id) || !Objects.equals(revisions.get(id), expectedRevision)) {
+                return false;
+            }
+            update(id, fields);
+            return true;
+        }
+    }
+
+    /**
+     * Reads and replaces one document atomically with respect to every other write of the
+     * collection. The function gets the current fields (null if missing) and returns the new
+     * fields, or null to leave the document as it is. Returns what is stored afterwards.
+     */
+    public Map<String, Object> compute(String id, UnaryOperator<Map<String, Object>> function) {
+        synchronized (writeLock) {
+            Map<String, Object> previous = documents.get(id);
+            Map<String, Object> updated = function.apply(previous == null ? null : new HashMap<>(previous));
+            if (updated == null) {
+                return previous;
+            }
+            put(id, updated);
+            return documents.get(id);
+        }
+    }
+
+    // Removes the document only if the condition holds for its current fields
+    public boolean removeIf(String id, Predicate<Map<String, Object>> condition) {
+        synchronized (writeLock) {
+            Map<String, Object> current = documents.get(id);
+            return current != null && condition.test(current) && remove(id);
+        }
+    }
+
+    public boolean remove(String id) {
+        synchronized (writeLock) {
+            Map<String, Object> previous = documents.remove(id);
+            if (previous == null) {
+                return false;
+            }
+            reindex(id, previous, null);
+            revisions.remove(id);
+            version++;
+            fire(ChangeType.REMOVED, id, previous);
+            return true;
+        }
+    }
+
+    public void clear() {
+        synchronized (writeLock) {
+            for (String id : new ArrayList<>(documents.keySet())) {
+                remove(id);
+            }
+        }
+    }
+
+    // ----------------------- Listeners -----------------------
+
+    public void addListener(DocumentChangeListener listener) {
+        synchronized (writeLock) {
+            documents.forEach((id, data) -> listener.onChange(ChangeType.ADDED, id, data));
+            listeners.add(listener);
+            listener.onSynced();
+        }
+    }
+
+    // ----------------------- Persistence -----------------------
+
+    Map<String, Map<String, Object>> snapshot() {
+        synchronized (writeLock) {
+            return new TreeMap<>(documents);
+        }
+    }
+
+    void load(Map<String, Map<String, Object>> data) {
+        synchronized (writeLock) {
+            data.forEach((id, fields) -> {
+                Map<String, Object> stored = Collections.unmodifiableMap(new HashMap<>(fields));
+                reindex(id, documents.put(id, stored), stored);
+                // Loading is not a write: the version stays put so the store isn't seen as dirty
+                revisions.put(id, version);
+            });
+        }
+    }
+
+    // ----------------------- Internals -----------------------
+
+    private void reindex(String id, Map<String, Object> previous, Map<String, Object> current) {
+        indexes.forEach((field, index) -> {
+            boolean hadValue = previous != null && previous.containsKey(field);
+            boolean hasValue = current != null && current.containsKey(field);
+            Object oldKey = hadValue ? indexKey(previous.get(field)) : null;
+            Object newKey = hasValue ? indexKey(current.get(field)) : null;
+            if (hadValue && hasValue && oldKey.equals(newKey)) {
+                return;
+            }
+            if (hadValue) {
+                Set<String> bucket = index.get(oldKey);
+                if (bucket != null) {
+                    bucket.remove(id);
+                    if (bucket.isEmpty()) {
+                        index.remove(oldKey, bucket);
+                    }
+                }
+            }
+            if (hasValue) {
+                index.computeIfAbsent(newKey, k -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        });
+    }
+
+    private void fire(ChangeType type, String id, Map<String, Object> data) {
+        for (DocumentChangeListener listener : listeners) {
+            listener.onChange(type, id, data);
+        }
+    }
+
+    private static boolean matches(Map<String, Object> data, Map<String, Object> criteria) {
+        for (Map.Entry<String, Object> criterion : criteria.entrySet()) {
+            if (!data.containsKey(criterion.getKey())
+                    || !indexKey(data.get(criterion.getKey())).equals(indexKey(criterion.getValue()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Integral numbers compare equal whatever their boxed type, as they do in Firestore
+    private static Object indexKey(Object value) {
+        if (value == null) {
+            return NULL_KEY;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+}
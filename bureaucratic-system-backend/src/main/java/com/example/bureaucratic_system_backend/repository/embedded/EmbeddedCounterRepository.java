@@ -0,0 +1,45 @@
+package com.example.bureaucratic_system_backend.repository.embedded;
+
+import com.example.bureaucratic_system_backend.model.Counter;
+import com.example.bureaucratic_system_backend.repository.CounterRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+
+@Repository
+@Profile("embedded")
+public class EmbeddedCounterRepository extends EmbeddedDocumentRepository<Counter> implements CounterRepository {
+
+    public EmbeddedCounterRepository(EmbeddedStore store) {
+        super(store, COLLECTION, Counter.class);
+    }
+
+    @Override
+    protected String idOf(Counter counter) {
+        return String.valueOf(counter.getCounterId());
+    }
+
+    @Override
+    protected Map<String, Object> toData(Counter counter) {
+        return Map.of(
+                "counterId", (long) counter.getCounterId(),
+                "isPaused", counter.isPaused()
+        );
+    }
+
+    @Override
+    protected Counter fromData(String id, Map<String, Object> data) {
+        return new Counter(((Number) data.get("counterId")).intValue(), (Boolean) data.get("isPaused"));
+    }
+
+    @Override
+    public void updatePaused(int counterId, boolean isPaused) {
+        updateField(String.valueOf(counterId), "isPaused", isPaused);
+    }
+
+    @Override
+    public void deleteAll() {
+        collection.clear();
+    }
+}
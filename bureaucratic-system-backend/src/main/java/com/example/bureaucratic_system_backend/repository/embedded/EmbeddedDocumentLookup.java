@@ -0,0 +1,33 @@
+package com.example.bureaucratic_system_backend.repository.embedded;
+
+import com.example.bureaucratic_system_backend.repository.DocumentKey;
+import com.example.bureaucratic_system_backend.repository.DocumentLookup;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Repository
+@Profile("embedded")
+public class EmbeddedDocumentLookup implements DocumentLookup {
+
+    private final EmbeddedStore store;
+
+    public EmbeddedDocumentLookup(EmbeddedStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public Map<DocumentKey, Map<String, Object>> getAll(Collection<DocumentKey> keys) {
+        Map<DocumentKey, Map<String, Object>> found = new LinkedHashMap<>();
+        for (DocumentKey key : keys) {
+            Map<String, Object> data = store.collection(key.collection()).get(key.id());
+            if (data != null) {
+                found.put(key, data);
+            }
+        }
+        return found;
+    }
+}
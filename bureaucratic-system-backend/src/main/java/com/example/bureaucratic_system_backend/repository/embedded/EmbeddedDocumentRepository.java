@@ -0,0 +1,142 @@
+package com.example.bureaucratic_system_backend.repository.embedded;
+
+import com.example.bureaucratic_system_backend.repository.DocumentChangeListener;
+import com.example.bureaucratic_system_backend.repository.DocumentRepository;
+import com.example.bureaucratic_system_backend.repository.VersionedDocument;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base for the embedded repositories. Entities are stored as field maps, converted through
+ * Gson so the stored shape matches what Firestore keeps for the same bean.
+ */
+public abstract class EmbeddedDocumentRepository<T> implements DocumentRepository<T> {
+
+    private static final Type MAP_TYPE = new TypeToken<Map<String, Object>>() {}.getType();
+
+    protected final EmbeddedCollection collection;
+    private final Gson gson;
+    private final Class<T> type;
+
+    protected EmbeddedDocumentRepository(EmbeddedStore store, String collectionName, Class<T> type, String... indexedFields) {
+        this.collection = store.collection(collectionName, indexedFields);
+        this.gson = store.gson();
+        this.type = type;
+    }
+
+    protected abstract String idOf(T entity);
+
+    protected Map<String, Object> toData(T entity) {
+        return gson.fromJson(gson.toJsonTree(entity), MAP_TYPE);
+    }
+
+    protected T fromData(String id, Map<String, Object> data) {
+        return gson.fromJson(gson.toJsonTree(data), type);
+    }
+
+    protected T load(String id) {
+        Map<String, Object> data = collection.get(id);
+        return data == null ? null : fromData(id, data);
+    }
+
+    protected List<T> loadAll(List<String> ids) {
+        List<T> results = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            T entity = load(id);
+            if (entity != null) {
+                results.add(entity);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public String collectionName() {
+        return collection.getName();
+    }
+
+    @Override
+    public T findById(String id) {
+        return load(id);
+    }
+
+    @Override
+    public Map<String, Object> findDataById(String id) {
+        return collection.get(id);
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return collection.contains(id);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return loadAll(collection.ids());
+    }
+
+    @Override
+    public List<String> findAllIds() {
+        return collection.ids();
+    }
+
+    @Override
+    public Map<String, T> findAllByIds(Collection<String> ids) {
+        Map<String, T> found = new LinkedHashMap<>();
+        for (String id : ids) {
+            T entity = load(id);
+            if (entity != null) {
+                found.put(id, entity);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void save(T entity) {
+        collection.put(idOf(entity), toData(entity));
+    }
+
+    @Override
+    public void updateField(String id, String fieldName, Object value) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(fieldName, value);
+        collection.update(id, updates);
+    }
+
+    @Override
+    public VersionedDocument findVersionedById(String id) {
+        // Revision before fields: a write in between makes the version stale, never the data
+        Long revision = collection.revision(id);
+        Map<String, Object> data = collection.get(id);
+        return data == null ? null : new VersionedDocument(data, revision);
+    }
+
+    @Override
+    public boolean updateFieldIfVersion(String id, String fieldName, Object value, Object version) {
+        if (!(version instanceof Long revision)) {
+            return false;
+        }
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(fieldName, value);
+        return collection.updateIfRevision(id, updates, revision);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        collection.remove(id);
+    }
+
+    @Override
+    public void addChangeListener(DocumentChangeListener listener) {
+        collection.addListener(listener);
+    }
+}
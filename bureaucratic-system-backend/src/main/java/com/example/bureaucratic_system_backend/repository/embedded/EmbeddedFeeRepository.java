@@ -0,0 +1,115 @@
+package com.example.bureaucratic_system_backend.repository.embedded;
+
+import com.example.bureaucratic_system_backend.model.Fees;
+import com.example.bureaucratic_system_backend.repository.BorrowRepository;
+import com.example.bureaucratic_system_backend.repository.FeeRepository;
+import com.example.bureaucratic_system_backend.repository.Lease;
+import com.example.bureaucratic_system_backend.repository.LeaseLostException;
+import com.example.bureaucratic_system_backend.repository.LeaseRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@Profile("embedded")
+public class EmbeddedFeeRepository extends EmbeddedDocumentRepository<Fees> implements FeeRepository {
+
+    private final EmbeddedCollection leases;
+    private final EmbeddedCollection borrows;
+
+    public EmbeddedFeeRepository(EmbeddedStore store) {
+        super(store, COLLECTION, Fees.class, "borrowId", "membershipId");
+        this.leases = store.collection(LeaseRepository.COLLECTION);
+        this.borrows = store.collection(BorrowRepository.COLLECTION);
+    }
+
+    @Override
+    protected String idOf(Fees fee) {
+        return fee.getId();
+    }
+
+    @Override
+    public Fees findByBorrowId(String borrowId) {
+        String id = collection.findFirstId(Map.of("borrowId", borrowId));
+        return id == null ? null : load(id);
+    }
+
+    @Override
+    public List<Fees> findByMembershipId(String membershipId) {
+        return loadAll(collection.findIds(Map.of("membershipId", membershipId)));
+    }
+
+    @Override
+    public boolean insertIfAbsent(Fees fee, Lease fence) {
+        boolean[] inserted = new boolean[1];
+        boolean[] fenced = new boolean[1];
+        collection.compute(idOf(fee), current -> {
+            if (fence != null && !EmbeddedLeaseRepository.isHeld(leases, fence)) {
+                fenced[0] = true;
+                return null;
+            }
+            if (current != null) {
+                return null;
+            }
+            inserted[0] = true;
+            return toData(fee);
+        });
+        if (fenced[0]) {
+            throw new LeaseLostException(fence);
+        }
+        return inserted[0];
+    }
+
+    @Override
+    public boolean updateAmountIfUnpaid(String feeId, String amount, Lease fence) {
+        boolean[] updated = new boolean[1];
+        boolean[] fenced = new boolean[1];
+        collection.compute(feeId, current -> {
+            if (fence != null && !EmbeddedLeaseRepository.isHeld(leases, fence)) {
+                fenced[0] = true;
+                return null;
+            }
+            if (current == null || "Yes".equals(current.get("paid"))) {
+                return null;
+            }
+            current.put("amount", amount);
+            updated[0] = true;
+            return current;
+        });
+        if (fenced[0]) {
+            throw new LeaseLostException(fence);
+        }
+        return updated[0];
+    }
+
+    @Override
+    public AccrualCounts accrueWhileBorrowed(List<Accrual> accruals) {
+        int[] created = new int[1];
+        int[] updated = new int[1];
+        for (Accrual accrual : accruals) {
+            Fees fee = accrual.fee();
+            // A return writes its return date before its fee, so a borrow read under the fee
+            // collection's lock is either still out or already followed by the return's fee
+            collection.compute(idOf(fee), current -> {
+                Map<String, Object> borrow = borrows.get(fee.getBorrowId());
+                if (borrow == null || borrow.get("returnDate") != null
+                        || Lease.isTaken(leases.get(accrual.leaseName()), System.currentTimeMillis())) {
+                    return null;
+                }
+                if (current == null) {
+                    created[0]++;
+                    return toData(fee);
+                }
+                if ("Yes".equals(current.get("paid")) || fee.getAmount().equals(current.get("amount"))) {
+                    return null;
+                }
+                current.put("amount", fee.getAmount());
+                updated[0]++;
+                return current;
+            });
+        }
+        return new AccrualCounts(created[0], updated[0]);
+    }
+}
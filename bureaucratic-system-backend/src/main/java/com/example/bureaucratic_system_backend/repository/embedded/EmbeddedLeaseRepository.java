@@ -0,0 +1,42 @@
+package com.example.bureaucratic_system_backend.repository.embedded;
+
+import com.example.bureaucratic_system_backend.repository.Lease;
+import com.example.bureaucratic_system_backend.repository.LeaseRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Local stand-in for the Firestore leases: same documents, same rules, kept in the embedded
+ * store. Only instances sharing the process share the leases, which is all the embedded
+ * profile supports anyway.
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedLeaseRepository implements LeaseRepository {
+
+    private final EmbeddedCollection collection;
+
+    public EmbeddedLeaseRepository(EmbeddedStore store) {
+        this.collection = store.collection(COLLECTION);
+    }
+
+    @Override
+    public Lease tryAcquire(String name, String owner, long ttlMillis) {
+        Lease[] granted = new Lease[1];
+        collection.compute(name, current -> {
+            granted[0] = Lease.grant(name, owner, current, System.currentTimeMillis(), ttlMillis);
+            return granted[0] == null ? null : granted[0].toDocument();
+        });
+        return granted[0];
+    }
+
+    @Override
+    public boolean release(Lease lease) {
+        return collection.removeIf(lease.name(), current -> lease.isHeldIn(current, System.currentTimeMillis()));
+    }
+
+    // Fence check for the embedded repositories' conditional writes
+    static boolean isHeld(EmbeddedCollection leases, Lease lease) {
+        return lease.isHeldIn(leases.get(lease.name()), System.currentTimeMillis());
+    }
+}
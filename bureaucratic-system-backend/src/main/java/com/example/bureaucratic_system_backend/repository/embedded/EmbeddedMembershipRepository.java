@@ -0,0 +1,42 @@
+package com.example.bureaucratic_system_backend.repository.embedded;
+
+import com.example.bureaucratic_system_backend.model.Membership;
+import com.example.bureaucratic_system_backend.repository.MembershipRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Repository
+@Profile("embedded")
+public class EmbeddedMembershipRepository extends EmbeddedDocumentRepository<Membership> implements MembershipRepository {
+
+    public EmbeddedMembershipRepository(EmbeddedStore store) {
+        super(store, COLLECTION, Membership.class, "citizenId");
+    }
+
+    @Override
+    protected String idOf(Membership membership) {
+        return membership.getMembershipNumber();
+    }
+
+    @Override
+    protected Map<String, Object> toData(Membership membership) {
+        Map<String, Object> membershipData = new HashMap<>();
+        membershipData.put("id", membership.getMembershipNumber());
+        membershipData.put("issueDate", membership.getIssueDate());
+        membershipData.put("citizenId", membership.getCitizenId());
+        return membershipData;
+    }
+
+    @Override
+    protected Membership fromData(String id, Map<String, Object> data) {
+        return new Membership(id, (String) data.get("issueDate"), (String) data.get("citizenId"));
+    }
+
+    @Override
+    public String findIdByCitizenId(String citizenId) {
+        return collection.findFirstId(Map.of("citizenId", citizenId));
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.bureaucratic_system_backend.repository.embedded;
+
+import com.example.bureaucratic_system_backend.repository.SequenceRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+@Repository
+@Profile("embedded")
+public class EmbeddedSequenceRepository implements SequenceRepository {
+
+    private final EmbeddedCollection collection;
+
+    public EmbeddedSequenceRepository(EmbeddedStore store) {
+        this.collection = store.collection(COLLECTION);
+    }
+
+    @Override
+    public long reserve(String sequenceName, int blockSize, LongSupplier initialValue) {
+        long[] first = new long[1];
+        collection.compute(sequenceName, current -> {
+            first[0] = current != null && current.get("next") instanceof Number next
+                    ? next.longValue()
+                    : initialValue.getAsLong();
+            return Map.of("next", first[0] + blockSize);
+        });
+        return first[0];
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.bureaucratic_system_backend.repository.embedded;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.ToNumberPolicy;
+import com.google.gson.reflect.TypeToken;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process replacement for Firestore, active under the "embedded" profile. Holds every
+ * collection in memory; when embedded.store.path is set, the whole store is written to that
+ * JSON file every flush interval (if anything changed) and on shutdown, and read back at startup.
+ */
+@Component
+@Profile("embedded")
+public class EmbeddedStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedStore.class);
+
+    private static final Type DUMP_TYPE = new TypeToken<Map<String, Map<String, Map<String, Object>>>>() {}.getType();
+
+    // LONG_OR_DOUBLE so whole numbers come back as Long, the way Firestore returns them
+    private final Gson gson = new GsonBuilder()
+            .serializeNulls()
+            .setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE)
+            .create();
+    private final Map<String, EmbeddedCollection> collections = new ConcurrentHashMap<>();
+    private final Path snapshotPath;
+    private final ScheduledExecutorService flusher;
+    private long flushedVersion;
+
+    public EmbeddedStore(@Value("${embedded.store.path:}") String path,
+                         @Value("${embedded.store.flush-interval-ms:5000}") long flushIntervalMs) {
+        this.snapshotPath = path.isBlank() ? null : Paths.get(path);
+        if (snapshotPath == null) {
+            this.flusher = null;
+            logger.info("Embedded store running in memory only.");
+            return;
+        }
+
+        load();
+        this.flushedVersion = totalVersion();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "embedded-store-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Embedded store persisting to {} every {} ms.", snapshotPath.toAbsolutePath(), flushIntervalMs);
+    }
+
+    public EmbeddedCollection collection(String name, String... indexedFields) {
+        EmbeddedCollection collection = collections.computeIfAbsent(name, EmbeddedCollection::new);
+        for (String field : indexedFields) {
+            collection.ensureIndex(field);
+        }
+        return collection;
+    }
+
+    public Gson gson() {
+        return gson;
+    }
+
+    public synchronized void flush() {
+        if (snapshotPath == null) {
+            return;
+        }
+        long version = totalVersion();
+        if (version == flushedVersion) {
+            return;
+        }
+
+        Map<String, Map<String, Map<String, Object>>> dump = new TreeMap<>();
+        collections.forEach((name, collection) -> dump.put(name, collection.snapshot()));
+        try {
+            Path parent = snapshotPath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp)) {
+                gson.toJson(dump, DUMP_TYPE, writer);
+            }
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            flushedVersion = version;
+        } catch (IOException e) {
+            logger.error("Error writing embedded store to {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flush();
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(snapshotPath)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(snapshotPath)) {
+            Map<String, Map<String, Map<String, Object>>> dump = gson.fromJson(reader, DUMP_TYPE);
+            if (dump != null) {
+                dump.forEach((name, documents) -> collection(name).load(documents));
+                logger.info("Loaded {} collections from {}.", dump.size(), snapshotPath);
+            }
+        } catch (IOException e) {
+            logger.error("Error reading embedded store from {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    private long totalVersion() {
+        long total = 0;
+        for (EmbeddedCollection collection : collections.values()) {
+            total += collection.getVersion();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.bureaucratic_system_backend.repository.embedded;
+
+import com.example.bureaucratic_system_backend.repository.UserRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+
+@Repository
+@Profile("embedded")
+public class EmbeddedUserRepository implements UserRepository {
+
+    private final EmbeddedCollection collection;
+
+    public EmbeddedUserRepository(EmbeddedStore store) {
+        this.collection = store.collection(COLLECTION, "email");
+    }
+
+    @Override
+    public Map<String, Object> findByEmail(String email) {
+        String id = collection.findFirstId(Map.of("email", email));
+        return id == null ? null : collection.get(id);
+    }
+}
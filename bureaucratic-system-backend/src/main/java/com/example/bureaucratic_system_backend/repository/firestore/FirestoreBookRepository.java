@@ -0,0 +1,57 @@
+package com.example.bureaucratic_system_backend.repository.firestore;
+
+import com.example.bureaucratic_system_backend.model.Book;
+import com.example.bureaucratic_system_backend.repository.BookRepository;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.concurrent.CompletableFuture;
+
+@Repository
+@Profile("!embedded")
+public class FirestoreBookRepository extends FirestoreDocumentRepository<Book> implements BookRepository {
+
+    public FirestoreBookRepository(Firestore firestore, FirestoreWriteBehind writeBehind) {
+        super(firestore, writeBehind, COLLECTION, Book.class);
+    }
+
+    @Override
+    protected String idOf(Book book) {
+        return book.getId();
+    }
+
+    private Query availableCopies(String title, String author) {
+        return collection()
+                .whereEqualTo("name", title)
+                .whereEqualTo("author", author)
+                .whereEqualTo("available", true);
+    }
+
+    private Query copies(String title, String author) {
+        return collection()
+                .whereEqualTo("name", title)
+                .whereEqualTo("author", author);
+    }
+
+    @Override
+    public Book findFirstAvailable(String title, String author) {
+        return first(availableCopies(title, author));
+    }
+
+    @Override
+    public String findIdByTitleAndAuthor(String title, String author) {
+        return await(firstIdAsync(copies(title, author)));
+    }
+
+    @Override
+    public CompletableFuture<Book> findFirstAvailableAsync(String title, String author) {
+        return firstAsync(availableCopies(title, author));
+    }
+
+    @Override
+    public CompletableFuture<String> findIdByTitleAndAuthorAsync(String title, String author) {
+        return firstIdAsync(copies(title, author));
+    }
+}
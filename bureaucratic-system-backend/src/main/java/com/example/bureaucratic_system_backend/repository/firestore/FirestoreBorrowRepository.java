@@ -0,0 +1,90 @@
+package com.example.bureaucratic_system_backend.repository.firestore;
+
+import com.example.bureaucratic_system_backend.model.Borrows;
+import com.example.bureaucratic_system_backend.repository.BookRepository;
+import com.example.bureaucratic_system_backend.repository.BorrowRepository;
+import com.example.bureaucratic_system_backend.repository.Lease;
+import com.example.bureaucratic_system_backend.repository.LeaseLostException;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Repository
+@Profile("!embedded")
+public class FirestoreBorrowRepository extends FirestoreDocumentRepository<Borrows> implements BorrowRepository {
+
+    public FirestoreBorrowRepository(Firestore firestore, FirestoreWriteBehind writeBehind) {
+        super(firestore, writeBehind, COLLECTION, Borrows.class);
+    }
+
+    @Override
+    protected String idOf(Borrows borrow) {
+        return borrow.getId();
+    }
+
+    @Override
+    public List<Borrows> findByMembershipId(String membershipId) {
+        return query(collection().whereEqualTo("membershipId", membershipId));
+    }
+
+    private Query active(String membershipId, String bookId) {
+        return collection()
+                .whereEqualTo("membershipId", membershipId)
+                .whereEqualTo("bookId", bookId)
+                .whereEqualTo("returnDate", null); // Ensure the book hasn't been returned yet
+    }
+
+    @Override
+    public Borrows findActive(String membershipId, String bookId) {
+        return first(active(membershipId, bookId));
+    }
+
+    // Document ID order needs no composite index next to the returnDate equality
+    @Override
+    public List<Borrows> findActivePage(String afterId, int limit) {
+        Query query = collection().whereEqualTo("returnDate", null).orderBy(FieldPath.documentId());
+        if (afterId != null) {
+            query = query.startAfter(afterId);
+        }
+        return query(query.limit(limit));
+    }
+
+    @Override
+    public boolean insertIfBookAvailable(Borrows borrow, Lease fence) {
+        DocumentReference bookRef = firestore.collection(BookRepository.COLLECTION).document(borrow.getBookId());
+        DocumentReference borrowRef = collection().document(idOf(borrow));
+
+        // The transaction reads the committed book, so nothing may still be queued for it
+        writeBehind.flushDocument(bookRef);
+        // Null when the fence failed: the lease document is read in the transaction, so a lease
+        // granted to someone else before the commit aborts it
+        Boolean committed = await(firestore.runTransaction(transaction -> {
+            if (fence != null && !FirestoreLeaseRepository.isHeld(transaction, firestore, fence)) {
+                return null;
+            }
+            DocumentSnapshot book = transaction.get(bookRef).get();
+            if (!book.exists() || !Boolean.TRUE.equals(book.getBoolean("available"))) {
+                return false;
+            }
+            transaction.update(bookRef, "available", false);
+            transaction.create(borrowRef, toDocument(borrow));
+            return true;
+        }));
+        if (committed == null) {
+            throw new LeaseLostException(fence);
+        }
+        return committed;
+    }
+
+    @Override
+    public CompletableFuture<Borrows> findActiveAsync(String membershipId, String bookId) {
+        return firstAsync(active(membershipId, bookId));
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.bureaucratic_system_backend.repository.firestore;
+
+import com.example.bureaucratic_system_backend.model.Citizen;
+import com.example.bureaucratic_system_backend.repository.CitizenRepository;
+import com.google.cloud.firestore.Firestore;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@Profile("!embedded")
+public class FirestoreCitizenRepository extends FirestoreDocumentRepository<Citizen> implements CitizenRepository {
+
+    public FirestoreCitizenRepository(Firestore firestore, FirestoreWriteBehind writeBehind) {
+        super(firestore, writeBehind, COLLECTION, Citizen.class);
+    }
+
+    @Override
+    protected String idOf(Citizen citizen) {
+        return citizen.getId();
+    }
+}
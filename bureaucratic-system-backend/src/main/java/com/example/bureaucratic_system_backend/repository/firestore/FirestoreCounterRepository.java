@@ -0,0 +1,55 @@
+package com.example.bureaucratic_system_backend.repository.firestore;
+
+import com.example.bureaucratic_system_backend.model.Counter;
+import com.example.bureaucratic_system_backend.repository.CounterRepository;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@Repository
+@Profile("!embedded")
+public class FirestoreCounterRepository extends FirestoreDocumentRepository<Counter> implements CounterRepository {
+
+    public FirestoreCounterRepository(Firestore firestore, FirestoreWriteBehind writeBehind) {
+        super(firestore, writeBehind, COLLECTION, Counter.class);
+    }
+
+    @Override
+    protected String idOf(Counter counter) {
+        return String.valueOf(counter.getCounterId());
+    }
+
+    @Override
+    protected Object toDocument(Counter counter) {
+        return Map.of(
+                "counterId", counter.getCounterId(),
+                "isPaused", counter.isPaused()
+        );
+    }
+
+    @Override
+    protected Counter fromSnapshot(DocumentSnapshot snapshot) {
+        return new Counter(snapshot.getLong("counterId").intValue(), snapshot.getBoolean("isPaused"));
+    }
+
+    @Override
+    public void updatePaused(int counterId, boolean isPaused) {
+        updateField(String.valueOf(counterId), "isPaused", isPaused);
+    }
+
+    @Override
+    public void deleteAll() {
+        List<CompletableFuture<Void>> deletes = new ArrayList<>();
+        for (QueryDocumentSnapshot document : await(collection().get()).getDocuments()) {
+            deletes.add(writeBehind.delete(collection().document(document.getId())));
+        }
+        await(CompletableFuture.allOf(deletes.toArray(new CompletableFuture[0])));
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.bureaucratic_system_backend.repository.firestore;
+
+import com.example.bureaucratic_system_backend.repository.DocumentKey;
+import com.example.bureaucratic_system_backend.repository.DocumentLookup;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.bureaucratic_system_backend.repository.firestore.FirestoreDocumentRepository.await;
+
+@Repository
+@Profile("!embedded")
+public class FirestoreDocumentLookup implements DocumentLookup {
+
+    private final Firestore firestore;
+
+    public FirestoreDocumentLookup(Firestore firestore) {
+        this.firestore = firestore;
+    }
+
+    @Override
+    public Map<DocumentKey, Map<String, Object>> getAll(Collection<DocumentKey> keys) {
+        Map<DocumentKey, Map<String, Object>> found = new LinkedHashMap<>();
+        if (keys.isEmpty()) {
+            return found;
+        }
+        DocumentReference[] refs = keys.stream()
+                .map(key -> firestore.collection(key.collection()).document(key.id()))
+                .toArray(DocumentReference[]::new);
+        List<DocumentSnapshot> snapshots = await(firestore.getAll(refs));
+        for (DocumentSnapshot snapshot : snapshots) {
+            if (snapshot.exists()) {
+                DocumentReference ref = snapshot.getReference();
+                found.put(DocumentKey.of(ref.getParent().getId(), ref.getId()), snapshot.getData());
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.bureaucratic_system_backend.repository.firestore;
+
+import com.example.bureaucratic_system_backend.repository.DocumentChangeListener;
+import com.example.bureaucratic_system_backend.repository.DocumentChangeListener.ChangeType;
+import com.example.bureaucratic_system_backend.repository.DocumentRepository;
+import com.example.bureaucratic_system_backend.repository.RepositoryException;
+import com.example.bureaucratic_system_backend.repository.VersionedDocument;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Base for the Firestore-backed repositories: one collection, documents keyed by entity ID.
+ */
+public abstract class FirestoreDocumentRepository<T> implements DocumentRepository<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(FirestoreDocumentRepository.class);
+
+    protected final Firestore firestore;
+    protected final FirestoreWriteBehind writeBehind;
+    private final String collectionName;
+    private final Class<T> type;
+
+    protected FirestoreDocumentRepository(Firestore firestore, FirestoreWriteBehind writeBehind,
+                                          String collectionName, Class<T> type) {
+        this.firestore = firestore;
+        this.writeBehind = writeBehind;
+        this.collectionName = collectionName;
+        this.type = type;
+    }
+
+    protected abstract String idOf(T entity);
+
+    // Written as-is by default; override when the stored shape differs from the bean
+    protected Object toDocument(T entity) {
+        return entity;
+    }
+
+    protected T fromSnapshot(DocumentSnapshot snapshot) {
+        return snapshot.toObject(type);
+    }
+
+    protected CollectionReference collection() {
+        return firestore.collection(collectionName);
+    }
+
+    protected static <V> V await(Future<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while waiting for Firestore", e);
+        } catch (ExecutionException e) {
+            throw new RepositoryException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    // Completes on the gRPC callback thread, so nothing waits for the round trip
+    protected static <V> CompletableFuture<V> toCompletable(ApiFuture<V> future) {
+        CompletableFuture<V> result = new CompletableFuture<>();
+        ApiFutures.addCallback(future, new ApiFutureCallback<V>() {
+            @Override
+            public void onFailure(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onSuccess(V value) {
+                result.complete(value);
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    protected List<T> query(Query query) {
+        List<T> results = new ArrayList<>();
+        for (QueryDocumentSnapshot document : await(query.get()).getDocuments()) {
+            results.add(fromSnapshot(document));
+        }
+        return results;
+    }
+
+    protected T first(Query query) {
+        List<QueryDocumentSnapshot> documents = await(query.limit(1).get()).getDocuments();
+        return documents.isEmpty() ? null : fromSnapshot(documents.get(0));
+    }
+
+    protected CompletableFuture<T> firstAsync(Query query) {
+        return toCompletable(query.limit(1).get()).thenApply(snapshot -> {
+            List<QueryDocumentSnapshot> documents = snapshot.getDocuments();
+            return documents.isEmpty() ? null : fromSnapshot(documents.get(0));
+        });
+    }
+
+    protected CompletableFuture<String> firstIdAsync(Query query) {
+        return toCompletable(query.limit(1).get()).thenApply(snapshot -> {
+            List<QueryDocumentSnapshot> documents = snapshot.getDocuments();
+            return documents.isEmpty() ? null : documents.get(0).getId();
+        });
+    }
+
+    @Override
+    public String collectionName() {
+        return collectionName;
+    }
+
+    @Override
+    public T findById(String id) {
+        DocumentSnapshot snapshot = await(collection().document(id).get());
+        return snapshot.exists() ? fromSnapshot(snapshot) : null;
+    }
+
+    @Override
+    public Map<String, Object> findDataById(String id) {
+        DocumentSnapshot snapshot = await(collection().document(id).get());
+        return snapshot.exists() ? snapshot.getData() : null;
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return await(collection().document(id).get()).exists();
+    }
+
+    @Override
+    public List<T> findAll() {
+        return query(collection());
+    }
+
+    @Override
+    public List<String> findAllIds() {
+        List<String> ids = new ArrayList<>();
+        for (QueryDocumentSnapshot document : await(collection().get()).getDocuments()) {
+            ids.add(document.getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public Map<String, T> findAllByIds(Collection<String> ids) {
+        Map<String, T> found = new LinkedHashMap<>();
+        if (ids.isEmpty()) {
+            return found;
+        }
+        DocumentReference[] refs = ids.stream().map(collection()::document).toArray(DocumentReference[]::new);
+        for (DocumentSnapshot snapshot : await(firestore.getAll(refs))) {
+            if (snapshot.exists()) {
+                found.put(snapshot.getId(), fromSnapshot(snapshot));
+            }
+        }
+        return found;
+    }
+
+    // Writes go through the write-behind stage, which decides when the caller gets its ack
+    @Override
+    public void save(T entity) {
+        await(saveAsync(entity));
+    }
+
+    @Override
+    public void updateField(String id, String fieldName, Object value) {
+        await(updateFieldAsync(id, fieldName, value));
+    }
+
+    // The version is the document's update time, which Firestore checks as a write precondition
+    @Override
+    public VersionedDocument findVersionedById(String id) {
+        DocumentReference ref = collection().document(id);
+        // Buffered writes would otherwise land after the read without moving the update time
+        writeBehind.flushDocument(ref);
+        DocumentSnapshot snapshot = await(ref.get());
+        return snapshot.exists() ? new VersionedDocument(snapshot.getData(), snapshot.getUpdateTime()) : null;
+    }
+
+    // Written directly rather than through the write-behind stage, which can't carry a precondition
+    @Override
+    public boolean updateFieldIfVersion(String id, String fieldName, Object value, Object version) {
+        if (!(version instanceof Timestamp updateTime)) {
+            return false;
+        }
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(fieldName, value);
+        try {
+            collection().document(id).update(updates, Precondition.updatedAt(updateTime)).get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while waiting for Firestore", e);
+        } catch (ExecutionException e) {
+            if (isConflict(e.getCause())) {
+                return false;
+            }
+            throw new RepositoryException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    // The document changed (or went away) since it was read, or the write lost to a concurrent one
+    private static boolean isConflict(Throwable failure) {
+        if (!(failure instanceof FirestoreException firestoreException) || firestoreException.getStatus() == null) {
+            return false;
+        }
+        Status.Code code = firestoreException.getStatus().getCode();
+        return code == Status.Code.FAILED_PRECONDITION || code == Status.Code.ABORTED || code == Status.Code.NOT_FOUND;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        await(writeBehind.delete(collection().document(id)));
+    }
+
+    @Override
+    public CompletableFuture<T> findByIdAsync(String id) {
+        return toCompletable(collection().document(id).get())
+                .thenApply(snapshot -> snapshot.exists() ? fromSnapshot(snapshot) : null);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveAsync(T entity) {
+        return writeBehind.set(collection().document(idOf(entity)), toDocument(entity));
+    }
+
+    @Override
+    public CompletableFuture<Void> updateFieldAsync(String id, String fieldName, Object value) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(fieldName, value);
+        return writeBehind.update(collection().document(id), updates);
+    }
+
+    @Override
+    public void addChangeListener(DocumentChangeListener listener) {
+        AtomicBoolean synced = new AtomicBoolean();
+        collection().addSnapshotListener((snapshots, e) -> {
+            if (e != null) {
+                // Firestore closes the listener after an error
+                logger.error("Error listening to {}: {}", collectionName, e.getMessage());
+                listener.onDisconnected();
+                return;
+            }
+            if (snapshots != null) {
+                for (DocumentChange dc : snapshots.getDocumentChanges()) {
+                    QueryDocumentSnapshot document = dc.getDocument();
+                    listener.onChange(ChangeType.valueOf(dc.getType().name()), document.getId(), document.getData());
+                }
+                // The first snapshot carries every existing document
+                if (synced.compareAndSet(false, true)) {
+                    listener.onSynced();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.bureaucratic_system_backend.repository.firestore;
+
+import com.example.bureaucratic_system_backend.model.Fees;
+import com.example.bureaucratic_system_backend.repository.BorrowRepository;
+import com.example.bureaucratic_system_backend.repository.FeeRepository;
+import com.example.bureaucratic_system_backend.repository.Lease;
+import com.example.bureaucratic_system_backend.repository.LeaseLostException;
+import com.example.bureaucratic_system_backend.repository.LeaseRepository;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Repository
+@Profile("!embedded")
+public class FirestoreFeeRepository extends FirestoreDocumentRepository<Fees> implements FeeRepository {
+
+    public FirestoreFeeRepository(Firestore firestore, FirestoreWriteBehind writeBehind) {
+        super(firestore, writeBehind, COLLECTION, Fees.class);
+    }
+
+    @Override
+    protected String idOf(Fees fee) {
+        return fee.getId();
+    }
+
+    @Override
+    public Fees findByBorrowId(String borrowId) {
+        return first(collection().whereEqualTo("borrowId", borrowId));
+    }
+
+    @Override
+    public CompletableFuture<Fees> findByBorrowIdAsync(String borrowId) {
+        return firstAsync(collection().whereEqualTo("borrowId", borrowId));
+    }
+
+    @Override
+    public List<Fees> findByMembershipId(String membershipId) {
+        return query(collection().whereEqualTo("membershipId", membershipId));
+    }
+
+    @Override
+    public boolean insertIfAbsent(Fees fee, Lease fence) {
+        DocumentReference feeRef = collection().document(idOf(fee));
+
+        // The transaction reads the committed fee, so nothing may still be queued for it
+        writeBehind.flushDocument(feeRef);
+        // Null when the fence failed
+        Boolean inserted = await(firestore.runTransaction(transaction -> {
+            if (fence != null && !FirestoreLeaseRepository.isHeld(transaction, firestore, fence)) {
+                return null;
+            }
+            if (transaction.get(feeRef).get().exists()) {
+                return false;
+            }
+            transaction.create(feeRef, toDocument(fee));
+            return true;
+        }));
+        if (inserted == null) {
+            throw new LeaseLostException(fence);
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean updateAmountIfUnpaid(String feeId, String amount, Lease fence) {
+        DocumentReference feeRef = collection().document(feeId);
+
+        writeBehind.flushDocument(feeRef);
+        // Null when the fence failed
+        Boolean updated = await(firestore.runTransaction(transaction -> {
+            if (fence != null && !FirestoreLeaseRepository.isHeld(transaction, firestore, fence)) {
+                return null;
+            }
+            DocumentSnapshot fee = transaction.get(feeRef).get();
+            if (!fee.exists() || "Yes".equals(fee.getString("paid"))) {
+                return false;
+            }
+            transaction.update(feeRef, "amount", amount);
+            return true;
+        }));
+        if (updated == null) {
+            throw new LeaseLostException(fence);
+        }
+        return updated;
+    }
+
+    @Override
+    public AccrualCounts accrueWhileBorrowed(List<Accrual> accruals) {
+        int created = 0;
+        int updated = 0;
+        for (int from = 0; from < accruals.size(); from += MAX_TRANSACTION_WRITES) {
+            AccrualCounts counts = accrueChunk(accruals.subList(from, Math.min(accruals.size(), from + MAX_TRANSACTION_WRITES)));
+            created += counts.created();
+            updated += counts.updated();
+        }
+        return new AccrualCounts(created, updated);
+    }
+
+    // One transaction: the borrow, fee and lease of every accrual in one read, then the writes
+    private AccrualCounts accrueChunk(List<Accrual> chunk) {
+        List<DocumentReference> refs = new ArrayList<>(chunk.size() * 3);
+        for (Accrual accrual : chunk) {
+            DocumentReference borrowRef = firestore.collection(BorrowRepository.COLLECTION).document(accrual.fee().getBorrowId());
+            DocumentReference feeRef = collection().document(idOf(accrual.fee()));
+            // The transaction reads the committed borrow and fee, so nothing may still be queued for them
+            writeBehind.flushDocument(borrowRef);
+            writeBehind.flushDocument(feeRef);
+            refs.add(borrowRef);
+            refs.add(feeRef);
+            refs.add(firestore.collection(LeaseRepository.COLLECTION).document(accrual.leaseName()));
+        }
+        return await(firestore.runTransaction(transaction -> {
+            // In the order of the references
+            List<DocumentSnapshot> snapshots = transaction.getAll(refs.toArray(new DocumentReference[0])).get();
+            long now = System.currentTimeMillis();
+            int created = 0;
+            int updated = 0;
+            for (int i = 0; i < chunk.size(); i++) {
+                Fees fee = chunk.get(i).fee();
+                DocumentSnapshot borrow = snapshots.get(3 * i);
+                DocumentSnapshot current = snapshots.get(3 * i + 1);
+                DocumentSnapshot lease = snapshots.get(3 * i + 2);
+                // Returned, or a return is settling the final amount right now
+                if (!borrow.exists() || borrow.get("returnDate") != null
+                        || Lease.isTaken(lease.exists() ? lease.getData() : null, now)) {
+                    continue;
+                }
+                if (!current.exists()) {
+                    transaction.create(refs.get(3 * i + 1), toDocument(fee));
+                    created++;
+                } else if (!"Yes".equals(current.getString("paid")) && !fee.getAmount().equals(current.getString("amount"))) {
+                    transaction.update(refs.get(3 * i + 1), "amount", fee.getAmount());
+                    updated++;
+                }
+            }
+            return new AccrualCounts(created, updated);
+        }));
+    }
+}
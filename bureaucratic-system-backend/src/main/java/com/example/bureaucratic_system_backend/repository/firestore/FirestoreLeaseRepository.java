@@ -0,0 +1,62 @@
+package com.example.bureaucratic_system_backend.repository.firestore;
+
+import com.example.bureaucratic_system_backend.repository.Lease;
+import com.example.bureaucratic_system_backend.repository.LeaseRepository;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Transaction;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+
+import static com.example.bureaucratic_system_backend.repository.firestore.FirestoreDocumentRepository.await;
+
+@Repository
+@Profile("!embedded")
+public class FirestoreLeaseRepository implements LeaseRepository {
+
+    private final Firestore firestore;
+
+    public FirestoreLeaseRepository(Firestore firestore) {
+        this.firestore = firestore;
+    }
+
+    @Override
+    public Lease tryAcquire(String name, String owner, long ttlMillis) {
+        DocumentReference ref = document(firestore, name);
+        return await(firestore.runTransaction(transaction -> {
+            DocumentSnapshot current = transaction.get(ref).get();
+            Lease lease = Lease.grant(name, owner, current.exists() ? current.getData() : null,
+                    System.currentTimeMillis(), ttlMillis);
+            if (lease != null) {
+                transaction.set(ref, lease.toDocument());
+            }
+            return lease;
+        }));
+    }
+
+    @Override
+    public boolean release(Lease lease) {
+        DocumentReference ref = document(firestore, lease.name());
+        return await(firestore.runTransaction(transaction -> {
+            if (!isHeld(transaction, firestore, lease)) {
+                return false;
+            }
+            transaction.delete(ref);
+            return true;
+        }));
+    }
+
+    // Fence check for the writes a lease protects; like every read, it goes before the writes
+    static boolean isHeld(Transaction transaction, Firestore firestore, Lease lease) throws Exception {
+        DocumentSnapshot current = transaction.get(document(firestore, lease.name())).get();
+        Map<String, Object> stored = current.exists() ? current.getData() : null;
+        return lease.isHeldIn(stored, System.currentTimeMillis());
+    }
+
+    private static DocumentReference document(Firestore firestore, String name) {
+        return firestore.collection(COLLECTION).document(name);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.bureaucratic_system_backend.repository.firestore;
+
+import com.example.bureaucratic_system_backend.model.Membership;
+import com.example.bureaucratic_system_backend.repository.MembershipRepository;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@Repository
+@Profile("!embedded")
+public class FirestoreMembershipRepository extends FirestoreDocumentRepository<Membership> implements MembershipRepository {
+
+    public FirestoreMembershipRepository(Firestore firestore, FirestoreWriteBehind writeBehind) {
+        super(firestore, writeBehind, COLLECTION, Membership.class);
+    }
+
+    @Override
+    protected String idOf(Membership membership) {
+        return membership.getMembershipNumber();
+    }
+
+    @Override
+    protected Object toDocument(Membership membership) {
+        Map<String, Object> membershipData = new HashMap<>();
+        membershipData.put("id", membership.getMembershipNumber());
+        membershipData.put("issueDate", membership.getIssueDate());
+        membershipData.put("citizenId", membership.getCitizenId());
+        return membershipData;
+    }
+
+    @Override
+    protected Membership fromSnapshot(DocumentSnapshot snapshot) {
+        return new Membership(snapshot.getId(), snapshot.getString("issueDate"), snapshot.getString("citizenId"));
+    }
+
+    @Override
+    public String findIdByCitizenId(String citizenId) {
+        return await(findIdByCitizenIdAsync(citizenId));
+    }
+
+    @Override
+    public CompletableFuture<String> findIdByCitizenIdAsync(String citizenId) {
+        return firstIdAsync(collection().whereEqualTo("citizenId", citizenId));
+    }
+}
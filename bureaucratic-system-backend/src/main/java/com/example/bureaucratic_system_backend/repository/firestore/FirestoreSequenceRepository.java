@@ -0,0 +1,45 @@
+package com.example.bureaucratic_system_backend.repository.firestore;
+
+import com.example.bureaucratic_system_backend.repository.SequenceRepository;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import static com.example.bureaucratic_system_backend.repository.firestore.FirestoreDocumentRepository.await;
+
+@Repository
+@Profile("!embedded")
+public class FirestoreSequenceRepository implements SequenceRepository {
+
+    private final Firestore firestore;
+
+    public FirestoreSequenceRepository(Firestore firestore) {
+        this.firestore = firestore;
+    }
+
+    @Override
+    public long reserve(String sequenceName, int blockSize, LongSupplier initialValue) {
+        DocumentReference ref = firestore.collection(COLLECTION).document(sequenceName);
+
+        // Seeding may scan a collection, so do it before the transaction, which can be retried
+        Long seed = null;
+        if (!await(ref.get()).exists()) {
+            seed = initialValue.getAsLong();
+        }
+        Long firstValue = seed;
+        return await(firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            Long next = snapshot.exists() ? snapshot.getLong("next") : firstValue;
+            if (next == null) {
+                next = initialValue.getAsLong();
+            }
+            transaction.set(ref, Map.<String, Object>of("next", next + blockSize));
+            return next;
+        }));
+    }
+}
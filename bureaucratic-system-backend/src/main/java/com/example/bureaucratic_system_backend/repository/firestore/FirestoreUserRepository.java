@@ -0,0 +1,31 @@
+package com.example.bureaucratic_system_backend.repository.firestore;
+
+import com.example.bureaucratic_system_backend.repository.UserRepository;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.example.bureaucratic_system_backend.repository.firestore.FirestoreDocumentRepository.await;
+
+@Repository
+@Profile("!embedded")
+public class FirestoreUserRepository implements UserRepository {
+
+    private final Firestore firestore;
+
+    public FirestoreUserRepository(Firestore firestore) {
+        this.firestore = firestore;
+    }
+
+    @Override
+    public Map<String, Object> findByEmail(String email) {
+        List<QueryDocumentSnapshot> documents = await(firestore.collection(COLLECTION)
+                .whereEqualTo("email", email)
+                .get()).getDocuments();
+        return documents.isEmpty() ? null : documents.get(0).getData();
+    }
+}
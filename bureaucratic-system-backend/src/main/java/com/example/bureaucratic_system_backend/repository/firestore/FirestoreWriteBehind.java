@@ -0,0 +1,294 @@
+package com.example.bureaucratic_system_backend.repository.firestore;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Write-behind stage in front of Firestore. Mutations are parked per document and merged
+ * (set + update becomes one set, repeated updates become one update, a delete drops whatever
+ * was pending), then committed as WriteBatch RPCs when max-batch-size documents are pending
+ * or every flush-interval-ms. A single flusher thread commits batches in order, so writes to
+ * the same document never overtake each other.
+ *
+ * With durability FLUSHED the returned future completes when the batch holding the write has
+ * committed; with ACKNOWLEDGED it completes at once and commit failures are only logged, so
+ * use it only where nothing reads the write straight back.
+ */
+@Component
+@Profile("!embedded")
+public class FirestoreWriteBehind {
+
+    public enum WriteDurability { FLUSHED, ACKNOWLEDGED }
+
+    private static final Logger logger = LoggerFactory.getLogger(FirestoreWriteBehind.class);
+
+    // Firestore rejects batches with more than 500 writes
+    private static final int FIRESTORE_BATCH_LIMIT = 500;
+
+    private final Firestore firestore;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final WriteDurability durability;
+
+    // Pending writes by document path; entries that could not be merged wait in sealed
+    private final Map<String, PendingWrite> pending = new LinkedHashMap<>();
+    private final List<PendingWrite> sealed = new ArrayList<>();
+    // Drained writes still committing, by document path: done once their flush has finished
+    private final Map<String, CompletableFuture<Void>> inFlight = new HashMap<>();
+    private final ScheduledExecutorService flusher;
+    private volatile Thread flusherThread;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    public FirestoreWriteBehind(Firestore firestore,
+                                @Value("${firestore.write-behind.enabled:true}") boolean enabled,
+                                @Value("${firestore.write-behind.max-batch-size:100}") int maxBatchSize,
+                                @Value("${firestore.write-behind.flush-interval-ms:10}") long flushIntervalMs,
+                                @Value("${firestore.write-behind.durability:FLUSHED}") WriteDurability durability) {
+        this.firestore = firestore;
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(1, Math.min(maxBatchSize, FIRESTORE_BATCH_LIMIT));
+        this.durability = durability;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "firestore-write-behind");
+            thread.setDaemon(true);
+            flusherThread = thread;
+            return thread;
+        });
+        if (enabled) {
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+            logger.info("Firestore write-behind enabled: batches of up to {} documents every {} ms, durability {}.",
+                    this.maxBatchSize, flushIntervalMs, durability);
+        }
+    }
+
+    public CompletableFuture<Void> set(DocumentReference ref, Object document) {
+        return enqueue(ref, write -> write.set(document));
+    }
+
+    public CompletableFuture<Void> update(DocumentReference ref, Map<String, Object> fields) {
+        return enqueue(ref, write -> write.update(fields));
+    }
+
+    public CompletableFuture<Void> delete(DocumentReference ref) {
+        return enqueue(ref, PendingWrite::delete);
+    }
+
+    // Commits everything pending for the document, and waits for what is already committing, before
+    // the caller writes it another way
+    public void flushDocument(DocumentReference ref) {
+        if (Thread.currentThread() == flusherThread) {
+            // Called back from a commit: the flusher can't wait for itself, and nothing else is in flight
+            flush();
+            return;
+        }
+        boolean hasPending;
+        CompletableFuture<Void> committing;
+        synchronized (this) {
+            String path = path(ref);
+            hasPending = pending.containsKey(path) || sealed.stream().anyMatch(w -> w.path.equals(path));
+            committing = inFlight.get(path);
+        }
+        try {
+            if (hasPending) {
+                // Runs after any flush in progress, so it also covers what that one is committing
+                flusher.submit(this::flush).get();
+            } else if (committing != null) {
+                committing.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Error flushing pending writes for {}: {}", path(ref), e.getMessage());
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(DocumentReference ref, Predicate<PendingWrite> mutation) {
+        CompletableFuture<Void> committed = new CompletableFuture<>();
+        if (!enabled) {
+            PendingWrite write = new PendingWrite(ref);
+            mutation.test(write);
+            write.waiters.add(committed);
+            commit(List.of(write));
+            return committed;
+        }
+
+        int size;
+        synchronized (this) {
+            String path = path(ref);
+            PendingWrite write = pending.computeIfAbsent(path, p -> new PendingWrite(ref));
+            if (!mutation.test(write)) {
+                // Can't be merged into what is pending: keep the order by sealing the old entry
+                pending.remove(path);
+                sealed.add(write);
+                write = new PendingWrite(ref);
+                mutation.test(write);
+                pending.put(path, write);
+            }
+            write.waiters.add(committed);
+            size = pending.size() + sealed.size();
+        }
+
+        if (size >= maxBatchSize && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+        if (durability == WriteDurability.ACKNOWLEDGED) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return committed;
+    }
+
+    private void flush() {
+        flushRequested.set(false);
+        List<PendingWrite> drained;
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        synchronized (this) {
+            if (pending.isEmpty() && sealed.isEmpty()) {
+                return;
+            }
+            drained = new ArrayList<>(sealed);
+            drained.addAll(pending.values());
+            sealed.clear();
+            pending.clear();
+            drained.forEach(write -> inFlight.put(write.path, done));
+        }
+
+        try {
+            List<PendingWrite> chunk = new ArrayList<>();
+            int operations = 0;
+            for (PendingWrite write : drained) {
+                if (operations + write.operationCount() > FIRESTORE_BATCH_LIMIT) {
+                    commit(chunk);
+                    chunk = new ArrayList<>();
+                    operations = 0;
+                }
+                chunk.add(write);
+                operations += write.operationCount();
+            }
+            if (!chunk.isEmpty()) {
+                commit(chunk);
+            }
+        } finally {
+            synchronized (this) {
+                drained.forEach(write -> inFlight.remove(write.path, done));
+            }
+            done.complete(null);
+        }
+    }
+
+    private void commit(List<PendingWrite> writes) {
+        try {
+            WriteBatch batch = firestore.batch();
+            writes.forEach(write -> write.applyTo(batch));
+            batch.commit().get();
+            writes.forEach(PendingWrite::complete);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writes.forEach(write -> write.fail(e));
+        } catch (ExecutionException e) {
+            if (writes.size() == 1) {
+                logger.error("Error committing write to {}: {}", writes.get(0).path, e.getCause().getMessage());
+                writes.get(0).fail(e.getCause());
+                return;
+            }
+            // A batch is atomic, so one bad write (e.g. update of a missing document) sinks
+            // the rest; retry each document alone so only the offender fails
+            logger.warn("Batch of {} writes failed ({}). Retrying individually.", writes.size(), e.getCause().getMessage());
+            for (PendingWrite write : writes) {
+                commit(List.of(write));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flusher.shutdown();
+        flush();
+    }
+
+    private static String path(DocumentReference ref) {
+        return ref.getParent().getId() + "/" + ref.getId();
+    }
+
+    private static final class PendingWrite {
+        private final DocumentReference ref;
+        private final String path;
+        private boolean delete;
+        private Object replacement;
+        private final Map<String, Object> updates = new HashMap<>();
+        private final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+
+        private PendingWrite(DocumentReference ref) {
+            this.ref = ref;
+            this.path = path(ref);
+        }
+
+        private boolean set(Object document) {
+            delete = false;
+            replacement = document;
+            updates.clear();
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean update(Map<String, Object> fields) {
+            if (delete) {
+                return false; // Firestore fails an update after a delete; keep both writes in order
+            }
+            if (replacement instanceof Map) {
+                Map<String, Object> merged = new HashMap<>((Map<String, Object>) replacement);
+                merged.putAll(fields);
+                replacement = merged;
+            } else {
+                updates.putAll(fields);
+            }
+            return true;
+        }
+
+        private boolean delete() {
+            delete = true;
+            replacement = null;
+            updates.clear();
+            return true;
+        }
+
+        private int operationCount() {
+            return (replacement != null && !updates.isEmpty()) ? 2 : 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void applyTo(WriteBatch batch) {
+            if (delete) {
+                batch.delete(ref);
+                return;
+            }
+            if (replacement instanceof Map) {
+                batch.set(ref, (Map<String, Object>) replacement);
+            } else if (replacement != null) {
+                batch.set(ref, replacement);
+            }
+            if (!updates.isEmpty()) {
+                batch.update(ref, updates);
+            }
+        }
+
+        private void complete() {
+            waiters.forEach(waiter -> waiter.complete(null));
+        }
+
+        private void fail(Throwable cause) {
+            waiters.forEach(waiter -> waiter.completeExceptionally(cause));
+        }
+    }
+}
@@ -4,32 +4,38 @@ import com.example.bureaucratic_system_backend.model.Book;
 import com.example.bureaucratic_system_backend.model.Borrows;
 import com.example.bureaucratic_system_backend.model.Citizen;
 import com.example.bureaucratic_system_backend.model.Membership;
+import com.example.bureaucratic_system_backend.lock.StripedLockRegistry;
+import com.example.bureaucratic_system_backend.repository.DocumentKey;
+import com.example.bureaucratic_system_backend.repository.VersionedDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class AdminService {
 
     private static final Logger logger = LoggerFactory.getLogger(AdminService.class);
 
-    // Locks for thread-safe operations
-    private final Map<String, Lock> bookLocks = new ConcurrentHashMap<>();
-    private final Map<String, Lock> citizenLocks = new ConcurrentHashMap<>();
-    private final Map<String, Lock> membershipLocks = new ConcurrentHashMap<>();
-    private final Map<String, Lock> feeLocks = new ConcurrentHashMap<>();
+    // Per-document locks for deletes and whole-document writes; field updates are optimistic
+    private final StripedLockRegistry lockRegistry;
+    private final int updateMaxAttempts;
 
     // Firebase service for database operations
     private final FirebaseService firebaseService;
+    private final IdSequenceService idSequenceService;
 
-    public AdminService(FirebaseService firebaseService) {
+    public AdminService(FirebaseService firebaseService, IdSequenceService idSequenceService,
+                        StripedLockRegistry lockRegistry,
+                        @Value("${admin.update.max-attempts:5}") int updateMaxAttempts) {
         this.firebaseService = firebaseService;
+        this.idSequenceService = idSequenceService;
+        this.lockRegistry = lockRegistry;
+        this.updateMaxAttempts = Math.max(1, updateMaxAttempts);
     }
 
     // ----------------------- Books Management -----------------------
@@ -37,17 +43,13 @@ public class AdminService {
 
     public void addBook(Book book) {
         try {
-            // Fetch all existing book IDs
-            List<String> existingIds = firebaseService.getAllDocumentIds("books");
-
-            // Generate the next available ID
-            int nextId = generateNextId(existingIds);
-            book.setId(String.valueOf(nextId));
+            // Take the next ID from the books sequence
+            book.setId(String.valueOf(idSequenceService.nextId("books")));
 
             // Set 'available' to 'true'
             book.setAvailable(true);
 
-            // Check if the book ID already exists (redundant due to ID generation but kept for safety)
+            // Check if the book ID already exists (guards against books added outside the sequence)
             if (firebaseService.getDocumentById("books", book.getId()) != null) {
                 throw new IllegalArgumentException("Book with ID " + book.getId() + " already exists.");
             }
@@ -61,41 +63,15 @@ public class AdminService {
         }
     }
 
-    /**
-     * Generates the next available numeric ID based on the list of existing IDs.
-     * Assumes IDs are numeric strings.
-     */
-    private int generateNextId(List<String> existingIds) {
-        int maxId = 0;
-        for (String id : existingIds) {
-            try {
-                int numericId = Integer.parseInt(id);
-                maxId = Math.max(maxId, numericId);
-            } catch (NumberFormatException e) {
-                logger.warn("Non-numeric ID found: {}. Ignoring it for ID generation.", id);
-            }
-        }
-        return maxId + 1; // Next ID is the max ID + 1
-    }
-
     public void updateBookField(String bookId, String fieldName, Object value) {
-        if (!firebaseService.documentExists("books", bookId)) {
-            throw new IllegalArgumentException("Book with ID " + bookId + " does not exist.");
-        }
-
-        String lockKey = "book:" + bookId + ":" + fieldName;
-        bookLocks.putIfAbsent(lockKey, new ReentrantLock());
-        Lock lock = bookLocks.get(lockKey);
-
-        lock.lock();
         try {
-            firebaseService.updateField("books", bookId, fieldName, value);
+            updateFieldOptimistically("books", bookId, fieldName, value, "Book with ID " + bookId + " does not exist.");
             logger.info("Book field '{}' updated successfully for book ID: {}", fieldName, bookId);
+        } catch (IllegalArgumentException | ConcurrentUpdateException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error updating book field '{}' for book ID: {}", fieldName, bookId, e.getMessage());
             throw new RuntimeException("Error updating book field: " + e.getMessage());
-        } finally {
-            lock.unlock();
         }
     }
 
@@ -104,8 +80,7 @@ public class AdminService {
             throw new IllegalArgumentException("Book with ID " + bookId + " does not exist.");
         }
 
-        bookLocks.putIfAbsent(bookId, new ReentrantLock());
-        Lock lock = bookLocks.get(bookId);
+        Lock lock = lockRegistry.lockFor("books", bookId);
 
         lock.lock();
         try {
@@ -123,7 +98,7 @@ public class AdminService {
 
     public void addCitizen(Citizen citizen) {
         try {
-            if (firebaseService.getDocumentById("citizens", citizen.getId()) != null) {
+            if (firebaseService.getDocumentById("citizen", citizen.getId()) != null) {
                 throw new IllegalArgumentException("Citizen with ID " + citizen.getId() + " already exists.");
             }
             firebaseService.addCitizen(citizen);
@@ -135,33 +110,23 @@ public class AdminService {
     }
 
     public void updateCitizenField(String citizenId, String fieldName, Object value) {
-        if (!firebaseService.documentExists("citizens", citizenId)) {
-            throw new IllegalArgumentException("Citizen with ID " + citizenId + " does not exist.");
-        }
-
-        String lockKey = "citizen:" + citizenId + ":" + fieldName;
-        citizenLocks.putIfAbsent(lockKey, new ReentrantLock());
-        Lock lock = citizenLocks.get(lockKey);
-
-        lock.lock();
         try {
-            firebaseService.updateField("citizens", citizenId, fieldName, value);
+            updateFieldOptimistically("citizen", citizenId, fieldName, value, "Citizen with ID " + citizenId + " does not exist.");
             logger.info("Citizen field '{}' updated successfully for citizen ID: {}", fieldName, citizenId);
+        } catch (IllegalArgumentException | ConcurrentUpdateException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error updating citizen field '{}' for citizen ID: {}", fieldName, citizenId, e.getMessage());
             throw new RuntimeException("Error updating citizen field: " + e.getMessage());
-        } finally {
-            lock.unlock();
         }
     }
 
     public void deleteCitizen(String citizenId) {
-        if (!firebaseService.documentExists("citizens", citizenId)) {
+        if (!firebaseService.documentExists("citizen", citizenId)) {
             throw new IllegalArgumentException("Citizen with ID " + citizenId + " does not exist.");
         }
 
-        citizenLocks.putIfAbsent(citizenId, new ReentrantLock());
-        Lock lock = citizenLocks.get(citizenId);
+        Lock lock = lockRegistry.lockFor("citizen", citizenId, null); // Kept out of the hot-key gauge
 
         lock.lock();
         try {
@@ -179,10 +144,14 @@ public class AdminService {
 
     public void addMembership(Membership membership) {
         try {
-            if (!firebaseService.documentExists("citizens", membership.getCitizenId())) {
+            // Both checks in one multi-get
+            DocumentKey citizenKey = DocumentKey.of("citizen", membership.getCitizenId());
+            DocumentKey membershipKey = DocumentKey.of("memberships", membership.getMembershipNumber());
+            Set<DocumentKey> existing = firebaseService.existingDocuments(citizenKey, membershipKey);
+            if (!existing.contains(citizenKey)) {
                 throw new IllegalArgumentException("Citizen with ID " + membership.getCitizenId() + " does not exist.");
             }
-            if (firebaseService.getDocumentById("memberships", membership.getMembershipNumber()) != null) {
+            if (existing.contains(membershipKey)) {
                 throw new IllegalArgumentException("Membership with number " + membership.getMembershipNumber() + " already exists.");
             }
             firebaseService.addMembership(membership);
@@ -194,23 +163,14 @@ public class AdminService {
     }
 
     public void updateMembershipField(String membershipId, String fieldName, Object value) {
-        if (!firebaseService.documentExists("memberships", membershipId)) {
-            throw new IllegalArgumentException("Membership with ID " + membershipId + " does not exist.");
-        }
-
-        String lockKey = "membership:" + membershipId + ":" + fieldName;
-        membershipLocks.putIfAbsent(lockKey, new ReentrantLock());
-        Lock lock = membershipLocks.get(lockKey);
-
-        lock.lock();
         try {
-            firebaseService.updateField("memberships", membershipId, fieldName, value);
+            updateFieldOptimistically("memberships", membershipId, fieldName, value, "Membership with ID " + membershipId + " does not exist.");
             logger.info("Membership field '{}' updated successfully for membership ID: {}", fieldName, membershipId);
+        } catch (IllegalArgumentException | ConcurrentUpdateException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error updating membership field '{}' for membership ID: {}", fieldName, membershipId, e.getMessage());
             throw new RuntimeException("Error updating membership field: " + e.getMessage());
-        } finally {
-            lock.unlock();
         }
     }
 
@@ -219,8 +179,7 @@ public class AdminService {
             throw new IllegalArgumentException("Membership with ID " + membershipId + " does not exist.");
         }
 
-        membershipLocks.putIfAbsent(membershipId, new ReentrantLock());
-        Lock lock = membershipLocks.get(membershipId);
+        Lock lock = lockRegistry.lockFor("memberships", membershipId);
 
         lock.lock();
         try {
@@ -236,23 +195,14 @@ public class AdminService {
     // ----------------------- Fees Management -----------------------
 
     public void updateFeeField(String feeId, String fieldName, Object value) {
-        if (!firebaseService.documentExists("fees", feeId)) {
-            throw new IllegalArgumentException("Fee with ID " + feeId + " does not exist.");
-        }
-
-        String lockKey = "fee:" + feeId + ":" + fieldName;
-        feeLocks.putIfAbsent(lockKey, new ReentrantLock());
-        Lock lock = feeLocks.get(lockKey);
-
-        lock.lock();
         try {
-            firebaseService.updateField("fees", feeId, fieldName, value);
+            updateFieldOptimistically("fees", feeId, fieldName, value, "Fee with ID " + feeId + " does not exist.");
             logger.info("Fee field '{}' updated successfully for fee ID: {}", fieldName, feeId);
+        } catch (IllegalArgumentException | ConcurrentUpdateException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error updating fee field '{}' for fee ID: {}", fieldName, feeId, e.getMessage());
             throw new RuntimeException("Error updating fee field: " + e.getMessage());
-        } finally {
-            lock.unlock();
         }
     }
 
@@ -261,8 +211,7 @@ public class AdminService {
             throw new IllegalArgumentException("Fee with ID " + feeId + " does not exist.");
         }
 
-        feeLocks.putIfAbsent(feeId, new ReentrantLock());
-        Lock lock = feeLocks.get(feeId);
+        Lock lock = lockRegistry.lockFor("fees", feeId);
 
         lock.lock();
         try {
@@ -280,10 +229,14 @@ public class AdminService {
 
     public void addBorrow(Borrows borrow) {
         try {
-            if (!firebaseService.documentExists("books", borrow.getBookId())) {
+            // Both checks in one multi-get
+            DocumentKey bookKey = DocumentKey.of("books", borrow.getBookId());
+            DocumentKey membershipKey = DocumentKey.of("memberships", borrow.getMembershipId());
+            Set<DocumentKey> existing = firebaseService.existingDocuments(bookKey, membershipKey);
+            if (!existing.contains(bookKey)) {
                 throw new IllegalArgumentException("Book with ID " + borrow.getBookId() + " does not exist.");
             }
-            if (!firebaseService.documentExists("memberships", borrow.getMembershipId())) {
+            if (!existing.contains(membershipKey)) {
                 throw new IllegalArgumentException("Membership with ID " + borrow.getMembershipId() + " does not exist.");
             }
             firebaseService.addBorrow(borrow);
@@ -299,9 +252,7 @@ public class AdminService {
             throw new IllegalArgumentException("Borrow record with ID " + borrowId + " does not exist.");
         }
 
-        String lockKey = "borrow:" + borrowId;
-        feeLocks.putIfAbsent(lockKey, new ReentrantLock());
-        Lock lock = feeLocks.get(lockKey);
+        Lock lock = lockRegistry.lockFor("borrows", borrowId);
 
         lock.lock();
         try {
@@ -315,6 +266,38 @@ public class AdminService {
         }
     }
 
+    // ----------------------- Optimistic updates -----------------------
 
+    /**
+     * Writes one field without holding a lock: reads the document's version, then writes on the
+     * condition that nobody wrote the document in between, which holds across nodes as well.
+     * A lost race re-reads and tries again after a short random pause.
+     */
+    private void updateFieldOptimistically(String collectionName, String documentId, String fieldName,
+                                           Object value, String notFoundMessage) {
+        for (int attempt = 1; attempt <= updateMaxAttempts; attempt++) {
+            VersionedDocument current = firebaseService.getVersionedDocument(collectionName, documentId);
+            if (current == null) {
+                throw new IllegalArgumentException(notFoundMessage);
+            }
+            if (firebaseService.updateFieldIfUnchanged(collectionName, documentId, fieldName, value, current.version())) {
+                return;
+            }
+            logger.debug("Concurrent write to {} {}; retrying update of '{}' (attempt {}).",
+                    collectionName, documentId, fieldName, attempt);
+            if (attempt < updateMaxAttempts) {
+                backOff(attempt);
+            }
+        }
+        throw new ConcurrentUpdateException(collectionName, documentId, updateMaxAttempts);
+    }
 
+    private static void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 1L << Math.min(attempt, 6)) + 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying an update", e);
+        }
+    }
 }
@@ -0,0 +1,151 @@
+package com.example.bureaucratic_system_backend.service;
+
+import com.example.bureaucratic_system_backend.cache.BookViews;
+import com.example.bureaucratic_system_backend.cache.LookupCache;
+import com.example.bureaucratic_system_backend.cache.MembershipIndex;
+import com.example.bureaucratic_system_backend.model.Book;
+import com.example.bureaucratic_system_backend.model.Borrows;
+import com.example.bureaucratic_system_backend.model.Fees;
+import com.example.bureaucratic_system_backend.repository.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of FirebaseService. Each call returns as soon as the request is
+ * sent, so callers can start independent lookups together and join once. Failures are logged
+ * and recovered the same way FirebaseService does: reads complete with null, writes complete
+ * normally.
+ */
+@Service
+public class AsyncFirebaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncFirebaseService.class);
+
+    private final BookRepository bookRepository;
+    private final BorrowRepository borrowRepository;
+    private final FeeRepository feeRepository;
+    private final LookupCache lookupCache;
+    private final MembershipIndex membershipIndex;
+    private final BookViews bookViews;
+    private final Map<String, DocumentRepository<?>> repositoriesByCollection = new HashMap<>();
+
+    public AsyncFirebaseService(BookRepository bookRepository, BorrowRepository borrowRepository,
+                                FeeRepository feeRepository, LookupCache lookupCache, MembershipIndex membershipIndex,
+                                BookViews bookViews,
+                                List<DocumentRepository<?>> repositories) {
+        this.bookRepository = bookRepository;
+        this.borrowRepository = borrowRepository;
+        this.feeRepository = feeRepository;
+        this.lookupCache = lookupCache;
+        this.membershipIndex = membershipIndex;
+        this.bookViews = bookViews;
+        for (DocumentRepository<?> repository : repositories) {
+            repositoriesByCollection.put(repository.collectionName(), repository);
+        }
+    }
+
+    // ----------------------- Memberships -----------------------
+
+    public CompletableFuture<String> getMembershipIdById(String citizenId) {
+        return recover(membershipIndex.membershipIdOfAsync(citizenId),
+                "Error fetching membership for citizen " + citizenId);
+    }
+
+    // ----------------------- Books -----------------------
+
+    public CompletableFuture<Book> getBookByTitleAndAuthor(String title, String author) {
+        return recover(lookupCache.findFirstAvailableBookAsync(title, author), "Error fetching book");
+    }
+
+    public CompletableFuture<Void> updateBookField(String bookId, String fieldName, Object value) {
+        return updateField("books", bookId, fieldName, value);
+    }
+
+    // Like updateBookField, but a failed write reaches the caller instead of completing normally
+    public CompletableFuture<Void> updateBookFieldOrFail(String bookId, String fieldName, Object value) {
+        return updateFieldOrFail(BookRepository.COLLECTION, bookId, fieldName, value);
+    }
+
+    // ----------------------- Borrows -----------------------
+
+    public CompletableFuture<Void> addBorrow(Borrows borrow) {
+        return recover(borrowRepository.saveAsync(borrow), "Error adding borrow record " + borrow.getId());
+    }
+
+    public CompletableFuture<Borrows> getBorrowById(String borrowId) {
+        return recover(borrowRepository.findByIdAsync(borrowId), "Error retrieving borrow record " + borrowId);
+    }
+
+    public CompletableFuture<Void> updateBorrow(String borrowId, Borrows updatedBorrow) {
+        updatedBorrow.setId(borrowId);
+        return recover(borrowRepository.saveAsync(updatedBorrow), "Error updating borrow record " + borrowId);
+    }
+
+    public CompletableFuture<Borrows> getBorrowByMembershipAndBook(String membershipId, String bookTitle, String bookAuthor) {
+        return getBookIdByTitleAndAuthor(bookTitle, bookAuthor)
+                .thenCompose(bookId -> getActiveBorrow(membershipId, bookId));
+    }
+
+    // ID of any copy of the title, available or not
+    public CompletableFuture<String> getBookIdByTitleAndAuthor(String bookTitle, String bookAuthor) {
+        CompletableFuture<String> bookId = bookRepository.findIdByTitleAndAuthorAsync(bookTitle, bookAuthor)
+                .thenApply(id -> {
+                    if (id == null) {
+                        logger.warn("Book not found for title: {}, author: {}", bookTitle, bookAuthor);
+                    }
+                    return id;
+                });
+        return recover(bookId, "Error fetching book ID");
+    }
+
+    // Unreturned borrow of the book by the membership; null when either ID is null
+    public CompletableFuture<Borrows> getActiveBorrow(String membershipId, String bookId) {
+        if (membershipId == null || bookId == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return recover(borrowRepository.findActiveAsync(membershipId, bookId), "Error fetching borrow record");
+    }
+
+    // ----------------------- Fees -----------------------
+
+    public CompletableFuture<Void> addFee(Fees fee) {
+        return recover(feeRepository.saveAsync(fee), "Error adding fee " + fee.getId());
+    }
+
+    public CompletableFuture<Fees> getFeeByBorrowId(String borrowId) {
+        return recover(feeRepository.findByBorrowIdAsync(borrowId), "Error fetching fee for borrow " + borrowId);
+    }
+
+    // ----------------------- General -----------------------
+
+    public CompletableFuture<Void> updateField(String collectionName, String documentId, String fieldName, Object value) {
+        return recover(updateFieldOrFail(collectionName, documentId, fieldName, value),
+                "Error updating " + collectionName + " field '" + fieldName + "' for ID " + documentId);
+    }
+
+    private CompletableFuture<Void> updateFieldOrFail(String collectionName, String documentId, String fieldName, Object value) {
+        DocumentRepository<?> repository = repositoriesByCollection.get(collectionName);
+        if (repository == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown collection: " + collectionName));
+        }
+        return repository.updateFieldAsync(documentId, fieldName, value)
+                .thenRun(() -> {
+                    if (BookRepository.COLLECTION.equals(collectionName)) {
+                        bookViews.fieldUpdated(documentId, fieldName, value);
+                    }
+                });
+    }
+
+    private static <V> CompletableFuture<V> recover(CompletableFuture<V> future, String message) {
+        return future.exceptionally(e -> {
+            logger.error("{}: {}", message, e.getMessage());
+            return null;
+        });
+    }
+}
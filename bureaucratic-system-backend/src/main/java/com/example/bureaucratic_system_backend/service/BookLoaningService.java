@@ -1,215 +1,640 @@
 package com.example.bureaucratic_system_backend.service;
 
+import com.example.bureaucratic_system_backend.cache.AvailableCopyPool;
+import com.example.bureaucratic_system_backend.cache.MembershipIndex;
+import com.example.bureaucratic_system_backend.lock.LeaseLockService;
 import com.example.bureaucratic_system_backend.model.*;
+import com.example.bureaucratic_system_backend.repository.Lease;
+import com.example.bureaucratic_system_backend.repository.LeaseLostException;
+import com.example.bureaucratic_system_backend.service.loan.CounterGate;
+import com.example.bureaucratic_system_backend.service.loan.CounterWorker;
+import com.example.bureaucratic_system_backend.service.loan.LoanAdmissionPolicy;
+import com.example.bureaucratic_system_backend.service.loan.LoanExecutionMode;
+import com.example.bureaucratic_system_backend.service.loan.LoanJournal;
+import com.example.bureaucratic_system_backend.service.loan.LoanOutcome;
+import com.example.bureaucratic_system_backend.service.loan.LoanPrefetch;
+import com.example.bureaucratic_system_backend.service.loan.LoanQueueFullException;
+import com.example.bureaucratic_system_backend.service.loan.LoanScheduler;
+import com.example.bureaucratic_system_backend.service.loan.VirtualThreads;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class BookLoaningService implements Department {
 
     private static final Logger logger = LoggerFactory.getLogger(BookLoaningService.class);
 
+    // Copies tried per request when other nodes keep winning the race for them
+    private static final int MAX_LOAN_ATTEMPTS = 3;
 
-    private final Queue<LoanRequest> queue = new LinkedBlockingQueue<>();
-    private final Map<String, Lock> bookLocks = new ConcurrentHashMap<>();
-    private final List<Counter> countersList = new ArrayList<>();
+    // Decides which counter processes which request; idle counters block in take()
+    private final LoanScheduler scheduler;
+    private final List<Counter> countersList = new CopyOnWriteArrayList<>();
     private static BookLoaningService instance;
 
-    private final List<Thread> counters = new ArrayList<>();
+    // Running counters are always 1..N; retired ones stay here until their thread has exited
+    private final Map<Integer, CounterWorker> workers = new ConcurrentHashMap<>();
+    private final Map<Integer, CounterWorker> retiredWorkers = new ConcurrentHashMap<>();
+    private final Path counterConfigPath;
     private final BorrowService borrowService;
+    private final FirebaseService firebaseService;
+    private final AsyncFirebaseService asyncFirebaseService;
+    private final MembershipIndex membershipIndex;
+    private final AvailableCopyPool copyPool;
+    private final LoanTicketService ticketService;
+    private final LoanJournal journal;
+    private final LeaseLockService leaseLocks;
     private final Object globalPauseLock = new Object();
     private volatile boolean globalPause = false;
     private volatile boolean counter1Paused = false;
     private volatile boolean counter2Paused = false;
 
-    private final Map<Integer, Boolean> counterPauseStatus = new ConcurrentHashMap<>();
-    private final Map<Integer, Object> counterLocks = new ConcurrentHashMap<>();
-
-
-    public BookLoaningService(BorrowService borrowService) {
+    // Local pause state per counter; the dispatch loop reads only this
+    private final Map<Integer, CounterGate> counterGates = new ConcurrentHashMap<>();
+
+    // VIRTUAL mode: loans run on virtual threads, at most loansPerCounter in flight per counter
+    private final LoanExecutionMode executionMode;
+    private final int loansPerCounter;
+    private final ExecutorService loanExecutor;
+    private final Map<Integer, Semaphore> counterPermits = new ConcurrentHashMap<>();
+
+    // Admission: at most queueCapacity requests wait for a counter; see admit()
+    private final int queueCapacity;
+    private final LoanAdmissionPolicy admissionPolicy;
+    private final long maxQueueAgeMillis;
+    private final long retryAfterSeconds;
+    private final AtomicInteger queuedRequests = new AtomicInteger();
+    private final LongAdder rejectedRequests = new LongAdder();
+    private final LongAdder shedForSpace = new LongAdder();
+    private final LongAdder shedForAge = new LongAdder();
+
+    // Lookups shared by the requests of a batch, by ticket ID until a counter takes the request
+    private final int maxBatchSize;
+    private final Map<String, LoanPrefetch> prefetchByTicket = new ConcurrentHashMap<>();
+
+    public BookLoaningService(BorrowService borrowService, FirebaseService firebaseService,
+                              AsyncFirebaseService asyncFirebaseService, MembershipIndex membershipIndex,
+                              AvailableCopyPool copyPool, LoanScheduler scheduler, LoanTicketService ticketService,
+                              LoanJournal journal, LeaseLockService leaseLocks,
+                              @Value("${loans.execution-mode:PLATFORM}") LoanExecutionMode executionMode,
+                              @Value("${loans.virtual.loans-per-counter:256}") int loansPerCounter,
+                              @Value("${loans.queue.capacity:1000}") int queueCapacity,
+                              @Value("${loans.queue.admission:REJECT}") LoanAdmissionPolicy admissionPolicy,
+                              @Value("${loans.queue.max-age-ms:0}") long maxQueueAgeMillis,
+                              @Value("${loans.queue.retry-after-seconds:5}") long retryAfterSeconds,
+                              @Value("${loans.batch.max-size:100}") int maxBatchSize,
+                              @Value("${counters.config-path:config/config.txt}") String counterConfigPath,
+                              MeterRegistry meterRegistry) {
         this.borrowService = borrowService;
+        this.firebaseService = firebaseService;
+        this.asyncFirebaseService = asyncFirebaseService;
+        this.membershipIndex = membershipIndex;
+        this.copyPool = copyPool;
+        this.scheduler = scheduler;
+        this.ticketService = ticketService;
+        this.journal = journal;
+        this.leaseLocks = leaseLocks;
+        this.executionMode = executionMode;
+        this.loansPerCounter = Math.max(1, loansPerCounter);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.admissionPolicy = admissionPolicy;
+        this.maxQueueAgeMillis = maxQueueAgeMillis;
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.counterConfigPath = Paths.get(counterConfigPath);
+        bindQueueMetrics(meterRegistry);
+        this.loanExecutor = executionMode == LoanExecutionMode.VIRTUAL
+                ? VirtualThreads.newPerTaskExecutor("loan-")
+                : null;
+        resumeJournaledRequests(); // Queued again before any counter can start taking requests
         int numberOfCounters = readCounterConfig();
         initializeCounters(numberOfCounters);
-        logger.info("BookLoaningService initialized with {} counters.", numberOfCounters);
+        logger.info("BookLoaningService initialized with {} counters in {} mode.", numberOfCounters, executionMode);
     }
 
+    // ----------------------- Counter Pool -----------------------
+
     private int readCounterConfig() {
-        try (BufferedReader reader = new BufferedReader(new FileReader("/Users/anisiapirvulescu/Desktop/bureaucratic-system-2/bureaucratic-system-backend/src/main/java/com/example/bureaucratic_system_backend/config/config.txt"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("counters=")) {
-                    return Integer.parseInt(line.split("=")[1].trim());
+        try {
+            return parseCounterCount(Files.readString(counterConfigPath));
+        } catch (NoSuchFileException e) {
+            logger.info("No configuration file at {}. Defaulting to 2 counters.", counterConfigPath.toAbsolutePath());
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Error reading configuration file {}. Defaulting to 2 counters.", counterConfigPath.toAbsolutePath(), e);
+        }
+        return 2; // Default number of counters
+    }
+
+    // Expects a "counters=N" line
+    private static int parseCounterCount(String configText) {
+        for (String line : configText.split("\\R")) {
+            if (line.startsWith("counters=")) {
+                try {
+                    int count = Integer.parseInt(line.split("=")[1].trim());
+                    if (count >= 1) {
+                        return count;
+                    }
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    // Reported below
                 }
+                throw new IllegalArgumentException("Invalid counter count in configuration: " + line);
             }
-        } catch (IOException | NumberFormatException e) {
-            logger.error("Error reading configuration file. Defaulting to 2 counters.", e);
         }
-        return 2; // Default number of counters
+        throw new IllegalArgumentException("Configuration has no counters= line.");
     }
 
     private void initializeCounters(int numberOfCounters) {
         logger.info("Initializing {} counters...", numberOfCounters);
-        FirebaseService.clearCountersCollection(); // Clean Firestore counters collection
+        firebaseService.clearCountersCollection(); // Clean Firestore counters collection
 
-        for (int i = 1; i <= numberOfCounters; i++) {
-            final int counterId = i;
+        // Follow pauses and resumes made in Firestore, e.g. by another node
+        firebaseService.listenToCounterChanges((counterId, isPaused) -> {
+            if (setCounterPaused(counterId, isPaused)) {
+                logger.info("Counter {} {} from Firestore changes.", counterId, isPaused ? "paused" : "resumed");
+            }
+        });
 
-            // Initialize lock for the counter
-            counterLocks.put(counterId, new Object());
+        resizeCounters(numberOfCounters);
+    }
 
-            // Add initial paused state for the counter
-            counterPauseStatus.put(counterId, false);
+    // Saves the configuration where readCounterConfig looks for it and applies it right away
+    public int applyCounterConfig(String configText) throws IOException {
+        int count = parseCounterCount(configText);
+        Path parent = counterConfigPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.writeString(counterConfigPath, configText);
+        logger.info("Configuration saved to {}", counterConfigPath.toAbsolutePath());
+        resizeCounters(count);
+        return count;
+    }
 
-            // Create and save the Counter model to Firestore
-            Counter counter = new Counter(counterId, false); // Default: not paused
-            countersList.add(counter);
-            FirebaseService.saveCounterToFirestore(counter);
+    // Applies the configuration file as it is now, e.g. after it was edited by hand
+    public int reloadCounterConfig() throws IOException {
+        int count = parseCounterCount(Files.readString(counterConfigPath));
+        resizeCounters(count);
+        return count;
+    }
 
-            logger.info("Counter {} initialized in memory and saved to Firestore.", counterId);
+    public int getCounterCount() {
+        return workers.size();
+    }
+
+    // Starts counters up to the target, or retires the highest-numbered ones down to it. A retired
+    // counter finishes the loan it is on and puts back a request it had just taken, so nothing queued
+    // or in progress is lost.
+    public synchronized void resizeCounters(int target) {
+        if (target < 1) {
+            throw new IllegalArgumentException("At least one counter is needed.");
+        }
+        int current = workers.size();
+        for (int counterId = current + 1; counterId <= target; counterId++) {
+            startCounter(counterId);
+        }
+        for (int counterId = current; counterId > target; counterId--) {
+            retireCounter(counterId);
+        }
+        if (current != target) {
+            logger.info("Counter pool resized from {} to {}.", current, target);
+        }
+    }
+
+    private void startCounter(int counterId) {
+        // The same number was retired recently: let its thread finish its last loan first
+        CounterWorker previous = retiredWorkers.remove(counterId);
+        if (previous != null) {
+            try {
+                if (!previous.awaitExit(30_000)) {
+                    logger.warn("Retired counter {} is still finishing a loan; starting its replacement anyway.", counterId);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
 
-        // Set up Firestore listener for counters
-        FirebaseService.listenToCounterChanges(counterLocks, counterPauseStatus);
+        CounterGate gate = new CounterGate(counterId, false);
+        counterGates.put(counterId, gate);
+        counterPermits.computeIfAbsent(counterId, id -> new Semaphore(loansPerCounter));
+
+        // Create and save the Counter model to Firestore
+        Counter counter = new Counter(counterId, false); // Default: not paused
+        countersList.add(counter);
+        firebaseService.saveCounterToFirestore(counter);
 
-        // Start threads for each counter
-        for (int i = 1; i <= numberOfCounters; i++) {
-            final int counterId = i;
-            Thread counterThread = new Thread(() -> processQueue(counterId));
-            counters.add(counterThread);
-            counterThread.start();
+        CounterWorker worker = new CounterWorker(counterId, gate, this::processQueue);
+        workers.put(counterId, worker);
+        scheduler.counterStarted(counterId);
+        worker.start();
+        logger.info("Counter {} started.", counterId);
+    }
 
-            logger.info("Thread for Counter {} started.", counterId);
+    private void retireCounter(int counterId) {
+        CounterWorker worker = workers.remove(counterId);
+        if (worker == null) {
+            return;
         }
+        counterGates.remove(counterId);
+        countersList.removeIf(counter -> counter.getCounterId() == counterId);
+        retiredWorkers.put(counterId, worker);
+        worker.retire();
+        scheduler.counterStopped(counterId); // Its backlog goes to the remaining counters
+        firebaseService.deleteCounterFromFirestore(counterId);
+        logger.info("Counter {} retiring.", counterId);
     }
 
-    public void addCitizenToQueue(Citizen citizen, String bookTitle, String bookAuthor) {
-        synchronized (queue) {
-            queue.add(new LoanRequest(bookTitle, bookAuthor, citizen.getId()));
-            queue.notifyAll();
-            logger.info("Added citizen with ID {} to the queue for book '{}' by '{}'.", citizen.getId(), bookTitle, bookAuthor);
+    // Throws LoanQueueFullException when the request can't be admitted
+    public LoanTicket addCitizenToQueue(Citizen citizen, String bookTitle, String bookAuthor) {
+        admit(1);
+        LoanRequest request = new LoanRequest(bookTitle, bookAuthor, citizen.getId());
+        request.setQueuedAt(System.currentTimeMillis());
+        LoanTicket ticket = ticketService.open(request);
+        try {
+            journal.append(request);
+        } catch (RuntimeException e) {
+            queuedRequests.decrementAndGet();
+            ticketService.finished(ticket.getTicketId(), LoanOutcome.of(LoanStatus.FAILED));
+            throw e;
         }
+        scheduler.submit(request);
+        logger.info("Added citizen with ID {} to the queue for book '{}' by '{}' (ticket {}).",
+                citizen.getId(), bookTitle, bookAuthor, ticket.getTicketId());
+        return ticket;
     }
 
-    private void processQueue(int counterId) {
-        Object lock = counterLocks.get(counterId);
+    // Queues a kiosk batch as one unit: admitted together, journaled and queued under one lock
+    // each, with membership and book lookups fetched once for the whole batch. Tickets come back
+    // in request order. Throws LoanQueueFullException when the batch doesn't fit.
+    public List<LoanTicket> addBatchToQueue(List<LoanRequest> batch) {
+        if (batch == null || batch.isEmpty()) {
+            throw new IllegalArgumentException("A loan batch needs at least one request.");
+        }
+        if (batch.size() > Math.min(maxBatchSize, queueCapacity)) {
+            throw new IllegalArgumentException("A loan batch holds at most " + Math.min(maxBatchSize, queueCapacity) + " requests.");
+        }
+        // Checked before any slot is taken: a bad item must not leave slots or tickets behind
+        for (int i = 0; i < batch.size(); i++) {
+            LoanRequest item = batch.get(i);
+            if (item == null || isBlank(item.getCitizenId()) || isBlank(item.getBookTitle()) || isBlank(item.getBookAuthor())) {
+                throw new IllegalArgumentException("Loan request " + (i + 1) + " of the batch needs a citizenId, bookTitle and bookAuthor.");
+            }
+        }
+        admit(batch.size());
 
-        if (lock == null) {
-            logger.error("No lock found for counter {}. Exiting thread.", counterId);
-            return; // Stop processing if no lock is found
+        long now = System.currentTimeMillis();
+        List<LoanRequest> requests = new ArrayList<>(batch.size());
+        List<LoanTicket> tickets = new ArrayList<>(batch.size());
+        try {
+            for (LoanRequest item : batch) {
+                LoanRequest request = new LoanRequest(item.getBookTitle(), item.getBookAuthor(), item.getCitizenId());
+                request.setQueuedAt(now);
+                tickets.add(ticketService.open(request));
+                requests.add(request);
+            }
+            LoanPrefetch prefetch = new LoanPrefetch(asyncFirebaseService, requests);
+            requests.forEach(request -> prefetchByTicket.put(request.getTicketId(), prefetch));
+            journal.appendAll(requests);
+        } catch (RuntimeException e) {
+            // Nothing was queued: give every slot back and close the tickets opened so far
+            queuedRequests.addAndGet(-batch.size());
+            for (LoanRequest request : requests) {
+                prefetchByTicket.remove(request.getTicketId());
+                ticketService.finished(request.getTicketId(), LoanOutcome.of(LoanStatus.FAILED));
+            }
+            throw e;
         }
+        scheduler.submitAll(requests);
+        logger.info("Added a batch of {} loan requests to the queue.", requests.size());
+        return tickets;
+    }
 
-        while (true) {
-            try {
-                synchronized (lock) {
-                    while (isCounterPausedInFirestore(counterId)) {
-                        logger.info("Counter {} is paused. Waiting...", counterId);
-                        lock.wait(); // Wait until notified
-                    }
-                }
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
 
-                LoanRequest request = null;
-                synchronized (queue) {
-                    if (!queue.isEmpty()) {
-                        request = queue.poll();
-                    }
+    // ----------------------- Admission -----------------------
+
+    // Takes queue slots for new requests, shedding the oldest ones under SHED_OLDEST.
+    // All or nothing: slots taken for a batch that doesn't fit are given back, and nothing is
+    // shed for it.
+    private void admit(int count) {
+        int needed = count;
+        needed -= claimFreeSlots(needed);
+        if (needed > 0 && admissionPolicy == LoanAdmissionPolicy.SHED_OLDEST && scheduler.pending() >= needed) {
+            // Victims are only set aside until the batch is known to fit
+            List<LoanRequest> victims = new ArrayList<>(needed);
+            LoanRequest oldest;
+            while (victims.size() < needed && (oldest = scheduler.pollOldest()) != null) {
+                victims.add(oldest);
+            }
+            int freed = claimFreeSlots(needed - victims.size()); // Counters may have taken some meanwhile
+            if (victims.size() + freed == needed) {
+                // The shed requests' slots pass straight to the new ones
+                for (LoanRequest victim : victims) {
+                    shedForSpace.increment();
+                    shed(victim, "queue full");
                 }
+                needed = 0;
+            } else {
+                // Counters took the rest first and haven't freed their slots yet: the victims
+                // go back, keeping their slots
+                queuedRequests.addAndGet(-freed);
+                scheduler.submitAll(victims);
+            }
+        }
+        if (needed > 0) {
+            queuedRequests.addAndGet(-(count - needed));
+            rejectedRequests.add(count);
+            throw new LoanQueueFullException(queueCapacity, retryAfterSeconds);
+        }
+    }
 
-                if (request != null) {
-                    tryToBorrowBook(request.getCitizenId(), request.getBookTitle(), request.getBookAuthor());
-                } else {
-                    synchronized (queue) {
-                        queue.wait(); // Wait for new requests
-                    }
+    // Claims up to count free slots and returns how many it got
+    private int claimFreeSlots(int count) {
+        while (count > 0) {
+            int queued = queuedRequests.get();
+            int claimed = Math.min(count, queueCapacity - queued);
+            if (claimed <= 0) {
+                return 0;
+            }
+            if (queuedRequests.compareAndSet(queued, queued + claimed)) {
+                return claimed;
+            }
+        }
+        return 0;
+    }
+
+    private void shed(LoanRequest request, String reason) {
+        prefetchByTicket.remove(request.getTicketId());
+        journal.acknowledge(request.getTicketId());
+        logger.warn("Shed loan request of citizen ID {} for '{}' by '{}' ({}).",
+                request.getCitizenId(), request.getBookTitle(), request.getBookAuthor(), reason);
+        ticketService.finished(request.getTicketId(), LoanOutcome.of(LoanStatus.SHED));
+    }
+
+    // Requests accepted before the last shutdown or crash and never processed. They were admitted
+    // then, so they are queued again even beyond capacity.
+    private void resumeJournaledRequests() {
+        List<LoanRequest> recovered = journal.recoveredRequests();
+        for (LoanRequest request : recovered) {
+            queuedRequests.incrementAndGet();
+            ticketService.open(request);
+            scheduler.submit(request);
+        }
+        if (!recovered.isEmpty()) {
+            logger.info("Re-queued {} loan requests from the journal.", recovered.size());
+        }
+    }
+
+    private void bindQueueMetrics(MeterRegistry registry) {
+        Gauge.builder("loans.queue.depth", queuedRequests, AtomicInteger::get).register(registry);
+        Gauge.builder("loans.queue.capacity", this, service -> service.queueCapacity).register(registry);
+        FunctionCounter.builder("loans.queue.rejected", rejectedRequests, LongAdder::sum).register(registry);
+        FunctionCounter.builder("loans.queue.shed", shedForSpace, LongAdder::sum).tag("reason", "space").register(registry);
+        FunctionCounter.builder("loans.queue.shed", shedForAge, LongAdder::sum).tag("reason", "age").register(registry);
+    }
+
+    // ----------------------- Counters -----------------------
+
+    private void processQueue(CounterWorker worker) {
+        int counterId = worker.getCounterId();
+        CounterGate gate = worker.getGate();
+        Semaphore permits = counterPermits.get(counterId);
+
+        while (worker.startWaiting()) {
+            LoanScheduler.Assignment assignment;
+            boolean permitHeld = false;
+            try {
+                if (gate.isPaused()) {
+                    logger.info("Counter {} is paused. Waiting...", counterId);
+                    gate.awaitOpen(); // Wait until resumed
                 }
+                // VIRTUAL mode: take a request only with a free permit, so a counter never has
+                // more than loansPerCounter loans in flight and a pause stops it taking new ones
+                if (executionMode == LoanExecutionMode.VIRTUAL) {
+                    permits.acquire();
+                    permitHeld = true;
+                }
+                assignment = scheduler.take(counterId); // Wait for new requests
             } catch (InterruptedException e) {
+                if (permitHeld) {
+                    permits.release();
+                }
+                if (worker.isRetired()) {
+                    break;
+                }
                 Thread.currentThread().interrupt();
                 logger.warn("Counter {} interrupted. Exiting...", counterId);
                 return;
+            } finally {
+                worker.stopWaiting();
             }
-        }
-    }
-    private boolean isCounterPausedInFirestore(int counterId) {
-        try {
-            Map<String, Object> counterData = FirebaseService.getCounterById(counterId);
-            if (counterData != null) {
-                // Check if the "isPaused" key exists and cast the value properly
-                if (counterData.containsKey("isPaused")) {
-                    Object pausedState = counterData.get("isPaused");
-                    if (pausedState instanceof Boolean) {
-                        return (boolean) pausedState;
-                    } else {
-                        logger.warn("Invalid data type for 'isPaused' in counter {}. Assuming paused.", counterId);
-                        return true; // Assume paused if data type is invalid
+            // An interrupt that raced the take: a retirement's is handled just below, anything
+            // else stops the counter as it would have during the wait
+            if (Thread.currentThread().isInterrupted()) {
+                if (!worker.isRetired()) {
+                    assignment.requeue();
+                    if (permitHeld) {
+                        permits.release();
                     }
-                } else {
-                    logger.warn("'isPaused' field not found for counter {}. Assuming paused.", counterId);
-                    return true; // Assume paused if key is missing
+                    logger.warn("Counter {} interrupted. Exiting...", counterId);
+                    return;
+                }
+                Thread.interrupted();
+            }
+
+            // Paused or retired while waiting: hand the request back to the front for another counter
+            if (gate.isPaused() || worker.isRetired()) {
+                assignment.requeue();
+                if (permitHeld) {
+                    permits.release();
                 }
+                continue;
+            }
+
+            if (executionMode == LoanExecutionMode.VIRTUAL) {
+                loanExecutor.execute(() -> {
+                    try {
+                        processRequest(counterId, assignment.request());
+                    } finally {
+                        assignment.complete();
+                        permits.release();
+                    }
+                });
             } else {
-                logger.warn("No counter data found for counter {}. Assuming paused.", counterId);
-                return true; // Assume paused if no data is found
+                try {
+                    processRequest(counterId, assignment.request());
+                } finally {
+                    assignment.complete();
+                }
             }
+        }
+        logger.info("Counter {} stopped.", counterId);
+    }
+
+    @PreDestroy
+    public void shutdownLoanExecutor() {
+        workers.values().forEach(CounterWorker::retire);
+        if (loanExecutor != null) {
+            loanExecutor.shutdown();
+        }
+    }
+
+    // Runs one request and records its outcome on the ticket
+    private void processRequest(int counterId, LoanRequest request) {
+        queuedRequests.decrementAndGet();
+        LoanPrefetch prefetch = request.getTicketId() != null ? prefetchByTicket.remove(request.getTicketId()) : null;
+        if (maxQueueAgeMillis > 0 && System.currentTimeMillis() - request.getQueuedAt() > maxQueueAgeMillis) {
+            shedForAge.increment();
+            shed(request, "waited longer than " + maxQueueAgeMillis + " ms");
+            return;
+        }
+        ticketService.started(request.getTicketId(), counterId);
+        LoanOutcome outcome;
+        try {
+            outcome = tryToBorrowBook(request.getCitizenId(), request.getBookTitle(), request.getBookAuthor(), prefetch);
         } catch (Exception e) {
-            logger.error("Error fetching counter state from Firestore for counter {}: {}", counterId, e.getMessage());
-            return true; // Assume paused in case of error
+            logger.error("Counter {} failed to process loan for citizen ID {}: {}", counterId, request.getCitizenId(), e.getMessage());
+            outcome = LoanOutcome.of(LoanStatus.FAILED);
         }
+        journal.acknowledge(request.getTicketId());
+        ticketService.finished(request.getTicketId(), outcome);
     }
 
-    private void tryToBorrowBook(String citizenId, String bookTitle, String bookAuthor) {
+    // prefetch holds the batch's shared lookups; null for a request queued on its own
+    private LoanOutcome tryToBorrowBook(String citizenId, String bookTitle, String bookAuthor, LoanPrefetch prefetch) {
+        // One loan per citizen and title at a time, on every instance, from the existing-borrow
+        // check to the commit, which is fenced with the lease. The lock metrics only see the book,
+        // so citizen IDs never end up in a metric tag
+        String book = bookTitle + ":" + bookAuthor;
+        return leaseLocks.withLease("loans", citizenId + ":" + book, book,
+                lease -> tryToBorrowBook(citizenId, bookTitle, bookAuthor, prefetch, lease));
+    }
+
+    private LoanOutcome tryToBorrowBook(String citizenId, String bookTitle, String bookAuthor, LoanPrefetch prefetch,
+                                        Lease lease) {
         logger.info("Attempting to borrow book '{}' by '{}' for citizen ID {}.", bookTitle, bookAuthor, citizenId);
 
-        String membershipId = FirebaseService.getMembershipIdById(citizenId);
+        // The existing-borrow check follows as soon as the membership arrives
+        CompletableFuture<String> membershipLookup;
+        CompletableFuture<Borrows> existingBorrowLookup;
+        if (prefetch == null) {
+            membershipLookup = asyncFirebaseService.getMembershipIdById(citizenId);
+            existingBorrowLookup = membershipLookup.thenCompose(id -> id == null
+                    ? CompletableFuture.completedFuture(null)
+                    : asyncFirebaseService.getBorrowByMembershipAndBook(id, bookTitle, bookAuthor));
+        } else {
+            membershipLookup = prefetch.membershipId(citizenId);
+            existingBorrowLookup = membershipLookup.thenCombine(prefetch.bookId(bookTitle, bookAuthor),
+                    asyncFirebaseService::getActiveBorrow).thenCompose(lookup -> lookup);
+        }
+
+        String membershipId = membershipLookup.join();
         if (membershipId == null) {
             logger.warn("Citizen ID {} does not have a valid membership.", citizenId);
-            return;
+            return LoanOutcome.of(LoanStatus.NO_MEMBERSHIP);
         }
 
-        Borrows existingBorrow = FirebaseService.getBorrowByMembershipAndBook(membershipId, bookTitle, bookAuthor);
+        Borrows existingBorrow = existingBorrowLookup.join();
         if (existingBorrow != null) {
             logger.warn("Citizen ID {} has already borrowed the book '{}' by '{}' and has not returned it yet.",
                     citizenId, bookTitle, bookAuthor);
-            return;
+            return LoanOutcome.of(LoanStatus.ALREADY_BORROWED);
         }
 
-        Book book = FirebaseService.getBookByTitleAndAuthor(bookTitle, bookAuthor);
-        if (book == null) {
-            logger.warn("Book '{}' by '{}' not found in the system.", bookTitle, bookAuthor);
-            return;
+        // Re-check against the index: the membership may have been deleted meanwhile
+        if (!membershipIndex.isCurrent(citizenId, membershipId)) {
+            logger.warn("Citizen ID {} does not have a valid membership.", citizenId);
+            return LoanOutcome.of(LoanStatus.NO_MEMBERSHIP);
         }
 
-        bookLocks.putIfAbsent(book.getId(), new ReentrantLock());
-        Lock bookLock = bookLocks.get(book.getId());
-
-        bookLock.lock();
-        try {
-            if (book.isAvailable() && FirebaseService.getMembershipIdById(citizenId) != null) {
-                logger.info("Book '{}' by '{}' is available. Assigning it to citizen ID {}.", bookTitle, bookAuthor, citizenId);
-                book.setAvailable(false);
-                FirebaseService.updateBookField(book.getId(), "available", false);
-                //FirebaseService.borrowBook(book.getId(), FirebaseService.getMembershipIdById(citizenId));
-                String borrowId = UUID.randomUUID().toString();
-                borrowService.createBorrow(borrowId, book.getId(), membershipId);
+        // Each caller pops a different copy from the pool; only before the pool is synced do we
+        // fall back to querying for the first available one. The loan commit re-checks the copy
+        // in the transaction that takes it, so a copy another node loaned first is skipped.
+        boolean fromPool = copyPool.isSynced();
+        for (int attempt = 1; attempt <= MAX_LOAN_ATTEMPTS; attempt++) {
+            Book book = fromPool
+                    ? copyPool.allocate(bookTitle, bookAuthor)
+                    : asyncFirebaseService.getBookByTitleAndAuthor(bookTitle, bookAuthor).join();
+            if (book == null) {
+                logger.warn("Book '{}' by '{}' not found in the system or no copy is available.", bookTitle, bookAuthor);
+                return LoanOutcome.of(LoanStatus.UNAVAILABLE);
+            }
 
+            logger.info("Book '{}' by '{}' is available. Assigning it to citizen ID {}.", bookTitle, bookAuthor, citizenId);
+            String borrowId = UUID.randomUUID().toString();
+            boolean committed;
+            try {
+                committed = borrowService.createLoan(borrowId, book.getId(), membershipId, lease);
+            } catch (LeaseLostException e) {
+                // The fence failed before the commit, so the copy was not taken and goes straight back
+                if (fromPool) {
+                    copyPool.release(book.getId());
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                // The commit failed, so the copy is most likely still free; should it have gone
+                // through after all, the listener takes the copy out again
+                if (fromPool) {
+                    copyPool.release(book.getId());
+                }
+                throw e;
+            }
+            if (committed) {
                 logger.info("Book '{}' by '{}' successfully loaned to citizen ID {}.", bookTitle, bookAuthor, citizenId);
+                return LoanOutcome.loaned(borrowId, book.getId());
+            }
+            // Taken elsewhere: the listener puts it back once it is available again
+            if (fromPool) {
+                copyPool.unclaim(book.getId());
+            }
+            logger.warn("Copy {} of '{}' by '{}' was no longer available at commit (attempt {}).",
+                    book.getId(), bookTitle, bookAuthor, attempt);
+        }
+        logger.warn("Book '{}' by '{}' is unavailable for citizen ID {}.", bookTitle, bookAuthor, citizenId);
+        return LoanOutcome.of(LoanStatus.UNAVAILABLE);
+    }
+
+    // Returns whether the state changed. A paused counter's backlog goes to the running counters.
+    private boolean setCounterPaused(int counterId, boolean paused) {
+        CounterGate gate = counterGates.get(counterId);
+        if (gate == null) {
+            return false;
+        }
+        synchronized (gate) {
+            if (!gate.setPaused(paused)) {
+                return false;
+            }
+            if (paused) {
+                scheduler.counterPaused(counterId);
             } else {
-                logger.warn("Book '{}' by '{}' is unavailable or citizen ID {} does not have a valid membership.", bookTitle, bookAuthor, citizenId);
+                scheduler.counterResumed(counterId);
             }
-        } finally {
-            bookLock.unlock();
-            logger.info("Released lock for book '{}' by '{}'.", bookTitle, bookAuthor);
+            return true;
         }
     }
+
     @Override
     public void pauseCounter(int counterId) {
         countersList.stream()
@@ -217,7 +642,8 @@ public class BookLoaningService implements Department {
                 .findFirst()
                 .ifPresent(counter -> {
                     counter.setPaused(true);
-                    FirebaseService.updateCounterState(counterId, true); // Update state in Firebase
+                    setCounterPaused(counterId, true); // Takes effect before the next request
+                    firebaseService.updateCounterState(counterId, true); // Update state in Firebase
                     logger.info("Paused counter {}.", counterId);
                 });
     }
@@ -229,10 +655,8 @@ public class BookLoaningService implements Department {
                 .findFirst()
                 .ifPresent(counter -> {
                     counter.setPaused(false);
-                    FirebaseService.updateCounterState(counterId, false); // Update state in Firebase
-                    synchronized (counterLocks.get(counterId)) {
-                        counterLocks.get(counterId).notify();
-                    }
+                    setCounterPaused(counterId, false); // Wakes the counter thread
+                    firebaseService.updateCounterState(counterId, false); // Update state in Firebase
                     logger.info("Resumed counter {}.", counterId);
                 });
     }
@@ -1,33 +1,32 @@
 package com.example.bureaucratic_system_backend.service;
 
+import com.example.bureaucratic_system_backend.lock.StripedLockRegistry;
 import com.example.bureaucratic_system_backend.model.Borrows;
+import com.example.bureaucratic_system_backend.repository.Lease;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class BorrowService {
 
     private static final Logger logger = LoggerFactory.getLogger(BorrowService.class);
 
-    private final Map<String, Lock> borrowLocks = new ConcurrentHashMap<>();
+    private final StripedLockRegistry lockRegistry;
     private final FirebaseService firebaseService;
 
-    public BorrowService(FirebaseService firebaseService) {
+    public BorrowService(FirebaseService firebaseService, StripedLockRegistry lockRegistry) {
         this.firebaseService = firebaseService;
+        this.lockRegistry = lockRegistry;
     }
 
     // ----------------------- Borrow Management -----------------------
 
     public void createBorrow(String borrowId, String bookId, String membershipId) {
-        borrowLocks.putIfAbsent(borrowId, new ReentrantLock());
-        Lock lock = borrowLocks.get(borrowId);
+        Lock lock = lockRegistry.lockFor("borrows", borrowId);
 
         lock.lock();
         try {
@@ -44,22 +43,33 @@ public class BorrowService {
         }
     }
 
+    // Creates the borrow and takes the book out in one commit; false if the book was already out.
+    // The fence, if any, is the lease the commit must still hold.
+    public boolean createLoan(String borrowId, String bookId, String membershipId, Lease fence) {
+        String borrowDate = LocalDate.now().toString();
+        String dueDate = LocalDate.now().plusDays(30).toString(); // Default loan period is 30 days
+        Borrows borrow = new Borrows(borrowId, bookId, membershipId, borrowDate, dueDate, null);
+        boolean committed = firebaseService.commitLoan(borrow, fence);
+        if (committed) {
+            logger.info("Loan committed for borrow ID: {}", borrowId);
+        }
+        return committed;
+    }
+
+    // Failures, including a missing borrow, reach the caller
     public void updateReturnDate(String borrowId, String returnDate) {
-        borrowLocks.putIfAbsent(borrowId, new ReentrantLock());
-        Lock lock = borrowLocks.get(borrowId);
+        Lock lock = lockRegistry.lockFor("borrows", borrowId);
 
         lock.lock();
         try {
-            Borrows borrow = firebaseService.getBorrowById(borrowId);
-            if (borrow != null) {
-                borrow.setReturnDate(returnDate);
-                firebaseService.updateBorrow(borrowId, borrow);
-                logger.info("Return date updated successfully for borrow ID: {}", borrowId);
-            } else {
-                logger.warn("Borrow record not found for borrow ID: {}", borrowId);
+            if (firebaseService.getBorrowById(borrowId) == null) {
+                throw new IllegalArgumentException("Borrow record not found for borrow ID: " + borrowId);
             }
+            firebaseService.updateBorrowReturnDate(borrowId, returnDate);
+            logger.info("Return date updated successfully for borrow ID: {}", borrowId);
         } catch (Exception e) {
             logger.error("Error updating return date for borrow ID: {}: {}", borrowId, e.getMessage());
+            throw new RuntimeException(e.getMessage(), e);
         } finally {
             lock.unlock();
         }
@@ -75,8 +85,7 @@ public class BorrowService {
     }
 
     public void deleteBorrow(String borrowId) {
-        borrowLocks.putIfAbsent(borrowId, new ReentrantLock());
-        Lock lock = borrowLocks.get(borrowId);
+        Lock lock = lockRegistry.lockFor("borrows", borrowId);
 
         lock.lock();
         try {
@@ -1,23 +1,20 @@
 package com.example.bureaucratic_system_backend.service;
 
 import com.example.bureaucratic_system_backend.model.Citizen;
-import com.google.cloud.firestore.Firestore;
-import com.google.firebase.cloud.FirestoreClient;
+import com.example.bureaucratic_system_backend.repository.CitizenRepository;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.Map;
-
 @Service
 public class CitizenService {
 
-    public void addCitizen(Citizen citizen) throws Exception {
-        Firestore db = FirestoreClient.getFirestore();
-        Map<String, Object> citizenData = new HashMap<>();
-        citizenData.put("id", citizen.getId());
-        citizenData.put("name", citizen.getName());
+    private final CitizenRepository citizenRepository;
 
-        // Add citizen to Firestore 'citizens' collection
-        db.collection("citizen").document(citizen.getId()).set(citizenData).get();
+    public CitizenService(CitizenRepository citizenRepository) {
+        this.citizenRepository = citizenRepository;
+    }
+
+    public void addCitizen(Citizen citizen) throws Exception {
+        // Add citizen to the 'citizen' collection
+        citizenRepository.save(new Citizen(citizen.getId(), citizen.getName()));
     }
-}
\ No newline at end of file
+}
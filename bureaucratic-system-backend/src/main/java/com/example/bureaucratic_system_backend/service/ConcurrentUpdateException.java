@@ -0,0 +1,13 @@
+package com.example.bureaucratic_system_backend.service;
+
+/**
+ * A conditional write kept losing to concurrent writers of the same document and gave up.
+ * Nothing was written; the caller may try again.
+ */
+public class ConcurrentUpdateException extends RuntimeException {
+
+    public ConcurrentUpdateException(String collectionName, String documentId, int attempts) {
+        super("Document " + documentId + " in " + collectionName + " kept changing; gave up after "
+                + attempts + " attempts.");
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.bureaucratic_system_backend.service;
+
+import com.example.bureaucratic_system_backend.lock.LeaseLockService;
+import com.example.bureaucratic_system_backend.model.Borrows;
+import com.example.bureaucratic_system_backend.model.Fees;
+import com.example.bureaucratic_system_backend.repository.FeeRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Charges overdue fees on books that are still out, instead of only when they come back.
+ *
+ * A sweep pages through the unreturned borrows in ID order, page-size at a time, following a
+ * cursor (the last ID of the previous page). Each page is handed to a worker, which commits the
+ * fees of the page's overdue borrows in one transaction (several for pages over Firestore's
+ * 500-write limit); at most parallelism pages are in flight, so memory stays bounded whatever
+ * the number of borrows.
+ *
+ * The transaction reads each borrow, its fee and its "fees" lease before writing, so a fee is
+ * written only while its book is still out and no return is settling it: a return that
+ * commits first makes the borrow read see its return date, and one that commits later settles
+ * the final amount over the accrued one. A new fee is created only if none exists and an
+ * amount is changed only on an unpaid fee, so a fee paid since the sweep started keeps its
+ * amount and flag.
+ *
+ * The fee of a borrow is stored under the borrow's ID and its amount depends only on the due
+ * date and the day of the sweep, so running a sweep twice, or on two instances, writes the same
+ * documents with the same values. A failed write marks its page failed and is picked up again
+ * by the next sweep.
+ */
+@Service
+public class FeeAccrualService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeeAccrualService.class);
+
+    public record AccrualSummary(int borrowsScanned, int feesCreated, int feesUpdated, int pagesFailed, long durationMillis) {
+    }
+
+    private final FirebaseService firebaseService;
+    private final FeeService feeService;
+    private final int pageSize;
+    private final int parallelism;
+    private final ExecutorService workers;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public FeeAccrualService(FirebaseService firebaseService, FeeService feeService,
+                             @Value("${fees.accrual.page-size:500}") int pageSize,
+                             @Value("${fees.accrual.parallelism:4}") int parallelism) {
+        this.firebaseService = firebaseService;
+        this.feeService = feeService;
+        this.pageSize = Math.max(1, pageSize);
+        this.parallelism = Math.max(1, parallelism);
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.parallelism, r -> {
+            Thread thread = new Thread(r, "fee-accrual-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // "-" as the cron turns the schedule off; POST /api/admin/fees/accrue still runs a sweep
+    @Scheduled(cron = "${fees.accrual.cron:0 30 2 * * *}")
+    public void scheduledSweep() {
+        sweep(LocalDate.now());
+    }
+
+    // Returns null if a sweep is already running on this instance
+    public AccrualSummary sweep(LocalDate today) {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Fee accrual sweep already running; skipping.");
+            return null;
+        }
+        try {
+            return runSweep(today);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private AccrualSummary runSweep(LocalDate today) {
+        long start = System.currentTimeMillis();
+        LongAdder scanned = new LongAdder();
+        LongAdder created = new LongAdder();
+        LongAdder updated = new LongAdder();
+        LongAdder failedPages = new LongAdder();
+        Semaphore inFlight = new Semaphore(parallelism);
+
+        logger.info("Fee accrual sweep for {} started.", today);
+        String cursor = null;
+        try {
+            while (true) {
+                List<Borrows> page = firebaseService.getActiveBorrowsPage(cursor, pageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                cursor = page.get(page.size() - 1).getId();
+                scanned.add(page.size());
+
+                // The next page is read while this one is worked on
+                inFlight.acquire();
+                workers.execute(() -> {
+                    try {
+                        accruePage(page, today, created, updated);
+                    } catch (Exception e) {
+                        failedPages.increment();
+                        logger.error("Fee accrual failed for a page of {} borrows: {}", page.size(), e.getMessage());
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Fee accrual sweep interrupted after {} borrows.", scanned.sum());
+        } catch (Exception e) {
+            // Pages are read in order, so a failed read ends the sweep; the next one starts over
+            logger.error("Fee accrual sweep stopped after {} borrows: {}", scanned.sum(), e.getMessage());
+        } finally {
+            awaitPages(inFlight);
+        }
+
+        AccrualSummary summary = new AccrualSummary(scanned.intValue(), created.intValue(), updated.intValue(),
+                failedPages.intValue(), System.currentTimeMillis() - start);
+        logger.info("Fee accrual sweep for {} done: {} borrows, {} fees created, {} updated, {} pages failed, {} ms.",
+                today, summary.borrowsScanned(), summary.feesCreated(), summary.feesUpdated(),
+                summary.pagesFailed(), summary.durationMillis());
+        return summary;
+    }
+
+    // Waits for the pages still in flight, however the sweep ended, so the summary counts them and
+    // the next sweep can't start alongside them
+    private void awaitPages(Semaphore inFlight) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (inFlight.tryAcquire(parallelism, 1, TimeUnit.SECONDS)) {
+                    inFlight.release(parallelism);
+                    break;
+                }
+                // Pages dropped from the queue at shutdown never give their permits back
+                if (workers.isTerminated()) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The page's writes commit together; a failure reaches the caller, which counts the page failed
+    private void accruePage(List<Borrows> page, LocalDate today, LongAdder created, LongAdder updated) {
+        List<FeeRepository.Accrual> accruals = new ArrayList<>();
+        for (Borrows borrow : page) {
+            long overdueDays = overdueDays(borrow, today);
+            if (overdueDays > 0) {
+                Fees fee = new Fees(borrow.getId(), borrow.getMembershipId(), feeService.overdueAmount(overdueDays),
+                        borrow.getId(), "No");
+                accruals.add(new FeeRepository.Accrual(fee, LeaseLockService.leaseName("fees", borrow.getId())));
+            }
+        }
+        if (accruals.isEmpty()) {
+            return;
+        }
+        FeeRepository.AccrualCounts counts = firebaseService.accrueFeesWhileBorrowed(accruals);
+        created.add(counts.created());
+        updated.add(counts.updated());
+    }
+
+    private static long overdueDays(Borrows borrow, LocalDate today) {
+        if (borrow.getDueDate() == null) {
+            return 0;
+        }
+        try {
+            return ChronoUnit.DAYS.between(LocalDate.parse(borrow.getDueDate()), today);
+        } catch (DateTimeParseException e) {
+            logger.warn("Borrow {} has an unreadable due date '{}'; skipped.", borrow.getId(), borrow.getDueDate());
+            return 0;
+        }
+    }
+}
@@ -2,48 +2,61 @@ package com.example.bureaucratic_system_backend.service;
 
 import com.example.bureaucratic_system_backend.model.Borrows;
 import com.example.bureaucratic_system_backend.model.Fees;
+import com.example.bureaucratic_system_backend.lock.LeaseLockService;
+import com.example.bureaucratic_system_backend.lock.StripedLockRegistry;
+import com.example.bureaucratic_system_backend.repository.DocumentKey;
+import com.example.bureaucratic_system_backend.repository.Lease;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 @Service
 public class FeeService {
 
     private static final Logger logger = LoggerFactory.getLogger(FeeService.class);
 
     // Locks for thread-safe fee management
-    private final Map<String, Lock> feeLocks = new ConcurrentHashMap<>();
+    private final StripedLockRegistry lockRegistry;
+    // Overdue fees are generated under a lease, so two instances can't both charge one borrow
+    private final LeaseLockService leaseLocks;
     private final FirebaseService firebaseService;
+    private final BigDecimal dailyRate;
 
-    public FeeService(FirebaseService firebaseService) {
+    public FeeService(FirebaseService firebaseService, StripedLockRegistry lockRegistry, LeaseLockService leaseLocks,
+                      @Value("${fees.overdue.daily-rate:1}") BigDecimal dailyRate) {
         this.firebaseService = firebaseService;
+        this.lockRegistry = lockRegistry;
+        this.leaseLocks = leaseLocks;
+        this.dailyRate = dailyRate;
     }
 
     // ----------------------- Fee Management -----------------------
 
     // Manually add a custom fee
     public void addFee(Fees fee) {
-        feeLocks.putIfAbsent(fee.getId(), new ReentrantLock());
-        Lock lock = feeLocks.get(fee.getId());
+        Lock lock = lockRegistry.lockFor("fees", fee.getId());
 
         lock.lock();
         try {
-            // Check if fee ID already exists (uniqueness check)
-            if (firebaseService.documentExists("fees", fee.getId())) {
+            // Uniqueness and foreign key checks (membershipId, borrowId) in one multi-get
+            DocumentKey feeKey = DocumentKey.of("fees", fee.getId());
+            DocumentKey membershipKey = DocumentKey.of("memberships", fee.getMembershipId());
+            DocumentKey borrowKey = DocumentKey.of("borrows", fee.getBorrowId());
+            Set<DocumentKey> existing = firebaseService.existingDocuments(feeKey, membershipKey, borrowKey);
+
+            if (existing.contains(feeKey)) {
                 throw new IllegalArgumentException("Fee with ID " + fee.getId() + " already exists.");
             }
-
-            // Validate foreign keys (e.g., membershipId, borrowId)
-            if (!firebaseService.documentExists("memberships", fee.getMembershipId())) {
+            if (!existing.contains(membershipKey)) {
                 throw new IllegalArgumentException("Membership with ID " + fee.getMembershipId() + " does not exist.");
             }
-            if (!firebaseService.documentExists("borrows", fee.getBorrowId())) {
+            if (!existing.contains(borrowKey)) {
                 throw new IllegalArgumentException("Borrow record with ID " + fee.getBorrowId() + " does not exist.");
             }
 
@@ -57,48 +70,58 @@ public class FeeService {
         }
     }
 
+    // Fee for a book overdue by that many days, as stored: "5" rather than "5.00"
+    public String overdueAmount(long overdueDays) {
+        return dailyRate.multiply(BigDecimal.valueOf(overdueDays)).stripTrailingZeros().toPlainString();
+    }
+
     // Automatically generate overdue fee based on borrow data
     public void generateOverdueFee(String borrowId) {
-        feeLocks.putIfAbsent(borrowId, new ReentrantLock());
-        Lock lock = feeLocks.get(borrowId);
-
-        lock.lock();
         try {
-            // Validate that the borrow ID exists
-            Borrows borrow = firebaseService.getBorrowById(borrowId);
-            if (borrow == null) {
-                throw new IllegalArgumentException("Borrow record not found for borrow ID: " + borrowId);
-            }
+            leaseLocks.withLease("fees", borrowId, lease -> {
+                generateOverdueFee(borrowId, lease);
+                return null;
+            });
+        } catch (Exception e) {
+            logger.error("Error generating overdue fee for borrow ID: {}: {}", borrowId, e.getMessage());
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
 
-            // Validate that the book has been returned
-            if (borrow.getReturnDate() == null) {
-                throw new IllegalArgumentException("Book not returned yet for borrow ID: " + borrowId);
-            }
+    private void generateOverdueFee(String borrowId, Lease lease) {
+        // Validate that the borrow ID exists
+        Borrows borrow = firebaseService.getBorrowById(borrowId);
+        if (borrow == null) {
+            throw new IllegalArgumentException("Borrow record not found for borrow ID: " + borrowId);
+        }
 
-            // Calculate overdue fee
-            LocalDate dueDate = LocalDate.parse(borrow.getDueDate());
-            LocalDate returnDate = LocalDate.parse(borrow.getReturnDate());
-            long overdueDays = ChronoUnit.DAYS.between(dueDate, returnDate);
+        // Validate that the book has been returned
+        if (borrow.getReturnDate() == null) {
+            throw new IllegalArgumentException("Book not returned yet for borrow ID: " + borrowId);
+        }
 
-            if (overdueDays > 0) {
-                String amount = String.valueOf(overdueDays * 1); // Example: $1 per day
-                Fees fee = new Fees(borrowId, borrow.getMembershipId(), amount, borrowId, "No");
+        // Calculate overdue fee
+        LocalDate dueDate = LocalDate.parse(borrow.getDueDate());
+        LocalDate returnDate = LocalDate.parse(borrow.getReturnDate());
+        long overdueDays = ChronoUnit.DAYS.between(dueDate, returnDate);
 
-                // Check if fee ID already exists (reuse borrowId as fee ID)
-                if (firebaseService.documentExists("fees", fee.getId())) {
-                    throw new IllegalArgumentException("Overdue fee for borrow ID " + borrowId + " already exists.");
-                }
+        if (overdueDays > 0) {
+            String amount = overdueAmount(overdueDays);
+            Fees fee = new Fees(borrowId, borrow.getMembershipId(), amount, borrowId, "No");
 
-                firebaseService.addFee(fee);
+            // Reuse borrowId as fee ID; the existence check and the insert are one fenced step
+            if (firebaseService.addFeeIfAbsent(fee, lease)) {
                 logger.info("Overdue fee generated: $ {} for borrow ID: {}", amount, borrowId);
-            } else {
-                logger.info("No overdue fee generated. Book returned on time for borrow ID: {}", borrowId);
+                return;
             }
-        } catch (Exception e) {
-            logger.error("Error generating overdue fee for borrow ID: {}: {}", borrowId, e.getMessage());
-            throw new RuntimeException(e.getMessage(), e);
-        } finally {
-            lock.unlock();
+            // The accrual sweep charged the borrow while the book was out: settle the final amount,
+            // fenced like the insert, unless the fee has been paid meanwhile
+            if (!firebaseService.updateFeeAmountIfUnpaid(borrowId, amount, lease)) {
+                throw new IllegalArgumentException("Overdue fee for borrow ID " + borrowId + " already exists.");
+            }
+            logger.info("Accrued overdue fee settled at $ {} for borrow ID: {}", amount, borrowId);
+        } else {
+            logger.info("No overdue fee generated. Book returned on time for borrow ID: {}", borrowId);
         }
     }
 
@@ -106,14 +129,17 @@ public class FeeService {
     public void markFeeAsPaid(String borrowId) {
         logger.debug("Starting to mark fee as paid. Borrow ID: {}", borrowId);
 
-        Fees fee = getFeeByBorrowId(borrowId);
+        // Overdue fees are stored under their borrow ID, so try the keyed get before querying
+        Fees fee = firebaseService.getFeeById(borrowId);
+        if (fee == null || !borrowId.equals(fee.getBorrowId())) {
+            fee = getFeeByBorrowId(borrowId);
+        }
         if (fee == null) {
             logger.error("No fee found for borrow ID: {}", borrowId);
             throw new IllegalArgumentException("Fee not found for borrow ID: " + borrowId);
         }
 
-        feeLocks.putIfAbsent(fee.getId(), new ReentrantLock());
-        Lock lock = feeLocks.get(fee.getId());
+        Lock lock = lockRegistry.lockFor("fees", fee.getId());
 
         logger.debug("Acquired lock for fee ID: {}", fee.getId());
 
@@ -145,8 +171,7 @@ public class FeeService {
 
     // Delete a fee
     public void deleteFee(String feeId) {
-        feeLocks.putIfAbsent(feeId, new ReentrantLock());
-        Lock lock = feeLocks.get(feeId);
+        Lock lock = lockRegistry.lockFor("fees", feeId);
 
         lock.lock();
         try {
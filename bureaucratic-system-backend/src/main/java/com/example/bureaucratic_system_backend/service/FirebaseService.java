@@ -1,152 +1,165 @@
 package com.example.bureaucratic_system_backend.service;
 
+import com.example.bureaucratic_system_backend.cache.BookViews;
+import com.example.bureaucratic_system_backend.cache.CatalogAggregate;
+import com.example.bureaucratic_system_backend.cache.LookupCache;
+import com.example.bureaucratic_system_backend.cache.MembershipIndex;
 import com.example.bureaucratic_system_backend.model.*;
-import com.google.api.core.ApiFuture;
-import com.google.cloud.firestore.*;
+import com.example.bureaucratic_system_backend.repository.*;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.auth.FirebaseToken;
-import com.google.firebase.cloud.FirestoreClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
+/**
+ * Entry point of the services to persistence. Delegates to the repository of each collection,
+ * which is Firestore by default or the embedded store under the "embedded" profile. Book and
+ * counter lookups are answered from the LookupCache, memberships from the MembershipIndex.
+ */
 @Service
 public class FirebaseService {
     private static final Logger logger = LoggerFactory.getLogger(FirebaseService.class);
 
-    private static Firestore getFirestore() {
-        return FirestoreClient.getFirestore();
+    private final BookRepository bookRepository;
+    private final BorrowRepository borrowRepository;
+    private final FeeRepository feeRepository;
+    private final MembershipRepository membershipRepository;
+    private final CitizenRepository citizenRepository;
+    private final CounterRepository counterRepository;
+    private final UserRepository userRepository;
+    private final DocumentLookup documentLookup;
+    private final LookupCache lookupCache;
+    private final MembershipIndex membershipIndex;
+    private final BookViews bookViews;
+    private final CatalogAggregate catalog;
+
+    // Lookup for the operations that take a collection name
+    private final Map<String, DocumentRepository<?>> repositoriesByCollection = new HashMap<>();
+
+    public FirebaseService(BookRepository bookRepository, BorrowRepository borrowRepository, FeeRepository feeRepository,
+                           MembershipRepository membershipRepository, CitizenRepository citizenRepository,
+                           CounterRepository counterRepository, UserRepository userRepository, DocumentLookup documentLookup,
+                           LookupCache lookupCache, MembershipIndex membershipIndex,
+                           BookViews bookViews, CatalogAggregate catalog) {
+        this.bookRepository = bookRepository;
+        this.borrowRepository = borrowRepository;
+        this.feeRepository = feeRepository;
+        this.membershipRepository = membershipRepository;
+        this.citizenRepository = citizenRepository;
+        this.counterRepository = counterRepository;
+        this.userRepository = userRepository;
+        this.documentLookup = documentLookup;
+        this.lookupCache = lookupCache;
+        this.membershipIndex = membershipIndex;
+        this.bookViews = bookViews;
+        this.catalog = catalog;
+
+        for (DocumentRepository<?> repository : List.of(bookRepository, borrowRepository, feeRepository,
+                membershipRepository, citizenRepository, counterRepository)) {
+            repositoriesByCollection.put(repository.collectionName(), repository);
+        }
     }
+
+    private DocumentRepository<?> repository(String collectionName) {
+        DocumentRepository<?> repository = repositoriesByCollection.get(collectionName);
+        if (repository == null) {
+            throw new IllegalArgumentException("Unknown collection: " + collectionName);
+        }
+        return repository;
+    }
+
     public void assignRole(String userId, String role) throws Exception {
         FirebaseAuth.getInstance().setCustomUserClaims(userId, Map.of("role", role));
     }
     public Map<String, Object> getUserByEmail(String email) {
         System.out.println("Querying Firestore for email: " + email);
         try {
-            ApiFuture<QuerySnapshot> query = getFirestore()
-                    .collection("users")
-                    .whereEqualTo("email", email)
-                    .get();
-            List<QueryDocumentSnapshot> documents = query.get().getDocuments();
-            if (documents.isEmpty()) {
+            Map<String, Object> user = userRepository.findByEmail(email);
+            if (user == null) {
                 System.out.println("No user found for email: " + email);
-                return null;
             }
-            return documents.get(0).getData();
+            return user;
         } catch (Exception e) {
             System.err.println("Error fetching user by email: " + e.getMessage());
             return null;
         }
     }
-    public static void saveCounterToFirestore(Counter counter) {
+    public void saveCounterToFirestore(Counter counter) {
         try {
-            Firestore firestore = getFirestore();
-            firestore.collection("counters").document(String.valueOf(counter.getCounterId()))
-                    .set(Map.of(
-                            "counterId", counter.getCounterId(),
-                            "isPaused", counter.isPaused()
-                    )).get();
+            counterRepository.save(counter);
+            lookupCache.invalidateCounter(counter.getCounterId());
             logger.info("Counter {} initialized in Firestore.", counter.getCounterId());
         } catch (Exception e) {
             logger.error("Error saving counter to Firestore: {}", e.getMessage());
         }
     }
-    public static Map<String, Object> getCounterById(int counterId) {
+    public Map<String, Object> getCounterById(int counterId) {
         try {
-            Firestore firestore = FirestoreClient.getFirestore();
-            ApiFuture<QuerySnapshot> query = firestore.collection("counters")
-                    .whereEqualTo("counterId", counterId)
-                    .get();
-            List<QueryDocumentSnapshot> documents = query.get().getDocuments();
-
-            if (!documents.isEmpty()) {
-                return documents.get(0).getData(); // Return the first matching counter
-            } else {
+            Map<String, Object> counterData = lookupCache.findCounterData(counterId);
+            if (counterData == null) {
                 System.err.println("Counter not found for ID: " + counterId);
-                return null;
             }
+            return counterData;
         } catch (Exception e) {
             System.err.println("Error fetching counter by ID: " + e.getMessage());
             return null;
         }
     }
-    public static void listenToCounterChanges(Map<Integer, Object> counterLocks, Map<Integer, Boolean> counterPauseStatus) {
-        Firestore firestore = getFirestore();
-        firestore.collection("counters").addSnapshotListener((snapshots, e) -> {
-            if (e != null) {
-                System.err.println("Error listening to counters: " + e.getMessage());
+    // Reports the paused state of each counter as it changes in Firestore
+    public void listenToCounterChanges(BiConsumer<Integer, Boolean> onPausedChanged) {
+        counterRepository.addChangeListener((type, documentId, counterData) -> {
+            if (type == DocumentChangeListener.ChangeType.REMOVED) {
                 return;
             }
+            Integer counterId = (counterData.containsKey("counterId"))
+                    ? ((Number) counterData.get("counterId")).intValue()
+                    : null;
+            Boolean isPaused = (Boolean) counterData.get("isPaused");
 
-            if (snapshots != null) {
-                for (DocumentChange dc : snapshots.getDocumentChanges()) {
-                    Map<String, Object> counterData = dc.getDocument().getData();
-                    Integer counterId = (counterData.containsKey("counterId"))
-                            ? ((Long) counterData.get("counterId")).intValue()
-                            : null;
-                    Boolean isPaused = (Boolean) counterData.get("isPaused");
-
-                    if (counterId != null) {
-                        counterPauseStatus.put(counterId, isPaused);
-
-                        // Notify the thread if the counter is no longer paused
-                        if (!isPaused) {
-                            synchronized (counterLocks.get(counterId)) {
-                                counterLocks.get(counterId).notifyAll();
-                            }
-                            System.out.printf("Counter %d resumed from Firestore changes.%n", counterId);
-                        }
-                    }
-                }
+            if (counterId != null && isPaused != null) {
+                onPausedChanged.accept(counterId, isPaused);
             }
         });
     }
-    public static void updateCounterState(int counterId, boolean isPaused) {
+    public void updateCounterState(int counterId, boolean isPaused) {
         try {
-            Firestore firestore = getFirestore();
-            firestore.collection("counters").document(String.valueOf(counterId))
-                    .update("isPaused", isPaused).get();
+            counterRepository.updatePaused(counterId, isPaused);
+            lookupCache.invalidateCounter(counterId);
             logger.info("Counter {} state updated to {}.", counterId, isPaused ? "Paused" : "Active");
         } catch (Exception e) {
             logger.error("Error updating counter state in Firestore: {}", e.getMessage());
         }
     }
-    public static List<Counter> getAllCounters() {
-        List<Counter> counters = new ArrayList<>();
+    public List<Counter> getAllCounters() {
         try {
-            Firestore firestore = getFirestore();
-            ApiFuture<QuerySnapshot> query = firestore.collection("counters").get();
-            List<QueryDocumentSnapshot> documents = query.get().getDocuments();
-
-            for (QueryDocumentSnapshot document : documents) {
-                int counterId = document.getLong("counterId").intValue();
-                boolean isPaused = document.getBoolean("isPaused");
-                counters.add(new Counter(counterId, isPaused));
-            }
+            return counterRepository.findAll();
         } catch (Exception e) {
             logger.error("Error fetching counters from Firestore: {}", e.getMessage());
+            return new ArrayList<>();
         }
-        return counters;
     }
-    public static void clearCountersCollection() {
-        Firestore firestore = getFirestore();
-
+    public void deleteCounterFromFirestore(int counterId) {
         try {
-            ApiFuture<QuerySnapshot> query = firestore.collection("counters").get();
-            List<QueryDocumentSnapshot> documents = query.get().getDocuments();
-
-            for (QueryDocumentSnapshot document : documents) {
-                firestore.collection("counters").document(document.getId()).delete();
-                logger.info("Deleted counter document: {}", document.getId());
-            }
-
+            counterRepository.deleteById(String.valueOf(counterId));
+            lookupCache.invalidateCounter(counterId);
+            logger.info("Counter {} removed from Firestore.", counterId);
+        } catch (Exception e) {
+            logger.error("Error removing counter {} from Firestore: {}", counterId, e.getMessage());
+        }
+    }
+    public void clearCountersCollection() {
+        try {
+            counterRepository.deleteAll();
+            lookupCache.invalidateCounters();
             logger.info("All counters cleared from Firestore.");
         } catch (Exception e) {
             logger.error("Error clearing counters collection: {}", e.getMessage());
@@ -154,12 +167,9 @@ public class FirebaseService {
     }
     // ----------------------- Memberships -----------------------
 
-    public static String getMembershipIdById(String citizenId) {
+    public String getMembershipIdById(String citizenId) {
         try {
-            ApiFuture<QuerySnapshot> query = getFirestore().collection("memberships")
-                    .whereEqualTo("citizenId", citizenId).get();
-            List<QueryDocumentSnapshot> documents = query.get().getDocuments();
-            return documents.isEmpty() ? null : documents.get(0).getId();
+            return membershipIndex.membershipIdOf(citizenId);
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -167,13 +177,9 @@ public class FirebaseService {
     }
 
     public void addMembership(Membership newMembership) {
-        Map<String, Object> membershipData = new HashMap<>();
-        membershipData.put("id", newMembership.getMembershipNumber());
-        membershipData.put("issueDate", newMembership.getIssueDate());
-        membershipData.put("citizenId", newMembership.getCitizenId());
-
         try {
-            getFirestore().collection("memberships").document(newMembership.getMembershipNumber()).set(membershipData).get();
+            membershipRepository.save(newMembership);
+            membershipIndex.put(newMembership.getMembershipNumber(), newMembership.getCitizenId());
             System.out.println("Membership added successfully: " + newMembership.getMembershipNumber());
         } catch (Exception e) {
             System.err.println("Error adding membership: " + e.getMessage());
@@ -186,7 +192,8 @@ public class FirebaseService {
 
     public void deleteMembership(String membershipId) {
         try {
-            getFirestore().collection("memberships").document(membershipId).delete().get();
+            membershipRepository.deleteById(membershipId);
+            membershipIndex.remove(membershipId);
             System.out.println("Membership deleted successfully: " + membershipId);
         } catch (Exception e) {
             System.err.println("Error deleting membership: " + e.getMessage());
@@ -195,14 +202,9 @@ public class FirebaseService {
 
     // ----------------------- Books -----------------------
 
-    public static Book getBookByTitleAndAuthor(String title, String author) {
+    public Book getBookByTitleAndAuthor(String title, String author) {
         try {
-            ApiFuture<QuerySnapshot> query = getFirestore().collection("books")
-                    .whereEqualTo("name", title)
-                    .whereEqualTo("author", author)
-                    .whereEqualTo("available", true).get();
-            List<QueryDocumentSnapshot> documents = query.get().getDocuments();
-            return documents.isEmpty() ? null : documents.get(0).toObject(Book.class);
+            return lookupCache.findFirstAvailableBook(title, author);
         } catch (Exception e) {
             System.err.println("Error fetching book: " + e.getMessage());
             return null;
@@ -211,36 +213,30 @@ public class FirebaseService {
 
     public void addBook(Book book) {
         try {
-            getFirestore().collection("books").document(book.getId()).set(book).get();
+            bookRepository.save(book);
+            bookViews.bookSaved(book);
             System.out.println("Book added successfully: " + book.getName());
         } catch (Exception e) {
             System.err.println("Error adding book: " + e.getMessage());
         }
     }
     public List<String> getAllDocumentIds(String collectionName) {
-        Firestore firestore = FirestoreClient.getFirestore();
-
         try {
-            return firestore.collection(collectionName)
-                    .get()
-                    .get()
-                    .getDocuments()
-                    .stream()
-                    .map(QueryDocumentSnapshot::getId) // Extract the document IDs
-                    .collect(Collectors.toList());
+            return repository(collectionName).findAllIds();
         } catch (Exception e) {
             logger.error("Error fetching document IDs from collection {}: {}", collectionName, e.getMessage());
             throw new RuntimeException("Failed to fetch document IDs: " + e.getMessage(), e);
         }
     }
 
-    public static void updateBookField(String bookId, String fieldName, Object value) {
+    public void updateBookField(String bookId, String fieldName, Object value) {
         updateField("books", bookId, fieldName, value);
     }
 
     public void deleteBook(String bookId) {
         try {
-            getFirestore().collection("books").document(bookId).delete().get();
+            bookRepository.deleteById(bookId);
+            bookViews.bookDeleted(bookId);
             System.out.println("Book deleted successfully: " + bookId);
         } catch (Exception e) {
             System.err.println("Error deleting book: " + e.getMessage());
@@ -248,25 +244,19 @@ public class FirebaseService {
     }
 
     public List<Book> getAllBooksFromFirestore() {
-        List<Book> books = new ArrayList<>();
         try {
-            ApiFuture<QuerySnapshot> query = getFirestore().collection("books").get();
-            List<QueryDocumentSnapshot> documents = query.get().getDocuments();
-
-            for (QueryDocumentSnapshot document : documents) {
-                books.add(document.toObject(Book.class));
-            }
+            return bookRepository.findAll();
         } catch (Exception e) {
             System.err.println("Error retrieving books: " + e.getMessage());
+            return new ArrayList<>();
         }
-        return books;
     }
 
     // ----------------------- Citizens -----------------------
 
     public void addCitizen(Citizen citizen) {
         try {
-            getFirestore().collection("citizen").document(citizen.getId()).set(citizen).get();
+            citizenRepository.save(citizen);
             System.out.println("Citizen added successfully: " + citizen.getName());
         } catch (Exception e) {
             System.err.println("Error adding citizen: " + e.getMessage());
@@ -279,7 +269,7 @@ public class FirebaseService {
 
     public void deleteCitizen(String citizenId) {
         try {
-            getFirestore().collection("citizen").document(citizenId).delete().get();
+            citizenRepository.deleteById(citizenId);
             System.out.println("Citizen deleted successfully: " + citizenId);
         } catch (Exception e) {
             System.err.println("Error deleting citizen: " + e.getMessage());
@@ -290,28 +280,51 @@ public class FirebaseService {
 
     public void addFee(Fees fee) {
         try {
-            getFirestore().collection("fees").document(fee.getId()).set(fee).get();
+            feeRepository.save(fee);
             System.out.println("Fee added successfully: " + fee.getId());
         } catch (Exception e) {
             System.err.println("Error adding fee: " + e.getMessage());
         }
     }
 
+    // Inserts the fee unless its ID is taken; failures, including a lost lease, reach the caller
+    public boolean addFeeIfAbsent(Fees fee, Lease fence) {
+        boolean inserted = feeRepository.insertIfAbsent(fee, fence);
+        if (inserted) {
+            System.out.println("Fee added successfully: " + fee.getId());
+        }
+        return inserted;
+    }
+
+    // False if the fee is paid or gone; failures, including a lost lease, reach the caller
+    public boolean updateFeeAmountIfUnpaid(String feeId, String amount, Lease fence) {
+        boolean updated = feeRepository.updateAmountIfUnpaid(feeId, amount, fence);
+        if (updated) {
+            System.out.println("Fee amount updated successfully: " + feeId);
+        }
+        return updated;
+    }
+
     public void updateFee(String feeId, Fees updatedFee) {
         try {
-            getFirestore().collection("fees").document(feeId).set(updatedFee).get();
+            updatedFee.setId(feeId);
+            feeRepository.save(updatedFee);
             System.out.println("Fee updated successfully: " + feeId);
         } catch (Exception e) {
             System.err.println("Error updating fee: " + e.getMessage());
         }
     }
 
+    // Fees of borrows still out, written only where the checks of the batch step pass; failures reach the caller
+    public FeeRepository.AccrualCounts accrueFeesWhileBorrowed(List<FeeRepository.Accrual> accruals) {
+        FeeRepository.AccrualCounts counts = feeRepository.accrueWhileBorrowed(accruals);
+        System.out.println("Fees accrued: " + counts.created() + " added, " + counts.updated() + " updated.");
+        return counts;
+    }
+
     public Fees getFeeByBorrowId(String borrowId) {
         try {
-            ApiFuture<QuerySnapshot> query = getFirestore().collection("fees")
-                    .whereEqualTo("borrowId", borrowId).get();
-            List<QueryDocumentSnapshot> documents = query.get().getDocuments();
-            return documents.isEmpty() ? null : documents.get(0).toObject(Fees.class);
+            return feeRepository.findByBorrowId(borrowId);
         } catch (Exception e) {
             System.err.println("Error fetching fee: " + e.getMessage());
             return null;
@@ -320,10 +333,7 @@ public class FirebaseService {
 
     public Fees getFeeById(String feeId) {
         try {
-            ApiFuture<QuerySnapshot> query = getFirestore().collection("fees")
-                    .whereEqualTo("id", feeId).get(); // Match the "id" field with feeId
-            List<QueryDocumentSnapshot> documents = query.get().getDocuments();
-            return documents.isEmpty() ? null : documents.get(0).toObject(Fees.class);
+            return feeRepository.findById(feeId); // Fees are stored under their ID
         } catch (Exception e) {
             System.err.println("Error fetching fee by ID: " + e.getMessage());
             return null;
@@ -333,14 +343,7 @@ public class FirebaseService {
     // Fetch all fees by membership ID
     public List<Fees> getFeesByMembershipId(String membershipId) {
         try {
-            ApiFuture<QuerySnapshot> query = getFirestore().collection("fees")
-                    .whereEqualTo("membershipId", membershipId).get();
-            List<QueryDocumentSnapshot> documents = query.get().getDocuments();
-            List<Fees> feesList = new ArrayList<>();
-            for (QueryDocumentSnapshot document : documents) {
-                feesList.add(document.toObject(Fees.class));
-            }
-            return feesList;
+            return feeRepository.findByMembershipId(membershipId);
         } catch (Exception e) {
             System.err.println("Error fetching fees by membership ID: " + e.getMessage());
             return new ArrayList<>();
@@ -350,7 +353,7 @@ public class FirebaseService {
 
     public void deleteFee(String feeId) {
         try {
-            getFirestore().collection("fees").document(feeId).delete().get();
+            feeRepository.deleteById(feeId);
             System.out.println("Fee deleted successfully: " + feeId);
         } catch (Exception e) {
             System.err.println("Error deleting fee: " + e.getMessage());
@@ -361,23 +364,40 @@ public class FirebaseService {
 
     public void addBorrow(Borrows borrow) {
         try {
-            getFirestore().collection("borrows").document(borrow.getId()).set(borrow).get();
+            borrowRepository.save(borrow);
             System.out.println("Borrow record added successfully: " + borrow.getId());
         } catch (Exception e) {
             System.err.println("Error adding borrow record: " + e.getMessage());
         }
     }
+
+    // Marks the book unavailable and inserts the borrow in one transaction; false only if the copy
+    // is out, while a lost lease or a failed read or commit reaches the caller
+    public boolean commitLoan(Borrows borrow, Lease fence) {
+        try {
+            boolean committed = borrowRepository.insertIfBookAvailable(borrow, fence);
+            if (committed) {
+                bookViews.fieldUpdated(borrow.getBookId(), "available", false);
+                System.out.println("Loan committed successfully: " + borrow.getId());
+            }
+            return committed;
+        } catch (LeaseLostException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            System.err.println("Error committing loan: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    // One page of the unreturned borrows, for sweeps; failures reach the caller so no page is skipped
+    public List<Borrows> getActiveBorrowsPage(String afterId, int limit) {
+        return borrowRepository.findActivePage(afterId, limit);
+    }
+
     // Fetch all borrows by membership ID
     public List<Borrows> getBorrowsByMembershipId(String membershipId) {
         try {
-            ApiFuture<QuerySnapshot> query = getFirestore().collection("borrows")
-                    .whereEqualTo("membershipId", membershipId).get();
-            List<QueryDocumentSnapshot> documents = query.get().getDocuments();
-            List<Borrows> borrowsList = new ArrayList<>();
-            for (QueryDocumentSnapshot document : documents) {
-                borrowsList.add(document.toObject(Borrows.class));
-            }
-            return borrowsList;
+            return borrowRepository.findByMembershipId(membershipId);
         } catch (Exception e) {
             System.err.println("Error fetching borrows by membership ID: " + e.getMessage());
             return new ArrayList<>();
@@ -385,8 +405,7 @@ public class FirebaseService {
     }
     public Borrows getBorrowById(String borrowId) {
         try {
-            DocumentSnapshot snapshot = getFirestore().collection("borrows").document(borrowId).get().get();
-            return snapshot.exists() ? snapshot.toObject(Borrows.class) : null;
+            return borrowRepository.findById(borrowId);
         } catch (Exception e) {
             System.err.println("Error retrieving borrow record: " + e.getMessage());
             return null;
@@ -395,51 +414,43 @@ public class FirebaseService {
 
     public void updateBorrow(String borrowId, Borrows updatedBorrow) {
         try {
-            getFirestore().collection("borrows").document(borrowId).set(updatedBorrow).get();
+            updatedBorrow.setId(borrowId);
+            borrowRepository.save(updatedBorrow);
             System.out.println("Borrow record updated successfully: " + borrowId);
         } catch (Exception e) {
             System.err.println("Error updating borrow record: " + e.getMessage());
         }
     }
 
+    // Unlike updateBorrow, failures reach the caller, which must not release the book without it
+    public void updateBorrowReturnDate(String borrowId, String returnDate) {
+        borrowRepository.updateField(borrowId, "returnDate", returnDate);
+        System.out.println("Return date updated successfully: " + borrowId);
+    }
+
     public void deleteBorrow(String borrowId) {
         try {
-            getFirestore().collection("borrows").document(borrowId).delete().get();
+            borrowRepository.deleteById(borrowId);
             System.out.println("Borrow record deleted successfully: " + borrowId);
         } catch (Exception e) {
             System.err.println("Error deleting borrow record: " + e.getMessage());
         }
     }
-    public static Borrows getBorrowByMembershipAndBook(String membershipId, String bookTitle, String bookAuthor) {
+    public Borrows getBorrowByMembershipAndBook(String membershipId, String bookTitle, String bookAuthor) {
         try {
             // Step 1: Fetch the Book ID from the Books collection
-            ApiFuture<QuerySnapshot> bookQuery = getFirestore().collection("books")
-                    .whereEqualTo("name", bookTitle)
-                    .whereEqualTo("author", bookAuthor)
-                    .get();
-
-            List<QueryDocumentSnapshot> bookDocuments = bookQuery.get().getDocuments();
-            if (bookDocuments.isEmpty()) {
+            String bookId = bookRepository.findIdByTitleAndAuthor(bookTitle, bookAuthor);
+            if (bookId == null) {
                 System.err.println("Book not found for title: " + bookTitle + ", author: " + bookAuthor);
                 return null;
             }
 
-            String bookId = bookDocuments.get(0).getId(); // Assuming book ID is the document ID
-
             // Step 2: Fetch the Borrow record using membershipId and bookId
-            ApiFuture<QuerySnapshot> borrowQuery = getFirestore().collection("borrows")
-                    .whereEqualTo("membershipId", membershipId)
-                    .whereEqualTo("bookId", bookId)
-                    .whereEqualTo("returnDate", null) // Ensure the book hasn't been returned yet
-                    .get();
-
-            List<QueryDocumentSnapshot> borrowDocuments = borrowQuery.get().getDocuments();
-            if (borrowDocuments.isEmpty()) {
+            Borrows borrow = borrowRepository.findActive(membershipId, bookId);
+            if (borrow == null) {
                 System.err.println("No active borrow found for membershipId: " + membershipId + ", bookId: " + bookId);
-                return null;
             }
-
-            return borrowDocuments.get(0).toObject(Borrows.class);
+            return borrow;
         } catch (Exception e) {
             System.err.println("Error fetching borrow record: " + e.getMessage());
             return null;
@@ -448,46 +459,71 @@ public class FirebaseService {
 
     // ----------------------- General -----------------------
 
-    public static void updateField(String collectionName, String documentId, String fieldName, Object value) {
-        Map<String, Object> updates = new HashMap<>();
-        updates.put(fieldName, value);
-
+    public void updateField(String collectionName, String documentId, String fieldName, Object value) {
         try {
-            getFirestore().collection(collectionName).document(documentId).update(updates).get();
+            repository(collectionName).updateField(documentId, fieldName, value);
+            invalidateCached(collectionName, documentId, fieldName, value);
             System.out.println(collectionName + " field '" + fieldName + "' updated successfully for ID: " + documentId);
         } catch (Exception e) {
             System.err.println("Error updating " + collectionName + " field '" + fieldName + "': " + e.getMessage());
         }
     }
 
+    // Unlike updateField, these report failures to the caller, which decides whether to retry
+    public VersionedDocument getVersionedDocument(String collectionName, String documentId) {
+        return repository(collectionName).findVersionedById(documentId);
+    }
+
+    public boolean updateFieldIfUnchanged(String collectionName, String documentId, String fieldName,
+                                          Object value, Object version) {
+        if (!repository(collectionName).updateFieldIfVersion(documentId, fieldName, value, version)) {
+            return false;
+        }
+        invalidateCached(collectionName, documentId, fieldName, value);
+        return true;
+    }
+
+    private void invalidateCached(String collectionName, String documentId, String fieldName, Object value) {
+        if (BookRepository.COLLECTION.equals(collectionName)) {
+            bookViews.fieldUpdated(documentId, fieldName, value);
+        } else if (MembershipRepository.COLLECTION.equals(collectionName) && "citizenId".equals(fieldName)) {
+            membershipIndex.put(documentId, value == null ? null : value.toString());
+        }
+    }
+
     public boolean documentExists(String collectionName, String documentId) {
         try {
-            DocumentSnapshot snapshot = getFirestore()
-                    .collection(collectionName)
-                    .document(documentId)
-                    .get()
-                    .get();
-            return snapshot.exists();
+            return repository(collectionName).existsById(documentId);
         } catch (Exception e) {
             System.err.println("Error checking existence of document in " + collectionName + " with ID: " + documentId);
             return false;
         }
     }
 
+    // Several keyed reads, possibly across collections, in one round trip. Failures reach the
+    // caller: an empty result would read as "none of them exist".
+    public Map<DocumentKey, Map<String, Object>> getDocumentsByKeys(Collection<DocumentKey> keys) {
+        return documentLookup.getAll(keys);
+    }
+
+    public Set<DocumentKey> existingDocuments(DocumentKey... keys) {
+        return getDocumentsByKeys(List.of(keys)).keySet();
+    }
+
     public Map<String, Object> getDocumentById(String collectionName, String documentId) {
         try {
-            DocumentSnapshot snapshot = getFirestore()
-                    .collection(collectionName)
-                    .document(documentId)
-                    .get()
-                    .get();
-            return snapshot.exists() ? snapshot.getData() : null;
+            return repository(collectionName).findDataById(documentId);
         } catch (Exception e) {
             System.err.println("Error retrieving document in " + collectionName + " with ID: " + documentId);
             return null;
         }
     }
     public List<Map<String, Object>> getAllBooksGroupedByAuthorAndName() {
+        // Served from the incrementally maintained aggregate once the books listener has synced
+        if (catalog.isSynced()) {
+            return catalog.snapshot();
+        }
+
         // Fetch all books from Firestore
         List<Book> books = getAllBooksFromFirestore();
 
@@ -0,0 +1,64 @@
+package com.example.bureaucratic_system_backend.service;
+
+import com.example.bureaucratic_system_backend.repository.SequenceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Numeric IDs for new documents. Each sequence reserves a block of IDs at a time from its
+ * counter document, so most calls are a local increment and concurrent inserts never get the
+ * same ID. IDs left in a block at shutdown are skipped, so IDs are unique but may have gaps.
+ */
+@Service
+public class IdSequenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdSequenceService.class);
+
+    private final SequenceRepository sequenceRepository;
+    private final FirebaseService firebaseService;
+    private final int blockSize;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public IdSequenceService(SequenceRepository sequenceRepository, FirebaseService firebaseService,
+                             @Value("${id-sequence.block-size:20}") int blockSize) {
+        this.sequenceRepository = sequenceRepository;
+        this.firebaseService = firebaseService;
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    // Next ID for the collection; the sequence is named after it
+    public long nextId(String collectionName) {
+        Block block = blocks.computeIfAbsent(collectionName, name -> new Block());
+        synchronized (block) {
+            if (block.next >= block.end) {
+                block.next = sequenceRepository.reserve(collectionName, blockSize, () -> seedFrom(collectionName));
+                block.end = block.next + blockSize;
+            }
+            return block.next++;
+        }
+    }
+
+    // First use of a sequence: continue after the largest numeric ID already in the collection
+    private long seedFrom(String collectionName) {
+        long maxId = 0;
+        for (String id : firebaseService.getAllDocumentIds(collectionName)) {
+            try {
+                maxId = Math.max(maxId, Long.parseLong(id));
+            } catch (NumberFormatException e) {
+                logger.warn("Non-numeric ID found: {}. Ignoring it for ID generation.", id);
+            }
+        }
+        logger.info("Sequence for {} starts at {}.", collectionName, maxId + 1);
+        return maxId + 1;
+    }
+
+    private static final class Block {
+        private long next;
+        private long end;
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.bureaucratic_system_backend.service;
+
+import com.example.bureaucratic_system_backend.cache.BoundedCache;
+import com.example.bureaucratic_system_backend.model.LoanRequest;
+import com.example.bureaucratic_system_backend.model.LoanStatus;
+import com.example.bureaucratic_system_backend.model.LoanTicket;
+import com.example.bureaucratic_system_backend.service.loan.LoanOutcome;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Tracks every queued loan request under a ticket ID. Tickets still queued or processing are
+ * kept until they finish; finished ones go to a bounded LRU, so a status can be read for a while
+ * after the outcome without the store growing with traffic. Subscribers get the ticket as an SSE
+ * "ticket" event on every change, including queue position updates, until it is final.
+ */
+@Service
+public class LoanTicketService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoanTicketService.class);
+
+    private final Map<String, LoanTicket> open = new ConcurrentHashMap<>();
+    private final Map<String, Long> arrivalOf = new ConcurrentHashMap<>();
+    // Queued tickets in arrival order; a ticket's position is its index here plus one
+    private final ConcurrentSkipListMap<Long, String> queued = new ConcurrentSkipListMap<>();
+    private final AtomicLong arrivals = new AtomicLong();
+    private final BoundedCache<String, LoanTicket> finished;
+
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final long emitterTimeoutMillis;
+    // Sends happen here so a slow client never holds up a counter
+    private final ExecutorService eventSender = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "loan-ticket-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LoanTicketService(MeterRegistry meterRegistry,
+                             @Value("${loans.tickets.max-finished:10000}") int maxFinished,
+                             @Value("${loans.tickets.sse-timeout-ms:300000}") long emitterTimeoutMillis) {
+        this.finished = new BoundedCache<>("loanTickets", maxFinished);
+        this.finished.bindTo(meterRegistry);
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+    }
+
+    // ----------------------- Lifecycle -----------------------
+
+    // Issues a ticket for the request and records it as queued; a replayed request keeps its ticket ID
+    public LoanTicket open(LoanRequest request) {
+        if (request.getTicketId() == null) {
+            request.setTicketId(UUID.randomUUID().toString());
+        }
+        String ticketId = request.getTicketId();
+        LoanTicket ticket = new LoanTicket(ticketId, request.getCitizenId(), request.getBookTitle(),
+                request.getBookAuthor(), LoanStatus.QUEUED, Instant.now().toString());
+        long arrival = arrivals.incrementAndGet();
+        open.put(ticketId, ticket);
+        arrivalOf.put(ticketId, arrival);
+        queued.put(arrival, ticketId);
+        return withPosition(ticket);
+    }
+
+    // A counter has taken the request
+    public void started(String ticketId, int counterId) {
+        LoanTicket ticket = update(ticketId, LoanStatus.PROCESSING, current -> current.setCounterId(counterId));
+        if (ticket != null) {
+            dequeue(ticketId);
+            publish(ticket);
+            publishPositions();
+        }
+    }
+
+    public void finished(String ticketId, LoanOutcome outcome) {
+        LoanTicket ticket = update(ticketId, outcome.status(), current -> {
+            current.setBorrowId(outcome.borrowId());
+            current.setBookId(outcome.bookId());
+        });
+        if (ticket == null) {
+            return;
+        }
+        boolean wasQueued = dequeue(ticketId);
+        finished.put(ticketId, ticket);
+        open.remove(ticketId);
+        publish(ticket);
+        if (wasQueued) {
+            publishPositions();
+        }
+    }
+
+    // ----------------------- Lookup -----------------------
+
+    public LoanTicket find(String ticketId) {
+        LoanTicket ticket = open.get(ticketId);
+        if (ticket != null) {
+            return withPosition(ticket);
+        }
+        return finished.getIfPresent(ticketId);
+    }
+
+    // Stream of updates for the ticket, starting with its current state; null for an unknown ticket
+    public SseEmitter subscribe(String ticketId) {
+        LoanTicket ticket = find(ticketId);
+        if (ticket == null) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        if (!ticket.getStatus().isFinal()) {
+            List<SseEmitter> emitters = subscribers.computeIfAbsent(ticketId, id -> new CopyOnWriteArrayList<>());
+            emitters.add(emitter);
+            Runnable unsubscribe = () -> emitters.remove(emitter);
+            emitter.onCompletion(unsubscribe);
+            emitter.onTimeout(unsubscribe);
+            emitter.onError(e -> unsubscribe.run());
+        }
+        // Re-read: the ticket may have moved on between the lookup and the subscription
+        LoanTicket current = find(ticketId);
+        LoanTicket latest = current != null ? current : ticket;
+        if (latest.getStatus().isFinal()) {
+            subscribers.remove(ticketId);
+        }
+        eventSender.execute(() -> send(emitter, latest));
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        eventSender.shutdown();
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+    }
+
+    // ----------------------- Internals -----------------------
+
+    private LoanTicket update(String ticketId, LoanStatus status, Consumer<LoanTicket> changes) {
+        if (ticketId == null) {
+            return null;
+        }
+        LoanTicket previous = open.get(ticketId);
+        if (previous == null) {
+            return null;
+        }
+        LoanTicket ticket = new LoanTicket(previous);
+        ticket.setStatus(status);
+        ticket.setPosition(null);
+        ticket.setUpdatedAt(Instant.now().toString());
+        changes.accept(ticket);
+        open.put(ticketId, ticket);
+        return ticket;
+    }
+
+    private boolean dequeue(String ticketId) {
+        Long arrival = arrivalOf.remove(ticketId);
+        return arrival != null && queued.remove(arrival) != null;
+    }
+
+    private LoanTicket withPosition(LoanTicket ticket) {
+        Long arrival = arrivalOf.get(ticket.getTicketId());
+        if (ticket.getStatus() != LoanStatus.QUEUED || arrival == null) {
+            return ticket;
+        }
+        LoanTicket copy = new LoanTicket(ticket);
+        copy.setPosition(queued.headMap(arrival).size() + 1);
+        return copy;
+    }
+
+    private void publish(LoanTicket ticket) {
+        List<SseEmitter> emitters = ticket.getStatus().isFinal()
+                ? subscribers.remove(ticket.getTicketId())
+                : subscribers.get(ticket.getTicketId());
+        if (emitters == null || emitters.isEmpty()) {
+            return;
+        }
+        eventSender.execute(() -> emitters.forEach(emitter -> send(emitter, ticket)));
+    }
+
+    // Everyone still queued moved up by one; only walks the queue when someone is listening
+    private void publishPositions() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        eventSender.execute(() -> {
+            int position = 0;
+            for (String ticketId : queued.values()) {
+                position++;
+                List<SseEmitter> emitters = subscribers.get(ticketId);
+                LoanTicket ticket = open.get(ticketId);
+                if (emitters == null || ticket == null || ticket.getStatus() != LoanStatus.QUEUED) {
+                    continue;
+                }
+                LoanTicket update = new LoanTicket(ticket);
+                update.setPosition(position);
+                emitters.forEach(emitter -> send(emitter, update));
+            }
+        });
+    }
+
+    private void send(SseEmitter emitter, LoanTicket ticket) {
+        try {
+            emitter.send(SseEmitter.event().name("ticket").data(ticket));
+            if (ticket.getStatus().isFinal()) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Dropping loan ticket subscriber for {}: {}", ticket.getTicketId(), e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+}
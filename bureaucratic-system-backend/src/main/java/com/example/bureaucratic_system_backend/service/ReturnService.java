@@ -14,18 +14,18 @@ public class ReturnService {
 
     private final BorrowService borrowService;
     private final FeeService feeService;
-    private final FirebaseService firebaseService;
+    private final AsyncFirebaseService asyncFirebaseService;
 
-    public ReturnService(BorrowService borrowService, FeeService feeService, FirebaseService firebaseService) {
+    public ReturnService(BorrowService borrowService, FeeService feeService, AsyncFirebaseService asyncFirebaseService) {
         this.borrowService = borrowService;
         this.feeService = feeService;
-        this.firebaseService = firebaseService;
+        this.asyncFirebaseService = asyncFirebaseService;
     }
 
     public void processReturn(String membershipId, String bookTitle, String bookAuthor) {
         try {
             // Find the borrow record using membershipId, bookTitle, and bookAuthor
-            Borrows borrow = firebaseService.getBorrowByMembershipAndBook(membershipId, bookTitle, bookAuthor);
+            Borrows borrow = asyncFirebaseService.getBorrowByMembershipAndBook(membershipId, bookTitle, bookAuthor).join();
             if (borrow == null) {
                 throw new IllegalArgumentException("No active borrow record found for the provided details.");
             }
@@ -36,10 +36,12 @@ public class ReturnService {
 
             // Generate overdue fee if necessary
             feeService.generateOverdueFee(borrow.getId());
-            // Update the book's availability
+
+            // Update the book's availability only once the borrow is closed, so no new loan can
+            // take the copy while this one is still open
             String bookId = borrow.getBookId();
             if (bookId != null) {
-                FirebaseService.updateBookField(bookId, "available", true); // Set available to true
+                asyncFirebaseService.updateBookFieldOrFail(bookId, "available", true).join(); // Set available to true
             }
 
             logger.info("Book return processed successfully for membership ID: {}, book: '{}', author: '{}'",
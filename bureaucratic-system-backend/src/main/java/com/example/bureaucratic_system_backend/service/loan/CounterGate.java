@@ -0,0 +1,48 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+/**
+ * Local pause state of one counter. The counter thread checks it before taking each request:
+ * an open gate costs one volatile read, a closed one parks the thread until it is reopened.
+ * Updated by pause/resume and by the counters change listener, never read from storage.
+ */
+public class CounterGate {
+
+    private final int counterId;
+    private volatile boolean paused;
+
+    public CounterGate(int counterId, boolean paused) {
+        this.counterId = counterId;
+        this.paused = paused;
+    }
+
+    public int getCounterId() {
+        return counterId;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    // Returns whether the state changed
+    public synchronized boolean setPaused(boolean paused) {
+        if (this.paused == paused) {
+            return false;
+        }
+        this.paused = paused;
+        if (!paused) {
+            notifyAll();
+        }
+        return true;
+    }
+
+    public void awaitOpen() throws InterruptedException {
+        if (!paused) {
+            return;
+        }
+        synchronized (this) {
+            while (paused) {
+                wait();
+            }
+        }
+    }
+}
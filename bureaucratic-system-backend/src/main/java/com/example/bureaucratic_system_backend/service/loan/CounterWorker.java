@@ -0,0 +1,65 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+import java.util.function.Consumer;
+
+/**
+ * The thread of one counter and its lifecycle. A retired worker finishes the loan it is working
+ * on, hands back a request it took at the same moment, and exits. It is only ever interrupted
+ * while it waits for work, so a loan in progress is never cut short.
+ */
+public class CounterWorker {
+
+    private final int counterId;
+    private final CounterGate gate;
+    private final Thread thread;
+    private boolean waiting; // Guarded by this
+    private volatile boolean retired;
+
+    public CounterWorker(int counterId, CounterGate gate, Consumer<CounterWorker> loop) {
+        this.counterId = counterId;
+        this.gate = gate;
+        this.thread = new Thread(() -> loop.accept(this), "counter-" + counterId);
+    }
+
+    public int getCounterId() {
+        return counterId;
+    }
+
+    public CounterGate getGate() {
+        return gate;
+    }
+
+    public boolean isRetired() {
+        return retired;
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // Called by the worker before it blocks for work; false once retired
+    public synchronized boolean startWaiting() {
+        if (retired) {
+            return false;
+        }
+        waiting = true;
+        return true;
+    }
+
+    public synchronized void stopWaiting() {
+        waiting = false;
+    }
+
+    public synchronized void retire() {
+        retired = true;
+        if (waiting) {
+            thread.interrupt();
+        }
+    }
+
+    // Whether the thread ended within the timeout
+    public boolean awaitExit(long timeoutMillis) throws InterruptedException {
+        thread.join(timeoutMillis);
+        return !thread.isAlive();
+    }
+}
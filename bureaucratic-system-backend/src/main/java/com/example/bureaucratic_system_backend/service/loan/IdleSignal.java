@@ -0,0 +1,53 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lets idle counters sleep until work may have appeared. A counter reads version() before it
+ * looks for work and passes it to await(), which returns at once if anything changed in between,
+ * so a signal sent while the counter was still looking is never missed.
+ */
+class IdleSignal {
+
+    private final AtomicLong changes = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    long version() {
+        return changes.get();
+    }
+
+    void await(long seen) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (changes.get() == seen) {
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Wakes one idle counter
+    void signal() {
+        changes.incrementAndGet();
+        lock.lock();
+        try {
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void signalAll() {
+        changes.incrementAndGet();
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
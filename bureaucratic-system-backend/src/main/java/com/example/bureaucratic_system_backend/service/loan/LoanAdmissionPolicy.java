@@ -0,0 +1,9 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+// What happens to a new loan request when the queue is at capacity
+public enum LoanAdmissionPolicy {
+    // Turn the new request away with 429
+    REJECT,
+    // Drop the longest-waiting request to make room for the new one
+    SHED_OLDEST
+}
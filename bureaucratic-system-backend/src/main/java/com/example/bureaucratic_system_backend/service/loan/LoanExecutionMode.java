@@ -0,0 +1,9 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+// How queued loan requests are run, set with loans.execution-mode
+public enum LoanExecutionMode {
+    // Each counter thread processes one request at a time
+    PLATFORM,
+    // Each request runs on its own virtual thread; a semaphore caps each counter's loans in flight
+    VIRTUAL
+}
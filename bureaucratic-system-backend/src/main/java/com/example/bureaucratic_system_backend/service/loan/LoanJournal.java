@@ -0,0 +1,326 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+import com.example.bureaucratic_system_backend.model.LoanRequest;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of queued loan requests, so a restart resumes the queue instead of dropping
+ * it. Disabled unless loans.journal.path is set.
+ *
+ * The journal file is memory-mapped and records are appended straight into the mapping: an append
+ * is a copy and a checksum, with no system call, and is safe from a process crash as soon as it
+ * returns. A background thread forces the mapping to disk every group-commit interval, so one
+ * sync covers every record written since the last one; a machine crash loses at most that window.
+ *
+ * Record layout: int body length, int CRC32 of the body, then the body (type byte and fields).
+ * The length is written last, so a torn record reads as length 0 and replay stops there. When the
+ * file is full, the records still pending are copied into a fresh file that replaces it.
+ */
+@Component
+public class LoanJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoanJournal.class);
+
+    private static final byte ENQUEUED = 1;
+    private static final byte ACKNOWLEDGED = 2;
+    private static final int HEADER_BYTES = 8;
+
+    private final Path path;
+    private final long groupCommitMillis;
+    private final ScheduledExecutorService committer;
+    private final CRC32 crc = new CRC32();
+
+    // Pending requests by ticket ID, with their encoded record for compaction
+    private final Map<String, byte[]> pending = new LinkedHashMap<>();
+    private final List<LoanRequest> recovered = new ArrayList<>();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private volatile boolean dirty;
+
+    public LoanJournal(@Value("${loans.journal.path:}") String path,
+                       @Value("${loans.journal.size-bytes:16777216}") int sizeBytes,
+                       @Value("${loans.journal.group-commit-ms:2}") long groupCommitMillis) {
+        this.path = path.isBlank() ? null : Paths.get(path);
+        this.groupCommitMillis = Math.max(1, groupCommitMillis);
+        this.capacity = Math.max(64 * 1024, sizeBytes);
+        if (this.path == null) {
+            this.committer = null;
+            logger.info("Loan journal disabled; queued loans are kept in memory only.");
+            return;
+        }
+
+        try {
+            Path parent = this.path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            if (Files.exists(this.path)) {
+                capacity = (int) Math.max(capacity, Files.size(this.path));
+            }
+            map(this.path);
+            replay();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open loan journal " + this.path + ": " + e.getMessage(), e);
+        }
+        this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "loan-journal-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(this::commit, this.groupCommitMillis, this.groupCommitMillis, TimeUnit.MILLISECONDS);
+        logger.info("Loan journal at {} ({} pending requests recovered, group commit every {} ms).",
+                this.path.toAbsolutePath(), recovered.size(), this.groupCommitMillis);
+    }
+
+    public boolean isEnabled() {
+        return path != null;
+    }
+
+    // Requests that were queued but not acknowledged when the application last stopped, oldest first
+    public synchronized List<LoanRequest> recoveredRequests() {
+        List<LoanRequest> requests = List.copyOf(recovered);
+        recovered.clear();
+        return requests;
+    }
+
+    // Records a request as queued; it needs a ticket ID, which identifies it on acknowledgement
+    public void append(LoanRequest request) {
+        if (path == null) {
+            return;
+        }
+        byte[] record = encodeRequest(request);
+        synchronized (this) {
+            write(record);
+            pending.put(request.getTicketId(), record);
+        }
+    }
+
+    // Records a batch of queued requests under one lock acquisition
+    public void appendAll(List<LoanRequest> requests) {
+        if (path == null) {
+            return;
+        }
+        List<byte[]> records = new ArrayList<>(requests.size());
+        for (LoanRequest request : requests) {
+            records.add(encodeRequest(request));
+        }
+        synchronized (this) {
+            for (int i = 0; i < records.size(); i++) {
+                write(records.get(i));
+                pending.put(requests.get(i).getTicketId(), records.get(i));
+            }
+        }
+    }
+
+    // The request is done with, whatever the outcome; it won't be replayed
+    public void acknowledge(String ticketId) {
+        if (path == null || ticketId == null) {
+            return;
+        }
+        synchronized (this) {
+            if (pending.remove(ticketId) != null) {
+                write(encodeAcknowledgement(ticketId));
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (path == null) {
+            return;
+        }
+        committer.shutdown();
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Error closing loan journal: {}", e.getMessage());
+        }
+    }
+
+    // ----------------------- Writing -----------------------
+
+    private void write(byte[] record) {
+        if (buffer.remaining() < record.length) {
+            compact(record.length);
+        }
+        // Body and checksum first, length last: a half-written record keeps length 0
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.put(record, 4, record.length - 4);
+        buffer.putInt(start, ByteBuffer.wrap(record).getInt(0));
+        dirty = true;
+    }
+
+    private void commit() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        MappedByteBuffer current;
+        synchronized (this) {
+            current = buffer;
+        }
+        current.force();
+    }
+
+    // Rewrites the journal with only the pending records, growing it if they don't leave room
+    private void compact(int incoming) {
+        int live = incoming;
+        for (byte[] record : pending.values()) {
+            live += record.length;
+        }
+        while (live > capacity / 2) {
+            capacity *= 2;
+        }
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try {
+            buffer.force();
+            channel.close();
+            Files.deleteIfExists(compacted);
+            map(compacted);
+            for (byte[] record : pending.values()) {
+                buffer.put(record);
+            }
+            buffer.force();
+            channel.close();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            int position = buffer.position();
+            map(path);
+            buffer.position(position);
+            logger.info("Compacted loan journal to {} pending requests ({} bytes mapped).", pending.size(), capacity);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot compact loan journal " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void map(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    // ----------------------- Replay -----------------------
+
+    private void replay() {
+        Map<String, LoanRequest> queued = new LinkedHashMap<>();
+        int position = 0;
+        boolean damaged = false;
+        while (position + HEADER_BYTES <= capacity) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > capacity) {
+                damaged = length != 0;
+                break;
+            }
+            ByteBuffer body = buffer.duplicate();
+            body.position(position + HEADER_BYTES).limit(position + HEADER_BYTES + length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                logger.warn("Loan journal record at offset {} is damaged; ignoring the rest of the file.", position);
+                damaged = true;
+                break;
+            }
+            byte type = body.get();
+            String ticketId = readString(body);
+            if (type == ENQUEUED) {
+                LoanRequest request = new LoanRequest(readString(body), readString(body), readString(body));
+                request.setTicketId(ticketId);
+                request.setQueuedAt(body.getLong());
+                queued.put(ticketId, request);
+                byte[] record = new byte[HEADER_BYTES + length];
+                buffer.get(position, record);
+                pending.put(ticketId, record);
+            } else if (type == ACKNOWLEDGED) {
+                queued.remove(ticketId);
+                pending.remove(ticketId);
+            }
+            position += HEADER_BYTES + length;
+        }
+        recovered.addAll(queued.values());
+        buffer.position(position);
+        // A torn write leaves garbage only behind its zero length; damage can sit in front of good
+        // records, which must not come back once new records are written over the damaged one
+        int end = damaged ? capacity : Math.min(capacity, position + HEADER_BYTES);
+        for (int i = position; i < end; i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    // ----------------------- Encoding -----------------------
+
+    private byte[] encodeRequest(LoanRequest request) {
+        byte[][] fields = {
+                utf8(request.getTicketId()), utf8(request.getBookTitle()),
+                utf8(request.getBookAuthor()), utf8(request.getCitizenId())
+        };
+        int length = 1 + Long.BYTES;
+        for (byte[] field : fields) {
+            length += 2 + field.length;
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+        record.position(HEADER_BYTES);
+        record.put(ENQUEUED);
+        for (byte[] field : fields) {
+            record.putShort((short) field.length).put(field);
+        }
+        record.putLong(request.getQueuedAt());
+        return seal(record, length);
+    }
+
+    private byte[] encodeAcknowledgement(String ticketId) {
+        byte[] id = utf8(ticketId);
+        int length = 1 + 2 + id.length;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+        record.position(HEADER_BYTES);
+        record.put(ACKNOWLEDGED).putShort((short) id.length).put(id);
+        return seal(record, length);
+    }
+
+    // Fills in length and checksum of an encoded body
+    private static byte[] seal(ByteBuffer record, int length) {
+        CRC32 checksum = new CRC32();
+        checksum.update(record.array(), HEADER_BYTES, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) checksum.getValue());
+        return record.array();
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Loan request field too long for the journal: " + bytes.length + " bytes.");
+        }
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getShort()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+import com.example.bureaucratic_system_backend.model.LoanStatus;
+
+// How a processed loan request ended; borrowId and bookId are only set for LOANED
+public record LoanOutcome(LoanStatus status, String borrowId, String bookId) {
+
+    public static LoanOutcome loaned(String borrowId, String bookId) {
+        return new LoanOutcome(LoanStatus.LOANED, borrowId, bookId);
+    }
+
+    public static LoanOutcome of(LoanStatus status) {
+        return new LoanOutcome(status, null, null);
+    }
+}
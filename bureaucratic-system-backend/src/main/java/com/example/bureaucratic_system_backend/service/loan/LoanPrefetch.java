@@ -0,0 +1,38 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+import com.example.bureaucratic_system_backend.model.LoanRequest;
+import com.example.bureaucratic_system_backend.service.AsyncFirebaseService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lookups shared by the requests of one batch: the membership of each distinct citizen and the
+ * book ID of each distinct title are fetched once, as soon as the batch is queued, and every
+ * request of the batch reuses the same answer when a counter reaches it.
+ */
+public class LoanPrefetch {
+
+    private final AsyncFirebaseService asyncFirebaseService;
+    private final Map<String, CompletableFuture<String>> membershipIds = new ConcurrentHashMap<>();
+    private final Map<List<String>, CompletableFuture<String>> bookIds = new ConcurrentHashMap<>();
+
+    public LoanPrefetch(AsyncFirebaseService asyncFirebaseService, List<LoanRequest> requests) {
+        this.asyncFirebaseService = asyncFirebaseService;
+        for (LoanRequest request : requests) {
+            membershipId(request.getCitizenId());
+            bookId(request.getBookTitle(), request.getBookAuthor());
+        }
+    }
+
+    public CompletableFuture<String> membershipId(String citizenId) {
+        return membershipIds.computeIfAbsent(citizenId, asyncFirebaseService::getMembershipIdById);
+    }
+
+    public CompletableFuture<String> bookId(String title, String author) {
+        return bookIds.computeIfAbsent(List.of(title, author),
+                key -> asyncFirebaseService.getBookIdByTitleAndAuthor(title, author));
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+// Answered as 429 Too Many Requests with a Retry-After header
+public class LoanQueueFullException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public LoanQueueFullException(int capacity, long retryAfterSeconds) {
+        super("Loan queue is full (" + capacity + " requests). Try again in " + retryAfterSeconds + " seconds.");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+import com.example.bureaucratic_system_backend.model.LoanRequest;
+
+import java.util.List;
+
+/**
+ * Hands queued loan requests to counters. A counter takes one {@link Assignment} at a time and
+ * either completes it once the loan has been processed or requeues it untouched, e.g. when the
+ * counter was paused while it waited.
+ */
+public interface LoanScheduler {
+
+    void submit(LoanRequest request);
+
+    // Queues the requests in order as one operation
+    void submitAll(List<LoanRequest> requests);
+
+    // Blocks until there is a request this counter may process
+    Assignment take(int counterId) throws InterruptedException;
+
+    // Requests waiting for a counter
+    int pending();
+
+    // Removes and returns the longest-waiting request no counter has taken, or null
+    LoanRequest pollOldest();
+
+    // Counter lifecycle, for schedulers that keep work per counter. A paused or stopped counter
+    // takes no new requests, so whatever was queued for it must move to the others.
+
+    default void counterStarted(int counterId) {
+    }
+
+    default void counterStopped(int counterId) {
+    }
+
+    default void counterPaused(int counterId) {
+        counterStopped(counterId);
+    }
+
+    default void counterResumed(int counterId) {
+        counterStarted(counterId);
+    }
+
+    interface Assignment {
+
+        LoanRequest request();
+
+        // The loan has been processed, whatever its outcome
+        void complete();
+
+        // Puts the request back at the front, to be taken by any counter
+        void requeue();
+    }
+}
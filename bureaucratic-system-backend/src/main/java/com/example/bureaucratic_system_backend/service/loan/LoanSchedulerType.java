@@ -0,0 +1,10 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+public enum LoanSchedulerType {
+    // One queue in arrival order, shared by all counters
+    SHARED,
+    // One queue per book shard, processed by one counter at a time
+    SHARDED,
+    // One deque per counter, filled round-robin; idle counters steal from the others
+    WORK_STEALING
+}
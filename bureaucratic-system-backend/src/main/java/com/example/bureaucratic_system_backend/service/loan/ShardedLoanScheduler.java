@@ -0,0 +1,165 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+import com.example.bureaucratic_system_backend.model.LoanRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Requests are queued by book: (title, author) hashes to one of a fixed number of shards, and a
+ * shard is owned by at most one counter from take() until complete() or requeue(). Requests for
+ * the same book therefore run one after another without locking, while different books run in
+ * parallel on different counters. Each counter scans the shards from its own starting point, so
+ * counters prefer different shards, and an idle counter takes from any shard that has requests
+ * and no owner.
+ */
+public class ShardedLoanScheduler implements LoanScheduler {
+
+    // Spreads counter IDs over the shards
+    private static final int START_STRIDE = 0x9E3779B9;
+
+    private final Shard[] shards;
+    private final int mask;
+
+    // Signalled whenever a request may have become claimable
+    private final IdleSignal idle = new IdleSignal();
+
+    public ShardedLoanScheduler(int shardCount) {
+        int size = shardCount <= 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1; // Power of two
+        this.shards = new Shard[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    @Override
+    public void submit(LoanRequest request) {
+        shardOf(request).requests.offerLast(request);
+        idle.signal();
+    }
+
+    // Each shard's part of the batch is linked in with one append; idle counters are woken once
+    @Override
+    public void submitAll(List<LoanRequest> requests) {
+        Map<Shard, List<LoanRequest>> byShard = new HashMap<>();
+        for (LoanRequest request : requests) {
+            byShard.computeIfAbsent(shardOf(request), shard -> new ArrayList<>()).add(request);
+        }
+        byShard.forEach((shard, batch) -> shard.requests.addAll(batch));
+        idle.signalAll();
+    }
+
+    @Override
+    public Assignment take(int counterId) throws InterruptedException {
+        while (true) {
+            long seen = idle.version();
+            Assignment assignment = tryClaim(counterId);
+            if (assignment != null) {
+                return assignment;
+            }
+            idle.await(seen);
+        }
+    }
+
+    @Override
+    public int pending() {
+        int pending = 0;
+        for (Shard shard : shards) {
+            pending += shard.requests.size();
+        }
+        return pending;
+    }
+
+    // Compares the shard heads; a request requeued by a paused counter counts by its arrival
+    @Override
+    public LoanRequest pollOldest() {
+        while (true) {
+            Shard oldestShard = null;
+            LoanRequest oldest = null;
+            for (Shard shard : shards) {
+                LoanRequest head = shard.requests.peekFirst();
+                if (head != null && (oldest == null || head.getQueuedAt() < oldest.getQueuedAt())) {
+                    oldest = head;
+                    oldestShard = shard;
+                }
+            }
+            if (oldest == null) {
+                return null;
+            }
+            if (oldestShard.requests.removeFirstOccurrence(oldest)) {
+                return oldest;
+            }
+            // Taken by a counter meanwhile; look again
+        }
+    }
+
+    private Assignment tryClaim(int counterId) {
+        int start = (counterId * START_STRIDE) & mask;
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[(start + i) & mask];
+            if (shard.requests.isEmpty() || !shard.owned.compareAndSet(false, true)) {
+                continue;
+            }
+            LoanRequest request = shard.requests.pollFirst();
+            if (request != null) {
+                return new ShardAssignment(shard, request);
+            }
+            shard.release(); // Emptied by another owner before we got it
+        }
+        return null;
+    }
+
+    private Shard shardOf(LoanRequest request) {
+        int hash = Objects.hash(request.getBookTitle(), request.getBookAuthor());
+        return shards[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    private final class Shard {
+        private final ConcurrentLinkedDeque<LoanRequest> requests = new ConcurrentLinkedDeque<>();
+        private final AtomicBoolean owned = new AtomicBoolean();
+
+        private void release() {
+            owned.set(false);
+            if (!requests.isEmpty()) {
+                idle.signal(); // Requests queued behind the owner can now be taken
+            }
+        }
+    }
+
+    private static final class ShardAssignment implements Assignment {
+        private final Shard shard;
+        private final LoanRequest request;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private ShardAssignment(Shard shard, LoanRequest request) {
+            this.shard = shard;
+            this.request = request;
+        }
+
+        @Override
+        public LoanRequest request() {
+            return request;
+        }
+
+        @Override
+        public void complete() {
+            if (done.compareAndSet(false, true)) {
+                shard.release();
+            }
+        }
+
+        @Override
+        public void requeue() {
+            if (done.compareAndSet(false, true)) {
+                shard.requests.offerFirst(request);
+                shard.release();
+            }
+        }
+    }
+}
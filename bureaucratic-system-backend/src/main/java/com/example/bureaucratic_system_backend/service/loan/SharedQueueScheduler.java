@@ -0,0 +1,94 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+import com.example.bureaucratic_system_backend.model.LoanRequest;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * All counters take from one deque in arrival order. Idle counters wait on one condition and each
+ * submitted request wakes exactly one of them; a batch is appended under a single lock acquisition.
+ * Requests for the same book may run on several counters at once.
+ */
+public class SharedQueueScheduler implements LoanScheduler {
+
+    private final Deque<LoanRequest> queue = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    @Override
+    public void submit(LoanRequest request) {
+        submitAll(List.of(request));
+    }
+
+    @Override
+    public void submitAll(List<LoanRequest> requests) {
+        lock.lock();
+        try {
+            for (LoanRequest request : requests) {
+                queue.offerLast(request);
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Assignment take(int counterId) throws InterruptedException {
+        LoanRequest request;
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                notEmpty.await();
+            }
+            request = queue.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+        return new Assignment() {
+            @Override
+            public LoanRequest request() {
+                return request;
+            }
+
+            @Override
+            public void complete() {
+            }
+
+            @Override
+            public void requeue() {
+                lock.lock();
+                try {
+                    queue.offerFirst(request);
+                    notEmpty.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+    }
+
+    @Override
+    public int pending() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public LoanRequest pollOldest() {
+        lock.lock();
+        try {
+            return queue.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
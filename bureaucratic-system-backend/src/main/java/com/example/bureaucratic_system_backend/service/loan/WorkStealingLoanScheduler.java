@@ -0,0 +1,197 @@
+package com.example.bureaucratic_system_backend.service.loan;
+
+import com.example.bureaucratic_system_backend.model.LoanRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Each running counter has its own deque. New requests are dealt out round-robin; a counter takes
+ * the oldest request of its own deque, and when that is empty steals the newest one from another
+ * counter's tail, so owner and thief rarely touch the same end. Requests a counter hands back, and
+ * requests submitted while no counter runs, go to a shared overflow deque that every counter
+ * checks before stealing.
+ *
+ * When a counter is paused or stopped its deque is closed and its backlog dealt out to the
+ * others. A submit that raced the close notices it and moves its request on as well.
+ */
+public class WorkStealingLoanScheduler implements LoanScheduler {
+
+    private final Map<Integer, Local> locals = new ConcurrentHashMap<>();
+    private volatile Local[] active = new Local[0];
+    private final AtomicInteger nextLocal = new AtomicInteger();
+    private final ConcurrentLinkedDeque<LoanRequest> overflow = new ConcurrentLinkedDeque<>();
+    private final IdleSignal idle = new IdleSignal();
+
+    @Override
+    public void submit(LoanRequest request) {
+        place(request);
+        idle.signal();
+    }
+
+    @Override
+    public void submitAll(List<LoanRequest> requests) {
+        requests.forEach(this::place);
+        idle.signalAll();
+    }
+
+    @Override
+    public Assignment take(int counterId) throws InterruptedException {
+        while (true) {
+            long seen = idle.version();
+            LoanRequest request = poll(counterId);
+            if (request != null) {
+                return new Assignment() {
+                    @Override
+                    public LoanRequest request() {
+                        return request;
+                    }
+
+                    @Override
+                    public void complete() {
+                    }
+
+                    @Override
+                    public void requeue() {
+                        overflow.offerFirst(request);
+                        idle.signal();
+                    }
+                };
+            }
+            idle.await(seen);
+        }
+    }
+
+    @Override
+    public int pending() {
+        int pending = overflow.size();
+        for (Local local : locals.values()) {
+            pending += local.requests.size();
+        }
+        return pending;
+    }
+
+    // Compares the heads of the overflow and every counter's deque
+    @Override
+    public LoanRequest pollOldest() {
+        while (true) {
+            ConcurrentLinkedDeque<LoanRequest> oldestDeque = null;
+            LoanRequest oldest = null;
+            for (ConcurrentLinkedDeque<LoanRequest> deque : deques()) {
+                LoanRequest head = deque.peekFirst();
+                if (head != null && (oldest == null || head.getQueuedAt() < oldest.getQueuedAt())) {
+                    oldest = head;
+                    oldestDeque = deque;
+                }
+            }
+            if (oldest == null) {
+                return null;
+            }
+            if (oldestDeque.removeFirstOccurrence(oldest)) {
+                return oldest;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void counterStarted(int counterId) {
+        if (locals.containsKey(counterId)) {
+            return;
+        }
+        locals.put(counterId, new Local());
+        refreshActive();
+        idle.signalAll(); // The new counter may steal right away
+    }
+
+    @Override
+    public void counterStopped(int counterId) {
+        Local local;
+        synchronized (this) {
+            local = locals.remove(counterId);
+            if (local == null) {
+                return;
+            }
+            local.closed = true;
+            refreshActive();
+        }
+        rehome(local);
+    }
+
+    // ----------------------- Internals -----------------------
+
+    private void place(LoanRequest request) {
+        Local[] targets = active;
+        if (targets.length == 0) {
+            overflow.offerLast(request);
+            return;
+        }
+        Local local = targets[Math.floorMod(nextLocal.getAndIncrement(), targets.length)];
+        local.requests.offerLast(request);
+        if (local.closed) {
+            rehome(local); // Closed while we were placing: don't leave the request behind
+        }
+    }
+
+    // Deals a closed deque's requests out to the running counters, oldest first
+    private void rehome(Local closed) {
+        LoanRequest request;
+        boolean moved = false;
+        while ((request = closed.requests.pollFirst()) != null) {
+            place(request);
+            moved = true;
+        }
+        if (moved) {
+            idle.signalAll();
+        }
+    }
+
+    private LoanRequest poll(int counterId) {
+        Local own = locals.get(counterId);
+        if (own != null) {
+            LoanRequest request = own.requests.pollFirst();
+            if (request != null) {
+                return request;
+            }
+        }
+        LoanRequest request = overflow.pollFirst();
+        if (request != null) {
+            return request;
+        }
+        Local[] victims = active;
+        if (victims.length == 0) {
+            return null;
+        }
+        int start = ThreadLocalRandom.current().nextInt(victims.length);
+        for (int i = 0; i < victims.length; i++) {
+            Local victim = victims[(start + i) % victims.length];
+            if (victim != own && (request = victim.requests.pollLast()) != null) {
+                return request;
+            }
+        }
+        return null;
+    }
+
+    private List<ConcurrentLinkedDeque<LoanRequest>> deques() {
+        Local[] current = active;
+        List<ConcurrentLinkedDeque<LoanRequest>> deques = new ArrayList<>(current.length + 1);
+        deques.add(overflow);
+        for (Local local : current) {
+            deques.add(local.requests);
+        }
+        return deques;
+    }
+
+    private void refreshActive() {
+        active = locals.values().toArray(new Local[0]);
+    }
+
+    private static final class Local {
+        private final ConcurrentLinkedDeque<LoanRequest> requests = new ConcurrentLinkedDeque<>();
+        private volatile boolean closed;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.controller.AdminController;
+import com.example.bureaucratic_system_backend.service.AdminService;
+import com.example.bureaucratic_system_backend.service.ConcurrentUpdateException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AdminControllerTest {
+
+    @InjectMocks
+    private AdminController adminController;
+
+    @Mock
+    private AdminService adminService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testUpdateBookConflictReturns409() {
+        doThrow(new ConcurrentUpdateException("books", "book1", 5))
+                .when(adminService).updateBookField("book1", "name", "New Title");
+
+        ResponseEntity<String> response = adminController.updateBook("admin",
+                Map.of("bookId", "book1", "fieldName", "name", "value", "New Title"));
+
+        assertEquals(409, response.getStatusCode().value());
+        assertTrue(response.getBody().contains("book1"));
+    }
+
+    @Test
+    void testUpdateBookReturns200() {
+        ResponseEntity<String> response = adminController.updateBook("admin",
+                Map.of("bookId", "book1", "fieldName", "name", "value", "New Title"));
+
+        assertEquals(200, response.getStatusCode().value());
+        verify(adminService, times(1)).updateBookField("book1", "name", "New Title");
+    }
+}
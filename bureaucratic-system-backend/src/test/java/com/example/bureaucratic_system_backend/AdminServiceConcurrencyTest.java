@@ -0,0 +1,84 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.lock.LockMetrics;
+import com.example.bureaucratic_system_backend.lock.StripedLockRegistry;
+import com.example.bureaucratic_system_backend.repository.VersionedDocument;
+import com.example.bureaucratic_system_backend.service.AdminService;
+import com.example.bureaucratic_system_backend.service.ConcurrentUpdateException;
+import com.example.bureaucratic_system_backend.service.FirebaseService;
+import com.example.bureaucratic_system_backend.service.IdSequenceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AdminServiceConcurrencyTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private AdminService adminService;
+
+    @Mock
+    private FirebaseService firebaseService;
+
+    @Mock
+    private IdSequenceService idSequenceService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        StripedLockRegistry lockRegistry = new StripedLockRegistry(16, new LockMetrics(null, false, 10, 1000));
+        adminService = new AdminService(firebaseService, idSequenceService, lockRegistry, MAX_ATTEMPTS);
+    }
+
+    @Test
+    void testUpdateWritesAtTheReadVersion() {
+        when(firebaseService.getVersionedDocument("books", "book1"))
+                .thenReturn(new VersionedDocument(Map.of("name", "Old Title"), 7L));
+        when(firebaseService.updateFieldIfUnchanged("books", "book1", "name", "New Title", 7L)).thenReturn(true);
+
+        adminService.updateBookField("book1", "name", "New Title");
+
+        verify(firebaseService, times(1)).updateFieldIfUnchanged("books", "book1", "name", "New Title", 7L);
+        verify(firebaseService, never()).updateField(anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void testUpdateRetriesAfterConflict() {
+        // The first write loses to a concurrent one; the re-read sees the new version
+        when(firebaseService.getVersionedDocument("citizen", "c1"))
+                .thenReturn(new VersionedDocument(Map.of("name", "A"), 1L), new VersionedDocument(Map.of("name", "B"), 2L));
+        when(firebaseService.updateFieldIfUnchanged("citizen", "c1", "name", "C", 1L)).thenReturn(false);
+        when(firebaseService.updateFieldIfUnchanged("citizen", "c1", "name", "C", 2L)).thenReturn(true);
+
+        adminService.updateCitizenField("c1", "name", "C");
+
+        verify(firebaseService, times(2)).getVersionedDocument("citizen", "c1");
+        verify(firebaseService, times(1)).updateFieldIfUnchanged("citizen", "c1", "name", "C", 2L);
+    }
+
+    @Test
+    void testUpdateGivesUpWithConflict() {
+        when(firebaseService.getVersionedDocument("fees", "fee1"))
+                .thenReturn(new VersionedDocument(Map.of("amount", "5"), 1L));
+        when(firebaseService.updateFieldIfUnchanged(eq("fees"), eq("fee1"), eq("amount"), any(), any())).thenReturn(false);
+
+        assertThrows(ConcurrentUpdateException.class, () -> adminService.updateFeeField("fee1", "amount", "10"));
+
+        verify(firebaseService, times(MAX_ATTEMPTS)).updateFieldIfUnchanged(eq("fees"), eq("fee1"), eq("amount"), any(), any());
+    }
+
+    @Test
+    void testUpdateOfMissingDocument() {
+        when(firebaseService.getVersionedDocument("memberships", "m1")).thenReturn(null);
+
+        assertThrows(IllegalArgumentException.class, () -> adminService.updateMembershipField("m1", "citizenId", "c2"));
+
+        verify(firebaseService, never()).updateFieldIfUnchanged(anyString(), anyString(), anyString(), any(), any());
+    }
+}
@@ -0,0 +1,337 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.controller.GlobalExceptionHandler;
+import com.example.bureaucratic_system_backend.model.Citizen;
+import com.example.bureaucratic_system_backend.model.LoanRequest;
+import com.example.bureaucratic_system_backend.model.LoanStatus;
+import com.example.bureaucratic_system_backend.model.LoanTicket;
+import com.example.bureaucratic_system_backend.service.AsyncFirebaseService;
+import com.example.bureaucratic_system_backend.service.BookLoaningService;
+import com.example.bureaucratic_system_backend.service.FirebaseService;
+import com.example.bureaucratic_system_backend.service.LoanTicketService;
+import com.example.bureaucratic_system_backend.service.loan.LoanAdmissionPolicy;
+import com.example.bureaucratic_system_backend.service.loan.LoanExecutionMode;
+import com.example.bureaucratic_system_backend.service.loan.LoanJournal;
+import com.example.bureaucratic_system_backend.service.loan.LoanQueueFullException;
+import com.example.bureaucratic_system_backend.service.loan.LoanScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BookLoaningServiceTest {
+
+    private static final int QUEUE_CAPACITY = 4;
+
+    @Mock
+    private FirebaseService firebaseService;
+
+    @Mock
+    private AsyncFirebaseService asyncFirebaseService;
+
+    @Mock
+    private LoanJournal journal;
+
+    @TempDir
+    Path directory;
+
+    private Path config;
+    private HeldScheduler scheduler;
+    private SimpleMeterRegistry meterRegistry;
+    private LoanTicketService ticketService;
+    private BookLoaningService bookLoaningService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        scheduler = new HeldScheduler();
+        meterRegistry = new SimpleMeterRegistry();
+        ticketService = spy(new LoanTicketService(meterRegistry, 100, 1000));
+        config = directory.resolve("config.txt");
+        Files.writeString(config, "counters=1");
+        bookLoaningService = start(LoanAdmissionPolicy.REJECT);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookLoaningService.shutdownLoanExecutor();
+        ticketService.shutdown();
+    }
+
+    private BookLoaningService start(LoanAdmissionPolicy admissionPolicy) {
+        return new BookLoaningService(null, firebaseService, asyncFirebaseService, null, null,
+                scheduler, ticketService, journal, null, LoanExecutionMode.PLATFORM, 1, QUEUE_CAPACITY,
+                admissionPolicy, 0, 5, QUEUE_CAPACITY, config.toString(), meterRegistry);
+    }
+
+    // Restarts the service under test with another admission policy
+    private void restart(LoanAdmissionPolicy admissionPolicy) {
+        bookLoaningService.shutdownLoanExecutor();
+        meterRegistry.clear();
+        bookLoaningService = start(admissionPolicy);
+    }
+
+    private static LoanRequest request(String citizenId, String title) {
+        return new LoanRequest(title, "Author", citizenId);
+    }
+
+    private static List<LoanRequest> batchOf(int size) {
+        List<LoanRequest> batch = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            batch.add(request("citizen" + i, "Title " + i));
+        }
+        return batch;
+    }
+
+    // ----------------------- Admission Tests -----------------------
+
+    @Test
+    void testFullQueueRejectsWithRetryAfter() {
+        for (int i = 1; i <= QUEUE_CAPACITY; i++) {
+            bookLoaningService.addCitizenToQueue(new Citizen("citizen" + i, "Name"), "Title", "Author");
+        }
+
+        LoanQueueFullException e = assertThrows(LoanQueueFullException.class,
+                () -> bookLoaningService.addCitizenToQueue(new Citizen("late", "Name"), "Title", "Author"));
+
+        assertEquals(5, e.getRetryAfterSeconds());
+        assertEquals(QUEUE_CAPACITY, scheduler.pending());
+        assertEquals(1.0, meterRegistry.get("loans.queue.rejected").functionCounter().count());
+        assertEquals(QUEUE_CAPACITY, meterRegistry.get("loans.queue.depth").gauge().value());
+    }
+
+    @Test
+    void testBatchThatDoesNotFitIsRejectedWhole() {
+        bookLoaningService.addBatchToQueue(batchOf(3));
+
+        assertThrows(LoanQueueFullException.class, () -> bookLoaningService.addBatchToQueue(batchOf(2)));
+
+        assertEquals(3, scheduler.pending());
+        // Nothing of the rejected batch kept a slot
+        assertEquals(1, bookLoaningService.addBatchToQueue(batchOf(1)).size());
+    }
+
+    @Test
+    void testShedOldestMakesRoomForNewRequest() {
+        restart(LoanAdmissionPolicy.SHED_OLDEST);
+        List<LoanTicket> queued = bookLoaningService.addBatchToQueue(batchOf(QUEUE_CAPACITY));
+
+        LoanTicket newest = bookLoaningService.addCitizenToQueue(new Citizen("late", "Name"), "Title", "Author");
+
+        assertEquals(LoanStatus.SHED, ticketService.find(queued.get(0).getTicketId()).getStatus());
+        assertEquals(LoanStatus.QUEUED, ticketService.find(queued.get(1).getTicketId()).getStatus());
+        assertEquals(LoanStatus.QUEUED, ticketService.find(newest.getTicketId()).getStatus());
+        assertEquals(QUEUE_CAPACITY, scheduler.pending());
+        verify(journal).acknowledge(queued.get(0).getTicketId());
+        assertEquals(1.0, meterRegistry.get("loans.queue.shed").tag("reason", "space").functionCounter().count());
+    }
+
+    @Test
+    void testQueueFullIsAnswered429() {
+        ResponseEntity<String> response = new GlobalExceptionHandler()
+                .handleLoanQueueFullException(new LoanQueueFullException(QUEUE_CAPACITY, 5));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("5", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    // ----------------------- Counter Pool Tests -----------------------
+
+    @Test
+    void testCountersStartFromConfig() {
+        assertEquals(1, bookLoaningService.getCounterCount());
+        assertEquals(Set.of(1), scheduler.counters);
+        verify(firebaseService, times(1)).saveCounterToFirestore(any());
+    }
+
+    @Test
+    void testResizeGrowsAndShrinksPool() {
+        bookLoaningService.resizeCounters(3);
+
+        assertEquals(3, bookLoaningService.getCounterCount());
+        assertEquals(Set.of(1, 2, 3), scheduler.counters);
+
+        bookLoaningService.resizeCounters(1);
+
+        assertEquals(1, bookLoaningService.getCounterCount());
+        assertEquals(Set.of(1), scheduler.counters);
+        verify(firebaseService).deleteCounterFromFirestore(2);
+        verify(firebaseService).deleteCounterFromFirestore(3);
+    }
+
+    @Test
+    void testShrinkKeepsQueuedRequests() {
+        bookLoaningService.resizeCounters(2);
+        bookLoaningService.addBatchToQueue(batchOf(3));
+
+        bookLoaningService.resizeCounters(1);
+
+        assertEquals(3, scheduler.pending());
+    }
+
+    @Test
+    void testRetiredCounterNumberIsReused() {
+        bookLoaningService.resizeCounters(2);
+        bookLoaningService.resizeCounters(1);
+
+        bookLoaningService.resizeCounters(2);
+
+        assertEquals(2, bookLoaningService.getCounterCount());
+        assertEquals(Set.of(1, 2), scheduler.counters);
+    }
+
+    @Test
+    void testResizeBelowOneIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> bookLoaningService.resizeCounters(0));
+        assertEquals(1, bookLoaningService.getCounterCount());
+    }
+
+    @Test
+    void testApplyCounterConfigSavesAndResizes() throws IOException {
+        assertEquals(3, bookLoaningService.applyCounterConfig("counters=3"));
+
+        assertEquals(3, bookLoaningService.getCounterCount());
+        assertEquals("counters=3", Files.readString(config));
+    }
+
+    @Test
+    void testReloadCounterConfigAppliesEditedFile() throws IOException {
+        Files.writeString(config, "counters=2");
+
+        assertEquals(2, bookLoaningService.reloadCounterConfig());
+        assertEquals(2, bookLoaningService.getCounterCount());
+    }
+
+    @Test
+    void testInvalidCounterConfigChangesNothing() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> bookLoaningService.applyCounterConfig("counters=zero"));
+
+        assertEquals(1, bookLoaningService.getCounterCount());
+        assertEquals("counters=1", Files.readString(config));
+    }
+
+    // ----------------------- Batch Tests -----------------------
+
+    @Test
+    void testAddBatchToQueueIssuesTicketsInOrder() {
+        List<LoanTicket> tickets = bookLoaningService.addBatchToQueue(batchOf(3));
+
+        assertEquals(3, tickets.size());
+        assertEquals("citizen1", tickets.get(0).getCitizenId());
+        assertEquals("citizen3", tickets.get(2).getCitizenId());
+        assertEquals(3, scheduler.pending());
+        verify(journal).appendAll(anyList());
+    }
+
+    @Test
+    void testAddBatchToQueueRejectsBadItemBeforeTakingSlots() {
+        List<LoanRequest> withNullTitle = batchOf(3);
+        withNullTitle.set(1, request("citizen2", null));
+        List<LoanRequest> withNullItem = Arrays.asList(request("citizen1", "Title 1"), null);
+        List<LoanRequest> withBlankCitizen = List.of(request(" ", "Title 1"));
+
+        assertThrows(IllegalArgumentException.class, () -> bookLoaningService.addBatchToQueue(withNullTitle));
+        assertThrows(IllegalArgumentException.class, () -> bookLoaningService.addBatchToQueue(withNullItem));
+        assertThrows(IllegalArgumentException.class, () -> bookLoaningService.addBatchToQueue(withBlankCitizen));
+
+        verify(ticketService, never()).open(any());
+        verify(journal, never()).appendAll(anyList());
+        assertEquals(0, scheduler.pending());
+        // No slot was leaked: a batch of the full capacity still fits
+        assertEquals(QUEUE_CAPACITY, bookLoaningService.addBatchToQueue(batchOf(QUEUE_CAPACITY)).size());
+    }
+
+    @Test
+    void testAddBatchToQueueReleasesSlotsAndFailsTicketsWhenJournalFails() {
+        doThrow(new IllegalStateException("journal full")).when(journal).appendAll(anyList());
+
+        assertThrows(IllegalStateException.class, () -> bookLoaningService.addBatchToQueue(batchOf(2)));
+
+        for (LoanTicket ticket : openedTickets()) {
+            assertEquals(LoanStatus.FAILED, ticketService.find(ticket.getTicketId()).getStatus());
+        }
+        assertEquals(2, openedTickets().size());
+        assertEquals(0, scheduler.pending());
+
+        doNothing().when(journal).appendAll(anyList());
+        assertEquals(QUEUE_CAPACITY, bookLoaningService.addBatchToQueue(batchOf(QUEUE_CAPACITY)).size());
+    }
+
+    private List<LoanTicket> openedTickets() {
+        List<LoanTicket> tickets = new ArrayList<>();
+        mockingDetails(ticketService).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("open"))
+                .forEach(invocation -> {
+                    LoanRequest request = invocation.getArgument(0);
+                    tickets.add(ticketService.find(request.getTicketId()));
+                });
+        return tickets;
+    }
+
+    /**
+     * Queues requests but never hands them to a counter, so the queue only changes through the
+     * service under test. Records which counters are running.
+     */
+    private static final class HeldScheduler implements LoanScheduler {
+
+        private final BlockingDeque<LoanRequest> queue = new LinkedBlockingDeque<>();
+        private final Set<Integer> counters = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void submit(LoanRequest request) {
+            queue.addLast(request);
+        }
+
+        @Override
+        public void submitAll(List<LoanRequest> requests) {
+            queue.addAll(requests);
+        }
+
+        @Override
+        public Assignment take(int counterId) throws InterruptedException {
+            Thread.sleep(Long.MAX_VALUE);
+            throw new InterruptedException();
+        }
+
+        @Override
+        public int pending() {
+            return queue.size();
+        }
+
+        @Override
+        public LoanRequest pollOldest() {
+            return queue.pollFirst();
+        }
+
+        @Override
+        public void counterStarted(int counterId) {
+            counters.add(counterId);
+        }
+
+        @Override
+        public void counterStopped(int counterId) {
+            counters.remove(counterId);
+        }
+    }
+}
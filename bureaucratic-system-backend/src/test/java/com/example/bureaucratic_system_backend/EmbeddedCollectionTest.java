@@ -0,0 +1,272 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.repository.RepositoryException;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedCollection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedCollectionTest {
+
+    private EmbeddedCollection borrows;
+
+    @BeforeEach
+    void setUp() {
+        borrows = new EmbeddedCollection("borrows");
+        borrows.ensureIndex("membershipId");
+        borrows.ensureIndex("returnDate");
+    }
+
+    private static Map<String, Object> borrow(String membershipId, String bookId, String returnDate) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("membershipId", membershipId);
+        data.put("bookId", bookId);
+        data.put("returnDate", returnDate);
+        return data;
+    }
+
+    // ----------------------- Index Tests -----------------------
+
+    @Test
+    void testFindIdsByIndexedField() {
+        borrows.put("b3", borrow("m1", "book1", null));
+        borrows.put("b1", borrow("m1", "book2", null));
+        borrows.put("b2", borrow("m2", "book1", null));
+
+        // Results come back in ID order, like Firestore
+        assertEquals(List.of("b1", "b3"), borrows.findIds(Map.of("membershipId", "m1")));
+        assertEquals(List.of("b2"), borrows.findIds(Map.of("membershipId", "m2")));
+        assertEquals(List.of(), borrows.findIds(Map.of("membershipId", "m3")));
+    }
+
+    @Test
+    void testFindIdsByNullValue() {
+        borrows.put("b1", borrow("m1", "book1", null));
+        borrows.put("b2", borrow("m1", "book2", "2024-12-05"));
+
+        Map<String, Object> active = new HashMap<>();
+        active.put("returnDate", null);
+
+        assertEquals(List.of("b1"), borrows.findIds(active));
+    }
+
+    @Test
+    void testFindIdsFiltersUnindexedFields() {
+        borrows.put("b1", borrow("m1", "book1", null));
+        borrows.put("b2", borrow("m1", "book2", null));
+
+        // bookId has no index: the membershipId bucket is filtered on it
+        assertEquals(List.of("b2"), borrows.findIds(Map.of("membershipId", "m1", "bookId", "book2")));
+        assertEquals(List.of("b1"), borrows.findIds(Map.of("bookId", "book1")));
+    }
+
+    @Test
+    void testUpdateMovesDocumentBetweenBuckets() {
+        borrows.put("b1", borrow("m1", "book1", null));
+
+        borrows.update("b1", Map.of("returnDate", "2024-12-05"));
+
+        Map<String, Object> active = new HashMap<>();
+        active.put("returnDate", null);
+        assertEquals(List.of(), borrows.findIds(active));
+        assertEquals(List.of("b1"), borrows.findIds(Map.of("returnDate", "2024-12-05")));
+        assertEquals(List.of("b1"), borrows.findIds(Map.of("membershipId", "m1")));
+    }
+
+    @Test
+    void testPutReplacesIndexedValues() {
+        borrows.put("b1", borrow("m1", "book1", null));
+
+        borrows.put("b1", borrow("m2", "book1", null));
+
+        assertEquals(List.of(), borrows.findIds(Map.of("membershipId", "m1")));
+        assertEquals(List.of("b1"), borrows.findIds(Map.of("membershipId", "m2")));
+    }
+
+    @Test
+    void testRemoveDropsDocumentFromIndex() {
+        borrows.put("b1", borrow("m1", "book1", null));
+
+        assertTrue(borrows.remove("b1"));
+
+        assertEquals(List.of(), borrows.findIds(Map.of("membershipId", "m1")));
+        assertNull(borrows.get("b1"));
+        assertFalse(borrows.remove("b1"));
+    }
+
+    @Test
+    void testEnsureIndexCoversExistingDocuments() {
+        borrows.put("b1", borrow("m1", "book1", null));
+        borrows.put("b2", borrow("m1", "book2", null));
+
+        borrows.ensureIndex("bookId");
+
+        assertEquals(List.of("b2"), borrows.findIds(Map.of("bookId", "book2")));
+        borrows.update("b2", Map.of("bookId", "book3"));
+        assertEquals(List.of(), borrows.findIds(Map.of("bookId", "book2")));
+        assertEquals(List.of("b2"), borrows.findIds(Map.of("bookId", "book3")));
+    }
+
+    @Test
+    void testReadsReturnCopies() {
+        borrows.put("b1", borrow("m1", "book1", null));
+
+        Map<String, Object> read = borrows.get("b1");
+        read.put("membershipId", "m2");
+
+        assertEquals("m1", borrows.get("b1").get("membershipId"));
+        assertEquals(List.of("b1"), borrows.findIds(Map.of("membershipId", "m1")));
+    }
+
+    @Test
+    void testUpdateOfMissingDocumentFails() {
+        assertThrows(RepositoryException.class, () -> borrows.update("missing", Map.of("bookId", "book1")));
+    }
+
+    // ----------------------- Revision Tests -----------------------
+
+    @Test
+    void testEveryWriteAdvancesTheRevision() {
+        assertNull(borrows.revision("b1"));
+
+        borrows.put("b1", borrow("m1", "book1", null));
+        Long created = borrows.revision("b1");
+        borrows.update("b1", Map.of("bookId", "book2"));
+        Long updated = borrows.revision("b1");
+
+        assertNotNull(created);
+        assertTrue(updated > created);
+        borrows.remove("b1");
+        assertNull(borrows.revision("b1"));
+    }
+
+    @Test
+    void testUpdateIfRevisionWritesAtTheReadRevision() {
+        borrows.put("b1", borrow("m1", "book1", null));
+        Long read = borrows.revision("b1");
+
+        assertTrue(borrows.updateIfRevision("b1", Map.of("bookId", "book2"), read));
+
+        assertEquals("book2", borrows.get("b1").get("bookId"));
+        assertNotEquals(read, borrows.revision("b1"));
+    }
+
+    @Test
+    void testUpdateIfRevisionRejectsStaleRevision() {
+        borrows.put("b1", borrow("m1", "book1", null));
+        Long read = borrows.revision("b1");
+        borrows.update("b1", Map.of("bookId", "book2"));
+
+        assertFalse(borrows.updateIfRevision("b1", Map.of("bookId", "book3"), read));
+
+        assertEquals("book2", borrows.get("b1").get("bookId"));
+    }
+
+    @Test
+    void testUpdateIfRevisionRejectsRecreatedDocument() {
+        borrows.put("b1", borrow("m1", "book1", null));
+        Long read = borrows.revision("b1");
+        borrows.remove("b1");
+
+        assertFalse(borrows.updateIfRevision("b1", Map.of("bookId", "book2"), read));
+
+        // A document deleted and written again gets a new revision, so the old one still fails
+        borrows.put("b1", borrow("m1", "book1", null));
+        assertFalse(borrows.updateIfRevision("b1", Map.of("bookId", "book2"), read));
+        assertEquals("book1", borrows.get("b1").get("bookId"));
+    }
+
+    @Test
+    void testConcurrentCompareAndSetLosesNoUpdate() throws InterruptedException {
+        borrows.put("counter", Map.of("count", 0L));
+        int threads = 4;
+        int incrementsPerThread = 500;
+
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                for (int n = 0; n < incrementsPerThread; n++) {
+                    boolean written;
+                    do {
+                        Long revision = borrows.revision("counter");
+                        long count = (Long) borrows.get("counter").get("count");
+                        written = borrows.updateIfRevision("counter", Map.of("count", count + 1), revision);
+                    } while (!written);
+                }
+            });
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals((long) threads * incrementsPerThread, borrows.get("counter").get("count"));
+    }
+
+    // ----------------------- Paging Tests -----------------------
+
+    @Test
+    void testFindIdsAfterPagesInIdOrder() {
+        for (String id : List.of("b5", "b2", "b4", "b1", "b3")) {
+            borrows.put(id, borrow("m1", "book1", null));
+        }
+        Map<String, Object> active = new HashMap<>();
+        active.put("returnDate", null);
+
+        assertEquals(List.of("b1", "b2"), borrows.findIdsAfter(active, null, 2));
+        assertEquals(List.of("b3", "b4"), borrows.findIdsAfter(active, "b2", 2));
+        assertEquals(List.of("b5"), borrows.findIdsAfter(active, "b4", 2));
+        assertEquals(List.of(), borrows.findIdsAfter(active, "b5", 2));
+    }
+
+    @Test
+    void testFindIdsAfterSkipsNonMatchingDocuments() {
+        borrows.put("b1", borrow("m1", "book1", null));
+        borrows.put("b2", borrow("m1", "book2", "2024-12-05"));
+        borrows.put("b3", borrow("m2", "book3", null));
+        borrows.put("b4", borrow("m1", "book4", null));
+
+        Map<String, Object> active = new HashMap<>();
+        active.put("returnDate", null);
+        active.put("membershipId", "m1");
+
+        assertEquals(List.of("b1", "b4"), borrows.findIdsAfter(active, null, 5));
+        assertEquals(List.of("b4"), borrows.findIdsAfter(active, "b1", 1));
+    }
+
+    @Test
+    void testFindIdsAfterCursorNeedNotExist() {
+        borrows.put("b1", borrow("m1", "book1", null));
+        borrows.put("b3", borrow("m1", "book3", null));
+
+        // The last document of a page may be gone by the time the next page is read
+        assertEquals(List.of("b3"), borrows.findIdsAfter(Map.of("membershipId", "m1"), "b2", 10));
+    }
+
+    @Test
+    void testFindIdsAfterMatchesFindIds() {
+        for (int i = 0; i < 50; i++) {
+            borrows.put(String.format("b%02d", (i * 37) % 50), borrow(i % 3 == 0 ? "m1" : "m2", "book1", null));
+        }
+        Map<String, Object> criteria = Map.of("membershipId", "m2");
+
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        while (true) {
+            List<String> page = borrows.findIdsAfter(criteria, cursor, 7);
+            if (page.isEmpty()) {
+                break;
+            }
+            paged.addAll(page);
+            cursor = page.get(page.size() - 1);
+        }
+
+        assertEquals(borrows.findIds(criteria), paged);
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.lock.LeaseLockService;
+import com.example.bureaucratic_system_backend.lock.LockMetrics;
+import com.example.bureaucratic_system_backend.lock.StripedLockRegistry;
+import com.example.bureaucratic_system_backend.model.Borrows;
+import com.example.bureaucratic_system_backend.model.Fees;
+import com.example.bureaucratic_system_backend.repository.BorrowRepository;
+import com.example.bureaucratic_system_backend.repository.LeaseRepository;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedCollection;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedFeeRepository;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedStore;
+import com.example.bureaucratic_system_backend.service.FeeAccrualService;
+import com.example.bureaucratic_system_backend.service.FeeAccrualService.AccrualSummary;
+import com.example.bureaucratic_system_backend.service.FeeService;
+import com.example.bureaucratic_system_backend.service.FirebaseService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FeeAccrualServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.parse("2024-12-10");
+
+    private FeeAccrualService feeAccrualService;
+    private EmbeddedStore store;
+    private EmbeddedFeeRepository fees;
+
+    @Mock
+    private FirebaseService firebaseService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        // The page's accrual step runs against the embedded store, checks included
+        store = new EmbeddedStore("", 5000);
+        fees = new EmbeddedFeeRepository(store);
+        when(firebaseService.accrueFeesWhileBorrowed(anyList()))
+                .thenAnswer(invocation -> fees.accrueWhileBorrowed(invocation.getArgument(0)));
+        StripedLockRegistry lockRegistry = new StripedLockRegistry(16, new LockMetrics(null, false, 10, 1000));
+        LeaseLockService leaseLocks = new LeaseLockService(null, lockRegistry, false, 15000, 10000);
+        FeeService feeService = new FeeService(firebaseService, lockRegistry, leaseLocks, BigDecimal.ONE);
+        feeAccrualService = new FeeAccrualService(firebaseService, feeService, 10, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        feeAccrualService.shutdown();
+        store.close();
+    }
+
+    // Three days overdue on TODAY, so the fee is 3 at the default rate
+    private Borrows overdueBorrow(String id) {
+        return new Borrows(id, "book1", "m1", "2024-11-23", "2024-12-07", null);
+    }
+
+    // Lists the borrows as the active page and stores them, still out, for the accrual step to read
+    private void stubPage(Borrows... borrows) {
+        when(firebaseService.getActiveBorrowsPage(null, 10)).thenReturn(List.of(borrows));
+        for (Borrows borrow : borrows) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("membershipId", borrow.getMembershipId());
+            data.put("returnDate", null);
+            store.collection(BorrowRepository.COLLECTION).put(borrow.getId(), data);
+        }
+    }
+
+    private Fees storedFee(String id) {
+        return fees.findById(id);
+    }
+
+    // ----------------------- Accrual Tests -----------------------
+
+    @Test
+    void testSweepCreatesMissingFee() {
+        stubPage(overdueBorrow("b1"));
+
+        AccrualSummary summary = feeAccrualService.sweep(TODAY);
+
+        assertEquals(1, summary.borrowsScanned());
+        assertEquals(1, summary.feesCreated());
+        assertEquals(0, summary.feesUpdated());
+        assertEquals(0, summary.pagesFailed());
+        assertEquals("3", storedFee("b1").getAmount());
+        assertEquals("No", storedFee("b1").getPaid());
+    }
+
+    @Test
+    void testSweepUpdatesUnpaidFee() {
+        stubPage(overdueBorrow("b1"));
+        fees.save(new Fees("b1", "m1", "1", "b1", "No"));
+
+        AccrualSummary summary = feeAccrualService.sweep(TODAY);
+
+        assertEquals(0, summary.feesCreated());
+        assertEquals(1, summary.feesUpdated());
+        assertEquals("3", storedFee("b1").getAmount());
+    }
+
+    @Test
+    void testPageCommitsInOneStep() {
+        stubPage(overdueBorrow("b1"), overdueBorrow("b2"), overdueBorrow("b3"));
+
+        AccrualSummary summary = feeAccrualService.sweep(TODAY);
+
+        assertEquals(3, summary.feesCreated());
+        verify(firebaseService, times(1)).accrueFeesWhileBorrowed(anyList());
+    }
+
+    @Test
+    void testSecondSweepWritesNothing() {
+        stubPage(overdueBorrow("b1"));
+        feeAccrualService.sweep(TODAY);
+
+        AccrualSummary summary = feeAccrualService.sweep(TODAY);
+
+        assertEquals(0, summary.feesCreated());
+        assertEquals(0, summary.feesUpdated());
+        assertEquals("3", storedFee("b1").getAmount());
+    }
+
+    @Test
+    void testPaidFeeIsNeverTouched() {
+        stubPage(overdueBorrow("b1"));
+        fees.save(new Fees("b1", "m1", "1", "b1", "Yes"));
+
+        AccrualSummary summary = feeAccrualService.sweep(TODAY);
+
+        assertEquals(0, summary.feesUpdated());
+        assertEquals("1", storedFee("b1").getAmount());
+        assertEquals("Yes", storedFee("b1").getPaid());
+    }
+
+    @Test
+    void testReturnedBookIsSkipped() {
+        // Listed as out, but returned before the accrual step read it
+        stubPage(overdueBorrow("b1"));
+        store.collection(BorrowRepository.COLLECTION).update("b1", Map.of("returnDate", "2024-12-09"));
+
+        AccrualSummary summary = feeAccrualService.sweep(TODAY);
+
+        assertEquals(0, summary.feesCreated());
+        assertNull(storedFee("b1"));
+    }
+
+    @Test
+    void testFeeUnderHeldLeaseIsSkipped() {
+        // A return is settling the fee under its lease
+        stubPage(overdueBorrow("b1"), overdueBorrow("b2"));
+        EmbeddedCollection leases = store.collection(LeaseRepository.COLLECTION);
+        leases.put("fees:b1", Map.of("owner", "node-a", "token", 1L, "expiresAt", System.currentTimeMillis() + 10000));
+
+        AccrualSummary summary = feeAccrualService.sweep(TODAY);
+
+        assertEquals(1, summary.feesCreated());
+        assertNull(storedFee("b1"));
+        assertEquals("3", storedFee("b2").getAmount());
+    }
+
+    @Test
+    void testFailedStepFailsPage() {
+        stubPage(overdueBorrow("b1"), overdueBorrow("b2"));
+        when(firebaseService.accrueFeesWhileBorrowed(anyList())).thenThrow(new RuntimeException("Commit failed"));
+
+        AccrualSummary summary = feeAccrualService.sweep(TODAY);
+
+        assertEquals(0, summary.feesCreated());
+        assertEquals(1, summary.pagesFailed());
+    }
+
+    @Test
+    void testBorrowNotOverdueIsSkipped() {
+        stubPage(new Borrows("b1", "book1", "m1", "2024-12-01", "2024-12-15", null));
+
+        AccrualSummary summary = feeAccrualService.sweep(TODAY);
+
+        assertEquals(1, summary.borrowsScanned());
+        verify(firebaseService, never()).accrueFeesWhileBorrowed(anyList());
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.repository.firestore.FirestoreWriteBehind;
+import com.example.bureaucratic_system_backend.repository.firestore.FirestoreWriteBehind.WriteDurability;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FirestoreWriteBehindTest {
+
+    // Long enough that only size triggers and explicit flushes commit during a test
+    private static final long FLUSH_INTERVAL_MS = 60000;
+
+    private FirestoreWriteBehind writeBehind;
+
+    @Mock
+    private Firestore firestore;
+
+    @Mock
+    private WriteBatch batch;
+
+    @Mock
+    private CollectionReference books;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(firestore.batch()).thenReturn(batch);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+        when(books.getId()).thenReturn("books");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
+    private FirestoreWriteBehind writeBehind(int maxBatchSize, WriteDurability durability) {
+        writeBehind = new FirestoreWriteBehind(firestore, true, maxBatchSize, FLUSH_INTERVAL_MS, durability);
+        return writeBehind;
+    }
+
+    private DocumentReference book(String id) {
+        DocumentReference ref = mock(DocumentReference.class);
+        when(ref.getId()).thenReturn(id);
+        when(ref.getParent()).thenReturn(books);
+        return ref;
+    }
+
+    // ----------------------- Coalescing Tests -----------------------
+
+    @Test
+    void testUpdatesToOneDocumentAreMerged() {
+        FirestoreWriteBehind writes = writeBehind(100, WriteDurability.FLUSHED);
+        DocumentReference ref = book("book1");
+
+        writes.update(ref, Map.of("available", false));
+        writes.update(ref, Map.of("name", "Dune"));
+        writes.flushDocument(ref);
+
+        verify(firestore, times(1)).batch();
+        verify(batch, times(1)).update(ref, Map.of("available", false, "name", "Dune"));
+        verify(batch, times(1)).commit();
+    }
+
+    @Test
+    void testSetThenUpdateBecomesOneSet() {
+        FirestoreWriteBehind writes = writeBehind(100, WriteDurability.FLUSHED);
+        DocumentReference ref = book("book1");
+
+        writes.set(ref, Map.of("name", "Dune", "available", true));
+        writes.update(ref, Map.of("available", false));
+        writes.flushDocument(ref);
+
+        verify(batch, times(1)).set(ref, Map.of("name", "Dune", "available", false));
+        verify(batch, never()).update(any(DocumentReference.class), anyMap());
+    }
+
+    @Test
+    void testDeleteDropsPendingWrites() {
+        FirestoreWriteBehind writes = writeBehind(100, WriteDurability.FLUSHED);
+        DocumentReference ref = book("book1");
+
+        writes.update(ref, Map.of("available", false));
+        writes.delete(ref);
+        writes.flushDocument(ref);
+
+        verify(batch, times(1)).delete(ref);
+        verify(batch, never()).update(any(DocumentReference.class), anyMap());
+    }
+
+    @Test
+    void testUpdateAfterDeleteIsKeptSeparately() {
+        FirestoreWriteBehind writes = writeBehind(100, WriteDurability.FLUSHED);
+        DocumentReference ref = book("book1");
+
+        writes.delete(ref);
+        CompletableFuture<Void> update = writes.update(ref, Map.of("available", false));
+        writes.flushDocument(ref);
+
+        // Both go out in one batch, so Firestore fails the update as it would have unbatched
+        verify(batch, times(1)).delete(ref);
+        verify(batch, times(1)).update(ref, Map.of("available", false));
+        assertTrue(update.isDone());
+    }
+
+    // ----------------------- Flush Tests -----------------------
+
+    @Test
+    void testFlushedWriteCompletesOnCommit() {
+        FirestoreWriteBehind writes = writeBehind(100, WriteDurability.FLUSHED);
+        DocumentReference ref = book("book1");
+
+        CompletableFuture<Void> committed = writes.update(ref, Map.of("available", false));
+
+        assertFalse(committed.isDone());
+        writes.flushDocument(ref);
+        assertTrue(committed.isDone());
+        assertFalse(committed.isCompletedExceptionally());
+    }
+
+    @Test
+    void testAcknowledgedWriteCompletesAtOnce() {
+        FirestoreWriteBehind writes = writeBehind(100, WriteDurability.ACKNOWLEDGED);
+
+        CompletableFuture<Void> acknowledged = writes.update(book("book1"), Map.of("available", false));
+
+        assertTrue(acknowledged.isDone());
+        verify(batch, never()).commit();
+    }
+
+    @Test
+    void testFullBatchIsFlushed() throws Exception {
+        FirestoreWriteBehind writes = writeBehind(2, WriteDurability.FLUSHED);
+
+        CompletableFuture<Void> first = writes.update(book("book1"), Map.of("available", false));
+        CompletableFuture<Void> second = writes.update(book("book2"), Map.of("available", false));
+
+        second.get(5, TimeUnit.SECONDS);
+        assertTrue(first.isDone());
+        verify(batch, times(1)).commit();
+    }
+
+    @Test
+    void testFailedBatchIsRetriedPerDocument() {
+        FirestoreWriteBehind writes = writeBehind(100, WriteDurability.FLUSHED);
+        DocumentReference good = book("book1");
+        DocumentReference bad = book("book2");
+        RuntimeException missing = new RuntimeException("No document to update");
+        // The batch fails as a whole; alone, only the update of the missing document does
+        when(batch.commit()).thenReturn(ApiFutures.immediateFailedFuture(missing),
+                ApiFutures.immediateFuture(List.of()), ApiFutures.immediateFailedFuture(missing));
+
+        CompletableFuture<Void> goodWrite = writes.update(good, Map.of("available", false));
+        CompletableFuture<Void> badWrite = writes.update(bad, Map.of("available", false));
+        writes.flushDocument(good);
+
+        assertFalse(goodWrite.isCompletedExceptionally());
+        ExecutionException failure = assertThrows(ExecutionException.class, badWrite::get);
+        assertSame(missing, failure.getCause());
+        verify(batch, times(3)).commit();
+    }
+
+    @Test
+    void testDisabledCommitsEachWrite() {
+        writeBehind = new FirestoreWriteBehind(firestore, false, 100, FLUSH_INTERVAL_MS, WriteDurability.FLUSHED);
+        DocumentReference ref = book("book1");
+
+        CompletableFuture<Void> first = writeBehind.update(ref, Map.of("available", false));
+        CompletableFuture<Void> second = writeBehind.update(ref, Map.of("name", "Dune"));
+
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        verify(batch, times(2)).commit();
+    }
+
+    // ----------------------- Document Flush Tests -----------------------
+
+    @Test
+    void testFlushDocumentWaitsForCommitInProgress() throws Exception {
+        FirestoreWriteBehind writes = writeBehind(1, WriteDurability.FLUSHED);
+        DocumentReference ref = book("book1");
+        SettableApiFuture<List<WriteResult>> commit = SettableApiFuture.create();
+        when(batch.commit()).thenReturn(commit);
+
+        // A full batch: the flusher drains it and blocks in the commit
+        writes.update(ref, Map.of("available", false));
+        verify(batch, timeout(5000)).commit();
+
+        CompletableFuture<Void> flushed = CompletableFuture.runAsync(() -> writes.flushDocument(ref));
+        Thread.sleep(100);
+        assertFalse(flushed.isDone());
+
+        commit.set(List.of());
+        flushed.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testFlushDocumentFromFlusherThreadRunsInline() throws Exception {
+        FirestoreWriteBehind writes = writeBehind(100, WriteDurability.FLUSHED);
+        DocumentReference first = book("book1");
+        DocumentReference second = book("book2");
+        SettableApiFuture<List<WriteResult>> firstCommit = SettableApiFuture.create();
+        when(batch.commit()).thenReturn(firstCommit, ApiFutures.immediateFuture(List.of()));
+
+        // The callback runs on the flusher thread once the first batch commits
+        CompletableFuture<Void> callback = writes.update(first, Map.of("available", false))
+                .thenRun(() -> writes.flushDocument(second));
+        CompletableFuture.runAsync(() -> writes.flushDocument(first));
+        verify(batch, timeout(5000)).commit();
+        CompletableFuture<Void> secondWrite = writes.update(second, Map.of("available", false));
+
+        firstCommit.set(List.of());
+
+        callback.get(5, TimeUnit.SECONDS);
+        assertTrue(secondWrite.isDone());
+        verify(batch, times(2)).commit();
+    }
+}
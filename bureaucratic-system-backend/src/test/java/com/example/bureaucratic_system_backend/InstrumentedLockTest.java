@@ -0,0 +1,186 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.lock.LockMetrics;
+import com.example.bureaucratic_system_backend.lock.StripedLockRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentedLockTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private LockMetrics metrics;
+    private StripedLockRegistry lockRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new LockMetrics(meterRegistry, true, 10, 1000);
+        lockRegistry = new StripedLockRegistry(16, metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        metrics.close();
+    }
+
+    private long count(String name, String category) {
+        return meterRegistry.get(name).tag("category", category).timer().count();
+    }
+
+    // Makes another thread find the document's lock taken, which reports it as contended
+    private void contend(String collection, String id, String metricsKey) throws InterruptedException {
+        Lock lock = lockRegistry.lockFor(collection, id, metricsKey);
+        lock.lock();
+        try {
+            Thread other = new Thread(() -> lockRegistry.lockFor(collection, id, metricsKey).tryLock());
+            other.start();
+            other.join();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The gauge rows are published on the first refresh, a second after the metrics start
+    private List<String> publishedKeys() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            List<String> keys = new ArrayList<>();
+            meterRegistry.find("locks.contended.keys").gauges().forEach(gauge -> keys.add(gauge.getId().getTag("key")));
+            if (!keys.isEmpty()) {
+                return keys;
+            }
+            Thread.sleep(50);
+        }
+        return List.of();
+    }
+
+    // ----------------------- Wrapper Tests -----------------------
+
+    @Test
+    void testWrapperIsAllocatedOncePerStripe() {
+        Lock first = lockRegistry.lockFor("books", "book1");
+
+        assertFalse(first instanceof ReentrantLock);
+        assertSame(first, lockRegistry.lockFor("books", "book1"));
+    }
+
+    @Test
+    void testDisabledMetricsHandOutTheStripe() {
+        StripedLockRegistry bare = new StripedLockRegistry(16, new LockMetrics(meterRegistry, false, 10, 1000));
+
+        assertTrue(bare.lockFor("books", "book1") instanceof ReentrantLock);
+    }
+
+    // ----------------------- Timing Tests -----------------------
+
+    @Test
+    void testEveryAcquisitionIsTimedUnderItsCategory() {
+        for (int i = 0; i < 3; i++) {
+            Lock lock = lockRegistry.lockFor("books", "book1");
+            lock.lock();
+            lock.unlock();
+        }
+        Lock lock = lockRegistry.lockFor("fees", "fee1");
+        assertTrue(lock.tryLock());
+        lock.unlock();
+
+        assertEquals(3, count("locks.wait", "books"));
+        assertEquals(3, count("locks.hold", "books"));
+        assertEquals(1, count("locks.hold", "fees"));
+    }
+
+    @Test
+    void testReentrantHoldIsTimedOnce() {
+        Lock lock = lockRegistry.lockFor("books", "book1");
+        lock.lock();
+        lockRegistry.lockFor("books", "book1").lock();
+        lock.unlock();
+        lock.unlock();
+
+        assertEquals(1, count("locks.hold", "books"));
+    }
+
+    @Test
+    void testContendedAcquisitionIsCounted() throws InterruptedException {
+        Lock lock = lockRegistry.lockFor("books", "book1");
+        CountDownLatch started = new CountDownLatch(1);
+        lock.lock();
+        Thread waiter = new Thread(() -> {
+            Lock same = lockRegistry.lockFor("books", "book1");
+            started.countDown();
+            same.lock();
+            same.unlock();
+        });
+        try {
+            waiter.start();
+            started.await();
+            Thread.sleep(50);
+        } finally {
+            lock.unlock();
+        }
+        waiter.join();
+
+        assertEquals(1.0, meterRegistry.get("locks.contended").tag("category", "books").counter().count());
+    }
+
+    @Test
+    void testConcurrentHoldersKeepSeparateBookkeeping() throws InterruptedException {
+        int threads = 4;
+        int acquisitionsPerThread = 1000;
+        long[] count = new long[1];
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            // Holds taken from other threads through the shared wrapper are each reported once, under their own category
+            String category = i % 2 == 0 ? "books" : "fees";
+            workers.add(new Thread(() -> {
+                for (int n = 0; n < acquisitionsPerThread; n++) {
+                    Lock lock = lockRegistry.lockFor(category, "shared");
+                    lock.lock();
+                    try {
+                        count[0]++;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals((long) threads * acquisitionsPerThread, count[0]);
+        assertEquals((long) threads / 2 * acquisitionsPerThread, count("locks.hold", "books"));
+        assertEquals((long) threads / 2 * acquisitionsPerThread, count("locks.hold", "fees"));
+    }
+
+    // ----------------------- Hot Key Tests -----------------------
+
+    @Test
+    void testHotKeysArePublishedByMetricsKey() throws InterruptedException {
+        contend("books", "book1", "book1");
+        contend("loans", "citizen1:Dune:Frank Herbert", "Dune:Frank Herbert");
+        contend("citizen", "citizen2", null);
+
+        List<String> keys = publishedKeys();
+
+        assertEquals(2, keys.size());
+        assertTrue(keys.containsAll(List.of("book1", "Dune:Frank Herbert")));
+        assertTrue(keys.stream().noneMatch(key -> key.contains("citizen")));
+        // Every contention is still counted under its category
+        assertEquals(1.0, meterRegistry.get("locks.contended").tag("category", "citizen").counter().count());
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.lock.LeaseLockService;
+import com.example.bureaucratic_system_backend.lock.LeaseUnavailableException;
+import com.example.bureaucratic_system_backend.lock.LockMetrics;
+import com.example.bureaucratic_system_backend.lock.StripedLockRegistry;
+import com.example.bureaucratic_system_backend.model.Fees;
+import com.example.bureaucratic_system_backend.repository.Lease;
+import com.example.bureaucratic_system_backend.repository.LeaseLostException;
+import com.example.bureaucratic_system_backend.repository.LeaseRepository;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedCollection;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedFeeRepository;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedLeaseRepository;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeaseTest {
+
+    // Short enough to wait out in a test
+    private static final long SHORT_TTL = 50;
+
+    private EmbeddedStore store;
+    private EmbeddedCollection leaseDocuments;
+    private EmbeddedLeaseRepository leases;
+    private EmbeddedFeeRepository fees;
+
+    @BeforeEach
+    void setUp() {
+        store = new EmbeddedStore("", 5000);
+        leaseDocuments = store.collection(LeaseRepository.COLLECTION);
+        leases = new EmbeddedLeaseRepository(store);
+        fees = new EmbeddedFeeRepository(store);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    private static Fees fee(String id, String amount, String paid) {
+        return new Fees(id, "m1", amount, id, paid);
+    }
+
+    // ----------------------- Grant Tests -----------------------
+
+    @Test
+    void testHeldLeaseBlocksOtherOwners() {
+        Lease lease = leases.tryAcquire("fees:b1", "node-a", 10000);
+
+        assertNotNull(lease);
+        assertEquals("node-a", lease.owner());
+        assertNull(leases.tryAcquire("fees:b1", "node-b", 10000));
+        // Not reentrant either
+        assertNull(leases.tryAcquire("fees:b1", "node-a", 10000));
+        assertNotNull(leases.tryAcquire("fees:b2", "node-b", 10000));
+    }
+
+    @Test
+    void testExpiredLeaseIsTakenOver() throws InterruptedException {
+        Lease first = leases.tryAcquire("fees:b1", "node-a", SHORT_TTL);
+        Thread.sleep(SHORT_TTL * 2);
+
+        Lease second = leases.tryAcquire("fees:b1", "node-b", 10000);
+
+        assertNotNull(second);
+        assertTrue(second.token() > first.token());
+        // The first holder can no longer end the second's lease
+        assertFalse(leases.release(first));
+        assertNotNull(leaseDocuments.get("fees:b1"));
+    }
+
+    @Test
+    void testGrantFollowsStoredToken() {
+        // A token written by an instance whose clock runs ahead
+        long future = Long.MAX_VALUE / 2;
+        Map<String, Object> stored = Map.of("owner", "node-a", "token", future, "expiresAt", 0L);
+
+        Lease lease = Lease.grant("fees:b1", "node-b", stored, System.currentTimeMillis(), 10000);
+
+        assertEquals(future + 1, lease.token());
+        assertNull(Lease.grant("fees:b1", "node-b", lease.toDocument(), System.currentTimeMillis(), 10000));
+    }
+
+    // ----------------------- Release Tests -----------------------
+
+    @Test
+    void testReleaseDeletesLeaseDocument() {
+        Lease lease = leases.tryAcquire("fees:b1", "node-a", 10000);
+
+        assertTrue(leases.release(lease));
+
+        assertNull(leaseDocuments.get("fees:b1"));
+        assertFalse(leases.release(lease));
+        assertNotNull(leases.tryAcquire("fees:b1", "node-b", 10000));
+    }
+
+    @Test
+    void testTokensGrowAcrossReleases() {
+        long previous = 0;
+        for (int i = 0; i < 5000; i++) {
+            Lease lease = leases.tryAcquire("fees:b1", i % 2 == 0 ? "node-a" : "node-b", 10000);
+            assertTrue(lease.token() > previous, "token " + i);
+            previous = lease.token();
+            assertTrue(leases.release(lease));
+        }
+        assertEquals(0, leaseDocuments.size());
+    }
+
+    // ----------------------- Fenced Write Tests -----------------------
+
+    @Test
+    void testFencedInsertUnderHeldLease() {
+        Lease lease = leases.tryAcquire("fees:b1", "node-a", 10000);
+
+        assertTrue(fees.insertIfAbsent(fee("b1", "3", "No"), lease));
+        assertFalse(fees.insertIfAbsent(fee("b1", "5", "No"), lease));
+
+        assertEquals("3", fees.findById("b1").getAmount());
+    }
+
+    @Test
+    void testFencedInsertRefusedAfterTakeover() throws InterruptedException {
+        Lease stale = leases.tryAcquire("fees:b1", "node-a", SHORT_TTL);
+        Thread.sleep(SHORT_TTL * 2);
+        leases.tryAcquire("fees:b1", "node-b", 10000);
+
+        assertThrows(LeaseLostException.class, () -> fees.insertIfAbsent(fee("b1", "3", "No"), stale));
+
+        assertNull(fees.findById("b1"));
+    }
+
+    @Test
+    void testFencedWriteRefusedAfterRelease() {
+        Lease lease = leases.tryAcquire("fees:b1", "node-a", 10000);
+        fees.insertIfAbsent(fee("b1", "3", "No"), lease);
+        leases.release(lease);
+
+        assertThrows(LeaseLostException.class, () -> fees.updateAmountIfUnpaid("b1", "5", lease));
+
+        assertEquals("3", fees.findById("b1").getAmount());
+    }
+
+    @Test
+    void testAmountChangesOnlyWhileUnpaid() {
+        Lease lease = leases.tryAcquire("fees:b1", "node-a", 10000);
+        fees.insertIfAbsent(fee("b1", "3", "No"), lease);
+        fees.insertIfAbsent(fee("b2", "3", "Yes"), null);
+
+        assertTrue(fees.updateAmountIfUnpaid("b1", "5", lease));
+        assertFalse(fees.updateAmountIfUnpaid("b2", "5", null));
+        assertFalse(fees.updateAmountIfUnpaid("missing", "5", null));
+
+        assertEquals("5", fees.findById("b1").getAmount());
+        assertEquals("3", fees.findById("b2").getAmount());
+        assertEquals("Yes", fees.findById("b2").getPaid());
+    }
+
+    // ----------------------- Lease Lock Tests -----------------------
+
+    @Test
+    void testWithLeaseHoldsLeaseForTheSection() {
+        LeaseLockService leaseLocks = new LeaseLockService(leases,
+                new StripedLockRegistry(16, new LockMetrics(null, false, 10, 1000)), true, 15000, 1000);
+
+        Lease seen = leaseLocks.withLease("fees", "b1", lease -> {
+            assertTrue(lease.isHeldIn(leaseDocuments.get(lease.name()), System.currentTimeMillis()));
+            return lease;
+        });
+
+        assertNotNull(seen);
+        assertNull(leaseDocuments.get(seen.name()));
+    }
+
+    @Test
+    void testWithLeaseGivesUpWhileHeldElsewhere() {
+        LeaseLockService leaseLocks = new LeaseLockService(leases,
+                new StripedLockRegistry(16, new LockMetrics(null, false, 10, 1000)), true, 15000, 0);
+        leases.tryAcquire("fees:b1", "node-b", 10000);
+        List<Lease> ran = new ArrayList<>();
+
+        assertThrows(LeaseUnavailableException.class, () -> leaseLocks.withLease("fees", "b1", ran::add));
+
+        assertTrue(ran.isEmpty());
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.cache.BookViews;
+import com.example.bureaucratic_system_backend.model.Book;
+import com.example.bureaucratic_system_backend.model.Borrows;
+import com.example.bureaucratic_system_backend.repository.Lease;
+import com.example.bureaucratic_system_backend.repository.LeaseLostException;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedBookRepository;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedBorrowRepository;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedCitizenRepository;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedCounterRepository;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedFeeRepository;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedLeaseRepository;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedMembershipRepository;
+import com.example.bureaucratic_system_backend.repository.embedded.EmbeddedStore;
+import com.example.bureaucratic_system_backend.service.FirebaseService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LoanCommitTest {
+
+    // Short enough to wait out in a test
+    private static final long SHORT_TTL = 50;
+
+    @Mock
+    private BookViews bookViews;
+
+    private EmbeddedStore store;
+    private EmbeddedBookRepository books;
+    private EmbeddedBorrowRepository borrows;
+    private EmbeddedLeaseRepository leases;
+    private FirebaseService firebaseService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        store = new EmbeddedStore("", 5000);
+        books = new EmbeddedBookRepository(store);
+        borrows = new EmbeddedBorrowRepository(store);
+        leases = new EmbeddedLeaseRepository(store);
+        firebaseService = new FirebaseService(books, borrows, new EmbeddedFeeRepository(store),
+                new EmbeddedMembershipRepository(store), new EmbeddedCitizenRepository(store),
+                new EmbeddedCounterRepository(store), null, null, null, null, bookViews, null);
+        books.save(new Book("book1", "Dune", "Frank Herbert", true));
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    private static Borrows borrow(String id, String bookId) {
+        return new Borrows(id, bookId, "m1", "2024-12-01", "2024-12-31", null);
+    }
+
+    // ----------------------- Commit Tests -----------------------
+
+    @Test
+    void testCommitTakesBookAndInsertsBorrow() {
+        assertTrue(firebaseService.commitLoan(borrow("b1", "book1"), null));
+
+        assertFalse(books.findById("book1").isAvailable());
+        assertEquals("book1", borrows.findById("b1").getBookId());
+        verify(bookViews).fieldUpdated("book1", "available", false);
+    }
+
+    @Test
+    void testUnavailableBookReturnsFalse() {
+        firebaseService.commitLoan(borrow("b1", "book1"), null);
+
+        assertFalse(firebaseService.commitLoan(borrow("b2", "book1"), null));
+
+        assertNull(borrows.findById("b2"));
+    }
+
+    @Test
+    void testMissingBookReturnsFalse() {
+        assertFalse(firebaseService.commitLoan(borrow("b1", "missing"), null));
+
+        assertNull(borrows.findById("b1"));
+    }
+
+    @Test
+    void testCommitUnderHeldLease() {
+        Lease lease = leases.tryAcquire("loans:m1", "node-a", 10000);
+
+        assertTrue(firebaseService.commitLoan(borrow("b1", "book1"), lease));
+    }
+
+    @Test
+    void testLostLeaseThrowsInsteadOfReturningFalse() throws InterruptedException {
+        // The book is available: only the lease stands in the way
+        Lease stale = leases.tryAcquire("loans:m1", "node-a", SHORT_TTL);
+        Thread.sleep(SHORT_TTL * 2);
+        leases.tryAcquire("loans:m1", "node-b", 10000);
+
+        assertThrows(LeaseLostException.class, () -> firebaseService.commitLoan(borrow("b1", "book1"), stale));
+
+        assertTrue(books.findById("book1").isAvailable());
+        assertNull(borrows.findById("b1"));
+        verify(bookViews, never()).fieldUpdated(anyString(), anyString(), any());
+    }
+
+    @Test
+    void testConcurrentCommitsLendTheCopyOnce() throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger committed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String borrowId = "b" + i;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    if (firebaseService.commitLoan(borrow(borrowId, "book1"), null)) {
+                        committed.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, committed.get());
+        assertEquals(1, borrows.findByMembershipId("m1").size());
+    }
+}
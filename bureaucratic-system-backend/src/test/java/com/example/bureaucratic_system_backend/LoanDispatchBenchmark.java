@@ -0,0 +1,215 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.model.LoanRequest;
+import com.example.bureaucratic_system_backend.service.loan.LoanScheduler;
+import com.example.bureaucratic_system_backend.service.loan.ShardedLoanScheduler;
+import com.example.bureaucratic_system_backend.service.loan.SharedQueueScheduler;
+import com.example.bureaucratic_system_backend.service.loan.WorkStealingLoanScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enqueue-to-dispatch latency of the loan schedulers: the time from submitting a request until
+ * an idle counter has taken it. BASELINE is the dispatcher the schedulers replaced, as it was:
+ * counters poll under the queue's monitor, then wait on it in a separate block, and every
+ * enqueue wakes all of them with notifyAll.
+ *
+ * A request whose wakeup BASELINE lost would wait for the next enqueue, which never comes here,
+ * so after STALL_NANOS the benchmark wakes the counters again, as the next arrival would, and
+ * counts a stall. The stall time stays in the sample.
+ *
+ * Not run by the test suite. Run main() from the IDE, or:
+ *
+ *     mvn test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=com.example.bureaucratic_system_backend.LoanDispatchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoanDispatchBenchmark {
+
+    private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Param({"BASELINE", "SHARED", "WORK_STEALING", "SHARDED"})
+    public String scheduler;
+
+    @Param({"2", "8"})
+    public int counters;
+
+    private LoanScheduler loanScheduler;
+    private final List<Thread> counterThreads = new ArrayList<>();
+    private final AtomicLong dispatched = new AtomicLong();
+    private long submitted;
+    private long stalls;
+    private LoanRequest request;
+
+    @Setup
+    public void setUp() {
+        loanScheduler = switch (scheduler) {
+            case "BASELINE" -> new BaselineDispatcher();
+            case "SHARED" -> new SharedQueueScheduler();
+            case "WORK_STEALING" -> new WorkStealingLoanScheduler();
+            case "SHARDED" -> new ShardedLoanScheduler(64);
+            default -> throw new IllegalArgumentException("Unknown scheduler " + scheduler);
+        };
+        request = new LoanRequest("Dune", "Frank Herbert", "citizen1");
+        for (int counterId = 1; counterId <= counters; counterId++) {
+            int id = counterId;
+            loanScheduler.counterStarted(id);
+            Thread thread = new Thread(() -> runCounter(id), "counter-" + id);
+            thread.setDaemon(true);
+            counterThreads.add(thread);
+            thread.start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        for (Thread thread : counterThreads) {
+            thread.interrupt();
+        }
+        for (Thread thread : counterThreads) {
+            thread.join(1000);
+        }
+        counterThreads.clear();
+        if (stalls > 0) {
+            System.out.println(scheduler + " with " + counters + " counters: " + stalls + " of " + submitted
+                    + " requests stalled on a lost wakeup");
+        }
+    }
+
+    // One request at a time, so every submit finds all counters idle and has to wake one
+    @Benchmark
+    public long enqueueToDispatch() {
+        long target = ++submitted;
+        loanScheduler.submit(request);
+        long start = System.nanoTime();
+        while (dispatched.get() < target) {
+            if (System.nanoTime() - start > STALL_NANOS && loanScheduler instanceof BaselineDispatcher baseline) {
+                stalls++;
+                baseline.wakeAll();
+                start = System.nanoTime();
+            }
+            Thread.onSpinWait();
+        }
+        return target;
+    }
+
+    private void runCounter(int counterId) {
+        try {
+            while (true) {
+                LoanScheduler.Assignment assignment = loanScheduler.take(counterId);
+                assignment.complete();
+                dispatched.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LoanDispatchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    /**
+     * BookLoaningService's queue handling before the schedulers, unchanged: addCitizenToQueue's
+     * add and notifyAll, and processQueue's poll and wait, with the loan itself left out.
+     */
+    static final class BaselineDispatcher implements LoanScheduler {
+
+        private final Queue<LoanRequest> queue = new LinkedBlockingQueue<>();
+
+        @Override
+        public void submit(LoanRequest request) {
+            synchronized (queue) {
+                queue.add(request);
+                queue.notifyAll();
+            }
+        }
+
+        @Override
+        public void submitAll(List<LoanRequest> requests) {
+            requests.forEach(this::submit);
+        }
+
+        @Override
+        public Assignment take(int counterId) throws InterruptedException {
+            while (true) {
+                LoanRequest request = null;
+                synchronized (queue) {
+                    if (!queue.isEmpty()) {
+                        request = queue.poll();
+                    }
+                }
+
+                if (request != null) {
+                    return assignmentOf(request);
+                } else {
+                    synchronized (queue) {
+                        queue.wait(); // Wait for new requests
+                    }
+                }
+            }
+        }
+
+        // What the next enqueue's notifyAll would do for a request whose wakeup was lost
+        void wakeAll() {
+            synchronized (queue) {
+                queue.notifyAll();
+            }
+        }
+
+        private Assignment assignmentOf(LoanRequest taken) {
+            return new Assignment() {
+                @Override
+                public LoanRequest request() {
+                    return taken;
+                }
+
+                @Override
+                public void complete() {
+                }
+
+                @Override
+                public void requeue() {
+                    submit(taken);
+                }
+            };
+        }
+
+        @Override
+        public int pending() {
+            return queue.size();
+        }
+
+        @Override
+        public LoanRequest pollOldest() {
+            return queue.poll();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.model.LoanRequest;
+import com.example.bureaucratic_system_backend.service.loan.LoanJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoanJournalTest {
+
+    // The smallest journal the class maps; small enough to fill in a test
+    private static final int SIZE_BYTES = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private Path path;
+    private LoanJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        path = directory.resolve("loans.journal");
+        journal = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    private LoanJournal open() {
+        return new LoanJournal(path.toString(), SIZE_BYTES, 1000);
+    }
+
+    private LoanJournal reopen() {
+        journal.close();
+        journal = open();
+        return journal;
+    }
+
+    private static LoanRequest request(String ticketId) {
+        LoanRequest request = new LoanRequest("Title " + ticketId, "Author", "citizen-" + ticketId);
+        request.setTicketId(ticketId);
+        request.setQueuedAt(1000L);
+        return request;
+    }
+
+    private static List<String> ticketIds(List<LoanRequest> requests) {
+        List<String> ids = new ArrayList<>();
+        for (LoanRequest request : requests) {
+            ids.add(request.getTicketId());
+        }
+        return ids;
+    }
+
+    // Offsets of the records in the file, found by following the length of each
+    private List<Integer> recordOffsets() throws IOException {
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path));
+        List<Integer> offsets = new ArrayList<>();
+        int position = 0;
+        while (position + 8 <= file.capacity() && file.getInt(position) > 0) {
+            offsets.add(position);
+            position += 8 + file.getInt(position);
+        }
+        return offsets;
+    }
+
+    private void overwrite(int offset, byte... bytes) throws IOException {
+        byte[] file = Files.readAllBytes(path);
+        System.arraycopy(bytes, 0, file, offset, bytes.length);
+        Files.write(path, file);
+    }
+
+    // ----------------------- Replay Tests -----------------------
+
+    @Test
+    void testDisabledWithoutPath() {
+        LoanJournal disabled = new LoanJournal("", SIZE_BYTES, 1000);
+
+        disabled.append(request("t1"));
+
+        assertFalse(disabled.isEnabled());
+        assertEquals(List.of(), disabled.recoveredRequests());
+        disabled.close();
+    }
+
+    @Test
+    void testReplayRecoversUnacknowledgedRequests() {
+        journal.append(request("t1"));
+        journal.appendAll(List.of(request("t2"), request("t3")));
+        journal.acknowledge("t2");
+
+        List<LoanRequest> recovered = reopen().recoveredRequests();
+
+        assertEquals(List.of("t1", "t3"), ticketIds(recovered));
+        LoanRequest first = recovered.get(0);
+        assertEquals("Title t1", first.getBookTitle());
+        assertEquals("Author", first.getBookAuthor());
+        assertEquals("citizen-t1", first.getCitizenId());
+        assertEquals(1000L, first.getQueuedAt());
+        // Handed out once
+        assertEquals(List.of(), journal.recoveredRequests());
+    }
+
+    @Test
+    void testReplayStopsAtDamagedRecord() throws IOException {
+        journal.appendAll(List.of(request("t1"), request("t2"), request("t3")));
+        journal.close();
+
+        // Flip a byte in the body of the second record, so its checksum no longer matches
+        int second = recordOffsets().get(1);
+        overwrite(second + 12, (byte) 0x7f);
+        journal = open();
+
+        assertEquals(List.of("t1"), ticketIds(journal.recoveredRequests()));
+    }
+
+    @Test
+    void testReplayStopsAtTornRecord() throws IOException {
+        journal.appendAll(List.of(request("t1"), request("t2")));
+        journal.close();
+
+        // A write cut off before its length: the body is there, the length still reads 0
+        int second = recordOffsets().get(1);
+        overwrite(second, (byte) 0, (byte) 0, (byte) 0, (byte) 0);
+        journal = open();
+
+        assertEquals(List.of("t1"), ticketIds(journal.recoveredRequests()));
+    }
+
+    @Test
+    void testAppendAfterTornRecordReplacesIt() throws IOException {
+        journal.appendAll(List.of(request("t1"), request("t2"), request("t3")));
+        journal.close();
+        int second = recordOffsets().get(1);
+        overwrite(second + 12, (byte) 0x7f);
+        journal = open();
+        journal.recoveredRequests();
+
+        // The new record goes where the damaged one was; nothing after it comes back
+        journal.append(request("t4"));
+
+        assertEquals(List.of("t1", "t4"), ticketIds(reopen().recoveredRequests()));
+    }
+
+    // ----------------------- Compaction Tests -----------------------
+
+    @Test
+    void testCompactionKeepsOnlyPendingRequests() throws IOException {
+        // Far more records than the file holds, nearly all acknowledged
+        List<String> pending = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String ticketId = String.format("t%04d", i);
+            journal.append(request(ticketId));
+            if (i % 500 == 0) {
+                pending.add(ticketId);
+            } else {
+                journal.acknowledge(ticketId);
+            }
+        }
+
+        assertEquals(SIZE_BYTES, Files.size(path));
+        assertFalse(Files.exists(directory.resolve("loans.journal.compact")));
+        assertEquals(pending, ticketIds(reopen().recoveredRequests()));
+    }
+
+    @Test
+    void testCompactionGrowsFileForPendingRequests() throws IOException {
+        List<String> pending = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            String ticketId = String.format("t%04d", i);
+            journal.append(request(ticketId));
+            pending.add(ticketId);
+        }
+
+        assertTrue(Files.size(path) > SIZE_BYTES);
+        assertEquals(pending, ticketIds(reopen().recoveredRequests()));
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.model.LoanRequest;
+import com.example.bureaucratic_system_backend.model.LoanStatus;
+import com.example.bureaucratic_system_backend.model.LoanTicket;
+import com.example.bureaucratic_system_backend.service.LoanTicketService;
+import com.example.bureaucratic_system_backend.service.loan.LoanOutcome;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoanTicketServiceTest {
+
+    private LoanTicketService ticketService;
+
+    @BeforeEach
+    void setUp() {
+        ticketService = new LoanTicketService(new SimpleMeterRegistry(), 2, 60000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ticketService.shutdown();
+    }
+
+    private LoanTicket open(String citizenId) {
+        return ticketService.open(new LoanRequest("Dune", "Frank Herbert", citizenId));
+    }
+
+    // An emitter is completed once it has been sent the final event; sending to it then fails
+    private static boolean completes(SseEmitter emitter) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                emitter.send(SseEmitter.event().comment("probe"));
+            } catch (IllegalStateException e) {
+                return true;
+            } catch (Exception e) {
+                fail(e);
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    // ----------------------- Ticket Store Tests -----------------------
+
+    @Test
+    void testOpenTicketsAreQueuedInArrivalOrder() {
+        LoanTicket first = open("citizen1");
+        LoanTicket second = open("citizen2");
+
+        assertNotNull(first.getTicketId());
+        assertEquals(LoanStatus.QUEUED, second.getStatus());
+        assertEquals(1, ticketService.find(first.getTicketId()).getPosition());
+        assertEquals(2, ticketService.find(second.getTicketId()).getPosition());
+    }
+
+    @Test
+    void testStartedTicketLeavesTheQueue() {
+        LoanTicket first = open("citizen1");
+        LoanTicket second = open("citizen2");
+
+        ticketService.started(first.getTicketId(), 3);
+
+        LoanTicket processing = ticketService.find(first.getTicketId());
+        assertEquals(LoanStatus.PROCESSING, processing.getStatus());
+        assertEquals(3, processing.getCounterId());
+        assertNull(processing.getPosition());
+        assertEquals(1, ticketService.find(second.getTicketId()).getPosition());
+    }
+
+    @Test
+    void testFinishedTicketKeepsItsOutcome() {
+        LoanTicket ticket = open("citizen1");
+        ticketService.started(ticket.getTicketId(), 1);
+
+        ticketService.finished(ticket.getTicketId(), LoanOutcome.of(LoanStatus.FAILED));
+
+        assertEquals(LoanStatus.FAILED, ticketService.find(ticket.getTicketId()).getStatus());
+    }
+
+    @Test
+    void testFinishedTicketsAreBounded() {
+        // At most two finished tickets are kept
+        LoanTicket oldest = open("citizen1");
+        LoanTicket middle = open("citizen2");
+        LoanTicket newest = open("citizen3");
+        for (LoanTicket ticket : new LoanTicket[]{oldest, middle, newest}) {
+            ticketService.finished(ticket.getTicketId(), LoanOutcome.of(LoanStatus.FAILED));
+        }
+
+        assertNull(ticketService.find(oldest.getTicketId()));
+        assertNotNull(ticketService.find(middle.getTicketId()));
+        assertNotNull(ticketService.find(newest.getTicketId()));
+    }
+
+    @Test
+    void testReplayedRequestKeepsItsTicketId() {
+        LoanRequest request = new LoanRequest("Dune", "Frank Herbert", "citizen1");
+        request.setTicketId("ticket-1");
+
+        assertEquals("ticket-1", ticketService.open(request).getTicketId());
+        assertNotNull(ticketService.find("ticket-1"));
+    }
+
+    @Test
+    void testUnknownTicketIsNotFound() {
+        assertNull(ticketService.find("missing"));
+        assertNull(ticketService.subscribe("missing"));
+    }
+
+    // ----------------------- SSE Tests -----------------------
+
+    @Test
+    void testSubscriberIsCompletedWhenTicketFinishes() throws InterruptedException {
+        LoanTicket ticket = open("citizen1");
+        SseEmitter emitter = ticketService.subscribe(ticket.getTicketId());
+        assertNotNull(emitter);
+
+        ticketService.started(ticket.getTicketId(), 1);
+        ticketService.finished(ticket.getTicketId(), LoanOutcome.of(LoanStatus.FAILED));
+
+        assertTrue(completes(emitter));
+    }
+
+    @Test
+    void testSubscriberStaysOpenWhileProcessing() throws InterruptedException {
+        LoanTicket ticket = open("citizen1");
+        SseEmitter emitter = ticketService.subscribe(ticket.getTicketId());
+
+        ticketService.started(ticket.getTicketId(), 1);
+
+        Thread.sleep(100);
+        assertDoesNotThrow(() -> emitter.send(SseEmitter.event().comment("still open")));
+    }
+
+    @Test
+    void testSubscribingToFinishedTicketCompletesAtOnce() throws InterruptedException {
+        LoanTicket ticket = open("citizen1");
+        ticketService.finished(ticket.getTicketId(), LoanOutcome.of(LoanStatus.FAILED));
+
+        SseEmitter emitter = ticketService.subscribe(ticket.getTicketId());
+
+        assertNotNull(emitter);
+        assertTrue(completes(emitter));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.model.LoanRequest;
+import com.example.bureaucratic_system_backend.service.loan.LoanScheduler.Assignment;
+import com.example.bureaucratic_system_backend.service.loan.ShardedLoanScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedLoanSchedulerTest {
+
+    private ShardedLoanScheduler scheduler;
+    private ExecutorService takers;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new ShardedLoanScheduler(1024);
+        takers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        takers.shutdownNow();
+    }
+
+    private static LoanRequest request(String ticketId, String title, long queuedAt) {
+        LoanRequest request = new LoanRequest(title, "Author", "citizen1");
+        request.setTicketId(ticketId);
+        request.setQueuedAt(queuedAt);
+        return request;
+    }
+
+    private Future<Assignment> takeAsync(int counterId) {
+        return takers.submit(() -> scheduler.take(counterId));
+    }
+
+    // ----------------------- Ownership Tests -----------------------
+
+    @Test
+    void testSameBookRunsOneAtATime() throws Exception {
+        scheduler.submitAll(List.of(request("r1", "Dune", 1), request("r2", "Dune", 2)));
+        Assignment first = scheduler.take(1);
+
+        // The shard is owned until the first loan completes
+        Future<Assignment> second = takeAsync(2);
+        assertThrows(TimeoutException.class, () -> second.get(100, TimeUnit.MILLISECONDS));
+
+        first.complete();
+
+        assertEquals("r1", first.request().getTicketId());
+        assertEquals("r2", second.get(5, TimeUnit.SECONDS).request().getTicketId());
+    }
+
+    @Test
+    void testDifferentBooksRunInParallel() throws Exception {
+        scheduler.submit(request("r1", "Dune", 1));
+        scheduler.submit(request("r2", "Emma", 2));
+        Assignment first = scheduler.take(1);
+
+        Assignment second = takeAsync(2).get(5, TimeUnit.SECONDS);
+
+        assertNotEquals(first.request().getTicketId(), second.request().getTicketId());
+    }
+
+    @Test
+    void testCompleteTwiceReleasesOnce() throws Exception {
+        scheduler.submitAll(List.of(request("r1", "Dune", 1), request("r2", "Dune", 2), request("r3", "Dune", 3)));
+        Assignment first = scheduler.take(1);
+        first.complete();
+        Assignment second = scheduler.take(1);
+
+        // A late second complete of the first must not free the shard the second one holds
+        first.complete();
+
+        Future<Assignment> third = takeAsync(2);
+        assertThrows(TimeoutException.class, () -> third.get(100, TimeUnit.MILLISECONDS));
+        second.complete();
+        assertEquals("r3", third.get(5, TimeUnit.SECONDS).request().getTicketId());
+    }
+
+    // ----------------------- Requeue Tests -----------------------
+
+    @Test
+    void testRequeuedRequestComesBackFirst() throws Exception {
+        scheduler.submitAll(List.of(request("r1", "Dune", 1), request("r2", "Dune", 2)));
+        Assignment first = scheduler.take(1);
+
+        // E.g. counter 1 was paused while it waited
+        first.requeue();
+
+        assertEquals(2, scheduler.pending());
+        assertEquals("r1", takeAsync(2).get(5, TimeUnit.SECONDS).request().getTicketId());
+    }
+
+    @Test
+    void testRequeueWakesWaitingCounter() throws Exception {
+        scheduler.submit(request("r1", "Dune", 1));
+        Assignment first = scheduler.take(1);
+        scheduler.submit(request("r2", "Dune", 2));
+        Future<Assignment> waiting = takeAsync(2);
+        assertThrows(TimeoutException.class, () -> waiting.get(100, TimeUnit.MILLISECONDS));
+
+        first.requeue();
+
+        assertEquals("r1", waiting.get(5, TimeUnit.SECONDS).request().getTicketId());
+    }
+
+    // ----------------------- Queue Tests -----------------------
+
+    @Test
+    void testSubmitAllKeepsOrderPerBook() throws Exception {
+        List<LoanRequest> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            batch.add(request("r" + i, i % 2 == 0 ? "Dune" : "Emma", i));
+        }
+        scheduler.submitAll(batch);
+
+        List<String> dune = new ArrayList<>();
+        List<String> emma = new ArrayList<>();
+        while (scheduler.pending() > 0) {
+            Assignment assignment = scheduler.take(1);
+            assignment.complete();
+            (assignment.request().getBookTitle().equals("Dune") ? dune : emma).add(assignment.request().getTicketId());
+        }
+
+        assertEquals(List.of("r0", "r2", "r4", "r6", "r8"), dune);
+        assertEquals(List.of("r1", "r3", "r5", "r7", "r9"), emma);
+    }
+
+    @Test
+    void testPollOldestComparesShardHeads() {
+        scheduler.submit(request("r3", "Dune", 3));
+        scheduler.submit(request("r1", "Emma", 1));
+        scheduler.submit(request("r2", "Ulysses", 2));
+
+        assertEquals("r1", scheduler.pollOldest().getTicketId());
+        assertEquals("r2", scheduler.pollOldest().getTicketId());
+        assertEquals("r3", scheduler.pollOldest().getTicketId());
+        assertNull(scheduler.pollOldest());
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.lock.LockMetrics;
+import com.example.bureaucratic_system_backend.lock.StripedLockRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedLockRegistryTest {
+
+    private StripedLockRegistry lockRegistry;
+
+    @BeforeEach
+    void setUp() {
+        lockRegistry = new StripedLockRegistry(16, new LockMetrics(null, false, 10, 1000));
+    }
+
+    // ----------------------- Stripe Tests -----------------------
+
+    @Test
+    void testSameDocumentGetsSameLock() {
+        Lock first = lockRegistry.lockFor("books", "book1");
+
+        assertSame(first, lockRegistry.lockFor("books", "book1"));
+        assertSame(first, lockRegistry.lockFor(new String("books"), new String("book1")));
+    }
+
+    @Test
+    void testStripeCountRoundsUpToPowerOfTwo() {
+        LockMetrics metrics = new LockMetrics(null, false, 10, 1000);
+
+        assertEquals(16, lockRegistry.stripeCount());
+        assertEquals(16, new StripedLockRegistry(10, metrics).stripeCount());
+        assertEquals(1, new StripedLockRegistry(1, metrics).stripeCount());
+        assertEquals(1, new StripedLockRegistry(0, metrics).stripeCount());
+    }
+
+    @Test
+    void testKeysSpreadOverStripes() {
+        List<Lock> distinct = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Lock lock = lockRegistry.lockFor("books", "book" + i);
+            if (distinct.stream().noneMatch(seen -> seen == lock)) {
+                distinct.add(lock);
+            }
+        }
+
+        assertEquals(lockRegistry.stripeCount(), distinct.size());
+    }
+
+    @Test
+    void testNullIdHasALock() {
+        assertSame(lockRegistry.lockFor("books", null), lockRegistry.lockFor("books", null));
+    }
+
+    @Test
+    void testSingleStripeIsSharedByEveryDocument() {
+        StripedLockRegistry single = new StripedLockRegistry(1, new LockMetrics(null, false, 10, 1000));
+
+        assertSame(single.lockFor("books", "book1"), single.lockFor("fees", "fee1"));
+    }
+
+    // ----------------------- Locking Tests -----------------------
+
+    @Test
+    void testLockIsReentrant() {
+        Lock lock = lockRegistry.lockFor("books", "book1");
+        lock.lock();
+        try {
+            // Nested section on the same document, or on one sharing the stripe
+            assertTrue(lock.tryLock());
+            lock.unlock();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Test
+    void testWritesToOneDocumentAreSerialized() throws InterruptedException {
+        int threads = 4;
+        int incrementsPerThread = 10000;
+        long[] count = new long[1];
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Thread(() -> {
+                for (int n = 0; n < incrementsPerThread; n++) {
+                    // Looked up each time, the way services do
+                    Lock lock = lockRegistry.lockFor("books", "book1");
+                    lock.lock();
+                    try {
+                        count[0]++;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals((long) threads * incrementsPerThread, count[0]);
+    }
+
+    @Test
+    void testHeldLockBlocksOtherThreads() throws InterruptedException {
+        Lock lock = lockRegistry.lockFor("books", "book1");
+        boolean[] acquired = new boolean[1];
+        lock.lock();
+        try {
+            Thread other = new Thread(() -> acquired[0] = lockRegistry.lockFor("books", "book1").tryLock());
+            other.start();
+            other.join();
+        } finally {
+            lock.unlock();
+        }
+
+        assertFalse(acquired[0]);
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.bureaucratic_system_backend;
+
+import com.example.bureaucratic_system_backend.model.LoanRequest;
+import com.example.bureaucratic_system_backend.service.loan.LoanScheduler.Assignment;
+import com.example.bureaucratic_system_backend.service.loan.WorkStealingLoanScheduler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkStealingLoanSchedulerTest {
+
+    private WorkStealingLoanScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new WorkStealingLoanScheduler();
+    }
+
+    private static LoanRequest request(String ticketId, long queuedAt) {
+        LoanRequest request = new LoanRequest("Title " + ticketId, "Author", "citizen1");
+        request.setTicketId(ticketId);
+        request.setQueuedAt(queuedAt);
+        return request;
+    }
+
+    // Takes and completes one request; fails instead of blocking forever
+    private LoanRequest takeOne(int counterId) throws Exception {
+        ExecutorService taker = Executors.newSingleThreadExecutor();
+        try {
+            Future<Assignment> taken = taker.submit(() -> scheduler.take(counterId));
+            Assignment assignment = taken.get(5, TimeUnit.SECONDS);
+            assignment.complete();
+            return assignment.request();
+        } finally {
+            taker.shutdownNow();
+        }
+    }
+
+    // Only while nothing else touches the scheduler, so take() never waits
+    private List<String> drain(int counterId) throws InterruptedException {
+        List<String> ticketIds = new ArrayList<>();
+        while (scheduler.pending() > 0) {
+            Assignment assignment = scheduler.take(counterId);
+            assignment.complete();
+            ticketIds.add(assignment.request().getTicketId());
+        }
+        return ticketIds;
+    }
+
+    // ----------------------- Queueing Tests -----------------------
+
+    @Test
+    void testCounterTakesOwnRequestsInOrder() throws Exception {
+        scheduler.counterStarted(1);
+        scheduler.submitAll(List.of(request("r1", 1), request("r2", 2), request("r3", 3)));
+
+        assertEquals(3, scheduler.pending());
+        assertEquals(List.of("r1", "r2", "r3"), drain(1));
+    }
+
+    @Test
+    void testRequestsBeforeAnyCounterWaitInOverflow() throws Exception {
+        scheduler.submit(request("r1", 1));
+        scheduler.submit(request("r2", 2));
+
+        scheduler.counterStarted(1);
+
+        assertEquals(List.of("r1", "r2"), drain(1));
+    }
+
+    @Test
+    void testIdleCounterStealsFromOthers() throws Exception {
+        scheduler.counterStarted(1);
+        scheduler.counterStarted(2);
+        scheduler.submitAll(List.of(request("r1", 1), request("r2", 2), request("r3", 3), request("r4", 4)));
+
+        // Dealt out round-robin, so counter 1 has to steal half of them
+        assertEquals(Set.of("r1", "r2", "r3", "r4"), new HashSet<>(drain(1)));
+    }
+
+    @Test
+    void testTakeWaitsForSubmit() throws Exception {
+        scheduler.counterStarted(1);
+        ExecutorService taker = Executors.newSingleThreadExecutor();
+        try {
+            Future<Assignment> taken = taker.submit(() -> scheduler.take(1));
+            assertThrows(TimeoutException.class, () -> taken.get(100, TimeUnit.MILLISECONDS));
+
+            scheduler.submit(request("r1", 1));
+
+            assertEquals("r1", taken.get(5, TimeUnit.SECONDS).request().getTicketId());
+        } finally {
+            taker.shutdownNow();
+        }
+    }
+
+    @Test
+    void testPollOldestComparesEveryDeque() {
+        scheduler.submit(request("early", 1)); // Overflow: no counter yet
+        scheduler.counterStarted(1);
+        scheduler.counterStarted(2);
+        scheduler.submitAll(List.of(request("r3", 3), request("r2", 2)));
+
+        assertEquals("early", scheduler.pollOldest().getTicketId());
+        assertEquals("r2", scheduler.pollOldest().getTicketId());
+        assertEquals("r3", scheduler.pollOldest().getTicketId());
+        assertNull(scheduler.pollOldest());
+    }
+
+    // ----------------------- Requeue Tests -----------------------
+
+    @Test
+    void testRequeuedRequestComesBackFirst() throws Exception {
+        scheduler.counterStarted(1);
+        scheduler.counterStarted(2);
+        scheduler.submitAll(List.of(request("r1", 1), request("r2", 2)));
+        Assignment first = scheduler.take(1);
+
+        first.requeue();
+
+        // Requeued requests go to the shared overflow, which a counter with an empty deque checks
+        // before stealing from the others
+        assertEquals(first.request().getTicketId(), takeOne(1).getTicketId());
+        assertEquals(1, scheduler.pending());
+    }
+
+    // ----------------------- Rehome Tests -----------------------
+
+    @Test
+    void testStoppedCounterBacklogMovesToOthers() throws Exception {
+        scheduler.counterStarted(1);
+        scheduler.counterStarted(2);
+        scheduler.submitAll(List.of(request("r1", 1), request("r2", 2), request("r3", 3), request("r4", 4)));
+
+        scheduler.counterStopped(2);
+
+        assertEquals(4, scheduler.pending());
+        assertEquals(Set.of("r1", "r2", "r3", "r4"), new HashSet<>(drain(1)));
+    }
+
+    @Test
+    void testPausedCounterTakesNoNewRequests() throws Exception {
+        scheduler.counterStarted(1);
+        scheduler.counterStarted(2);
+        scheduler.counterPaused(2);
+
+        scheduler.submitAll(List.of(request("r1", 1), request("r2", 2)));
+
+        // Everything was dealt to counter 1, whose own deque is served in order
+        assertEquals(List.of("r1", "r2"), drain(1));
+        scheduler.counterResumed(2);
+        scheduler.submit(request("r3", 3));
+        assertEquals("r3", takeOne(2).getTicketId());
+    }
+
+    @Test
+    void testStoppingLastCounterKeepsBacklogInOrder() throws Exception {
+        scheduler.counterStarted(1);
+        scheduler.submitAll(List.of(request("r1", 1), request("r2", 2), request("r3", 3)));
+
+        scheduler.counterStopped(1);
+
+        assertEquals(3, scheduler.pending());
+        scheduler.counterStarted(3);
+        assertEquals(List.of("r1", "r2", "r3"), drain(3));
+    }
+
+    @Test
+    void testNoRequestLostWhileCountersStopAndStart() throws Exception {
+        int producers = 4;
+        int perProducer = 2000;
+        for (int counter = 1; counter <= 4; counter++) {
+            scheduler.counterStarted(counter);
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    scheduler.submit(request(producer + "-" + i, i));
+                }
+            }));
+        }
+        // Submits race the close of the counter they were dealt to
+        threads.add(new Thread(() -> {
+            for (int i = 0; i < 500; i++) {
+                int counter = 1 + i % 4;
+                scheduler.counterStopped(counter);
+                scheduler.counterStarted(counter);
+            }
+        }));
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Set<String> taken = new HashSet<>(drain(1));
+        assertEquals(producers * perProducer, taken.size());
+        assertEquals(0, scheduler.pending());
+    }
+}
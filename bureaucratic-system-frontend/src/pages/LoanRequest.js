@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import axios from 'axios';
 import { useAuth } from '../components/AuthProvider.js'; // Import the Auth Context
 import { getFirestore, collection, getDocs } from 'firebase/firestore'; // Firestore
@@ -16,8 +16,13 @@ const LoanRequest = () => {
     const [modalMessage, setModalMessage] = useState(''); // For modal messages
     const [isModalVisible, setIsModalVisible] = useState(false); // Modal visibility
 
+    const ticketEvents = useRef(null); // Open SSE stream for the last submitted ticket
+
     const db = getFirestore();
 
+    // Close the ticket stream when leaving the page
+    useEffect(() => () => ticketEvents.current?.close(), []);
+
     useEffect(() => {
         const fetchCitizenId = async () => {
             try {
@@ -104,7 +109,7 @@ const LoanRequest = () => {
         }
 
         try {
-            await axios.post(
+            const response = await axios.post(
                 'http://localhost:8080/api/citizens/loan-request',
                 {
                     citizenId,
@@ -117,14 +122,52 @@ const LoanRequest = () => {
                     },
                 }
             );
-            setModalMessage('Request submitted successfully! Check Borrow History!');
+            setModalMessage('Request submitted. Waiting for a counter...');
             setIsModalVisible(true); // Show success modal
+            followTicket(response.data.ticketId);
         } catch (err) {
             setModalMessage('Error: ' + (err.response?.data || err.message));
             setIsModalVisible(true); // Show error modal
         }
     };
 
+    // The backend pushes queue position and the final outcome, so no polling is needed
+    const followTicket = (ticketId) => {
+        ticketEvents.current?.close();
+        const events = new EventSource(
+            `http://localhost:8080/api/citizens/loan-request/${ticketId}/events?token=${role}`
+        );
+        ticketEvents.current = events;
+        events.addEventListener('ticket', (event) => {
+            const ticket = JSON.parse(event.data);
+            setModalMessage(ticketMessage(ticket));
+            setIsModalVisible(true);
+            if (!['QUEUED', 'PROCESSING'].includes(ticket.status)) {
+                events.close();
+            }
+        });
+        events.onerror = () => events.close();
+    };
+
+    const ticketMessage = (ticket) => {
+        switch (ticket.status) {
+            case 'QUEUED':
+                return `Request queued. Position in queue: ${ticket.position}.`;
+            case 'PROCESSING':
+                return `Counter ${ticket.counterId} is processing your request...`;
+            case 'LOANED':
+                return 'Book loaned successfully! Check Borrow History!';
+            case 'NO_MEMBERSHIP':
+                return 'You do not have a valid membership.';
+            case 'ALREADY_BORROWED':
+                return 'You have already borrowed this book and not returned it yet.';
+            case 'UNAVAILABLE':
+                return 'No copy of this book is available right now.';
+            default:
+                return 'The loan request could not be processed.';
+        }
+    };
+
     const closeModal = () => {
         setIsModalVisible(false);
         setModalMessage('');